@@ -19,17 +19,46 @@
 
 package controller;
 
+import model.AutoSave;
+import model.Board;
+import model.BoardDelta;
+import model.BoardListener;
+import model.EndlessBoard;
 import model.Game;
+import model.MoveJournal;
+import model.Replay;
+import model.SaveFile;
+import model.solver.Deduction;
+import model.solver.GaussianSolver;
+import model.solver.Probabilities;
+import model.solver.ProbabilitySolver;
+import model.solver.RuleSolver;
+import model.solver.Solver;
 import view.ControlInterface;
 import view.MainFrame;
 import view.MinePanel;
+import view.SpriteCache;
 
 import javax.swing.*;
+import javax.swing.Timer;
 import java.awt.*;
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
+import java.beans.PropertyChangeEvent;
+import java.beans.PropertyChangeListener;
 import java.io.*;
-import java.net.URL;
 import java.util.Observable;
 import java.util.Observer;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Created by Mark Alexander Dietrich on 06/11/14.
@@ -37,7 +66,10 @@ import java.util.Observer;
  * File: Controller.java
  *
  * Class: Controller
- * Controls the whole application.
+ * Controls the whole application. Every action which changes the {@link model.Game} is executed by a single game
+ * thread in the order it was submitted, so the Event Dispatch Thread stays responsive during long cascades. The
+ * Event Dispatch Thread never waits for the game thread: the tasks capture what they need when they are submitted and
+ * report back via {@link javax.swing.SwingUtilities#invokeLater}.
  *
  * @author Mark Alexander Dietrich
  */
@@ -69,6 +101,143 @@ public class Controller {
      */
     private Game game;
 
+    /**
+     * {@link model.EndlessBoard} shown instead of the {@link model.Game}, null if there is none. The field is only used
+     * on the Event Dispatch Thread, the moves on the board are performed on the game thread.
+     */
+    private EndlessBoard endlessBoard;
+
+    /**
+     * How many chunks of an {@link model.EndlessBoard} are kept in memory.
+     */
+    private static final int MAX_ENDLESS_CHUNKS = 1024;
+
+    /**
+     * Save files at least this large are mapped into memory instead of being read.
+     */
+    private static final long MAP_THRESHOLD = 64L << 20;
+
+    /**
+     * Delay between two flushes of a mapped {@link model.SaveFile} in milliseconds.
+     */
+    private static final int FLUSH_DELAY = 5000;
+
+    /**
+     * {@link model.SaveFile} the current {@link model.Game} lives in, null if it lives on the heap.
+     */
+    private SaveFile mappedFile;
+
+    /**
+     * Periodically flushes the {@link controller.Controller#mappedFile}.
+     */
+    private Timer flushTimer;
+
+    /**
+     * Delay between two flushes of the {@link model.MoveJournal} in milliseconds.
+     */
+    private static final int JOURNAL_DELAY = 1000;
+
+    /**
+     * Writes the moves of the current {@link model.Game}, null if it lives in a mapped {@link model.SaveFile}. It is
+     * started on the game thread, so it is only read by later tasks of the game thread.
+     */
+    private Future<MoveJournal> journal;
+
+    /**
+     * Periodically flushes the {@link controller.Controller#journal}.
+     */
+    private Timer journalTimer;
+
+    /**
+     * Delay between two autosaves in milliseconds.
+     */
+    private static final int AUTOSAVE_DELAY = 60000;
+
+    /**
+     * Saves the current {@link model.Game} periodically, null if it lives in a mapped {@link model.SaveFile}. It is
+     * started on the game thread, so it is only read by later tasks of the game thread.
+     */
+    private Future<AutoSave> autoSave;
+
+    /**
+     * Periodically triggers the {@link controller.Controller#autoSave}.
+     */
+    private Timer autoSaveTimer;
+
+    /**
+     * Background thread which compresses and writes the autosaves, so the game thread only takes the snapshots.
+     */
+    private final ExecutorService autoSaveExecutor;
+
+    /**
+     * Records the moves of the current {@link model.Game}, null if it lives in a mapped {@link model.SaveFile}. It is
+     * started on the game thread, so it is only read by later tasks of the game thread.
+     */
+    private Future<Replay> replay;
+
+    /**
+     * Is the playback shown instead of the {@link model.Game}?
+     */
+    private boolean replaying;
+
+    /**
+     * Position the playback should move to. Only the latest one matters, so quick slider movements are coalesced.
+     */
+    private final AtomicInteger replayTarget = new AtomicInteger();
+
+    /**
+     * Single game thread which executes the moves and resets of the {@link model.Game} one after another.
+     */
+    private final ExecutorService gameExecutor;
+
+    /**
+     * Performs the moves of the player on the game thread, followed by the auto-solver if it is switched on.
+     */
+    private final Executor moveExecutor;
+
+    /**
+     * Hands the {@link model.Board}s replaced by a reset back on the Event Dispatch Thread, after the view has seen
+     * the reset.
+     */
+    private final Executor recycleExecutor = new Executor() {
+        @Override
+        public void execute(Runnable runnable) {
+            SwingUtilities.invokeLater(runnable);
+        }
+    };
+
+    /**
+     * Deduce safe cells and mines, only used on the game thread. The {@link model.solver.RuleSolver} is used unless
+     * the {@link model.solver.GaussianSolver} is chosen.
+     */
+    private final Solver ruleSolver = new RuleSolver();
+    private final Solver gaussianSolver = new GaussianSolver();
+
+    /**
+     * Is the {@link model.solver.GaussianSolver} used for hints and the auto-solver?
+     */
+    private volatile boolean gaussianSolving;
+
+    /**
+     * Should every deduction be played after each move of the player?
+     */
+    private volatile boolean autoSolving;
+
+    /**
+     * Calculates the probabilities of the mines for the heatmap, only used on the game thread.
+     */
+    private final ProbabilitySolver probabilitySolver = new ProbabilitySolver();
+
+    /**
+     * Is the heatmap shown?
+     */
+    private volatile boolean heatmap;
+
+    /**
+     * Is an update of the heatmap waiting on the game thread? Changes of the pitch meanwhile are covered by it.
+     */
+    private final AtomicBoolean heatmapPending = new AtomicBoolean();
+
     /**
      * Class constructor.
      *
@@ -87,9 +256,87 @@ public class Controller {
         this.mineField = mineField;
         this.controlInterface = controlInterface;
         this.thisController = this;
+        this.gameExecutor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                // Does not keep the application alive
+                Thread thread = new Thread(runnable, "game");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        this.moveExecutor = new Executor() {
+            @Override
+            public void execute(final Runnable move) {
+                // The auto-solver plays on the {@link model.Game} the move was submitted for
+                final Game game = Controller.this.game;
+                gameExecutor.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        move.run();
+                        if (autoSolving)
+                            solveAll(game);
+                    }
+                });
+            }
+        };
+        this.mineField.setMoveExecutor(this.moveExecutor);
+        this.mineField.setEndlessMoveExecutor(this.gameExecutor);
+        this.autoSaveExecutor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "autosave");
+                thread.setDaemon(true);
+                thread.setPriority(Thread.MIN_PRIORITY);
+                return thread;
+            }
+        });
+        this.flushTimer = new Timer(FLUSH_DELAY, new ActionListener() {
+            @Override
+            public void actionPerformed(ActionEvent actionEvent) {
+                flushMappedFile(false);
+            }
+        });
+
+        this.journalTimer = new Timer(JOURNAL_DELAY, new ActionListener() {
+            @Override
+            public void actionPerformed(ActionEvent actionEvent) {
+                flushJournal();
+            }
+        });
+
+        this.autoSaveTimer = new Timer(AUTOSAVE_DELAY, new ActionListener() {
+            @Override
+            public void actionPerformed(ActionEvent actionEvent) {
+                autoSave();
+            }
+        });
 
-        // Create new {@link model.Game}
-        this.newGame(height, width, pMine);
+        // Continue an interrupted {@link model.Game} or create a new one
+        Game recovered = null;
+        boolean append = true;
+        try {
+            recovered = MoveJournal.recover(MoveJournal.getDefaultFile());
+        } catch (IOException e) {
+            e.printStackTrace();
+            // Fall back to the last autosave
+            recovered = this.readAutoSave();
+            append = false;
+        }
+        if (null != recovered) {
+            this.game = recovered;
+            this.game.setRecycleExecutor(this.recycleExecutor);
+            this.game.addObserver(new GameObserver());
+            this.game.addBoardListener(new HeatmapUpdater(this.game));
+            this.mineField.init(this.game);
+            this.startJournal(append);
+            this.startRecording();
+            this.startAutoSave();
+        } else {
+            this.newGame(height, width, pMine);
+        }
+        this.journalTimer.start();
+        this.autoSaveTimer.start();
     }
 
     /**
@@ -100,9 +347,17 @@ public class Controller {
      * @param pMine         {@link double} Represents the probability that a {@link model.Field} is a mine.
      */
     public void newGame(int height, int width, double pMine) {
+        this.flushMappedFile(true);
+        this.disposeEndlessBoard();
         this.game = new Game(height, width, pMine);
+        this.game.setRecycleExecutor(this.recycleExecutor);
         this.game.addObserver(new GameObserver());
+        this.game.addBoardListener(new HeatmapUpdater(this.game));
         this.mineField.init(this.game);
+        this.updateHeatmap(this.game);
+        this.startJournal(false);
+        this.startRecording();
+        this.startAutoSave();
     }
 
     /**
@@ -127,18 +382,200 @@ public class Controller {
     }
 
     /**
-     * Reinitializes the current {@link model.Game} and starts the game clock of the {@link view.ControlInterface}.
+     * Reinitializes the current {@link model.Game} and starts the game clock of the {@link view.ControlInterface}. The
+     * {@link model.Game} is reset on the game thread after all pending moves, the pitch is repainted when it reports
+     * the reset.
      */
     public void resetGame() {
+        if (null != this.endlessBoard) {
+            this.newEndlessGame(this.endlessBoard.getpMine());
+            return;
+        }
+
+        this.stopReplay();
         this.controlInterface.stopTimer();
-        this.mineField.clear();
 
         // Reinitialize {@link model.Game}
-        this.game.reset();
-        this.mineField.init(this.game);
+        final Game game = this.game;
+        this.gameExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                game.reset();
+            }
+        });
 
-        // Start game clock
-        this.controlInterface.startTimer(this.game.getInitialTime());
+        // Start game clock, a reset {@link model.Game} starts at 0
+        this.controlInterface.startTimer(new int[]{0, 0, 0});
+    }
+
+    /**
+     * Takes back the last move of the {@link model.Game} on the game thread after all pending moves.
+     */
+    public void undoMove() {
+        if (this.replaying)
+            return;
+
+        final Game game = this.game;
+        this.gameExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                game.undo();
+            }
+        });
+    }
+
+    /**
+     * Performs the last undone move of the {@link model.Game} again on the game thread after all pending moves.
+     */
+    public void redoMove() {
+        if (this.replaying)
+            return;
+
+        final Game game = this.game;
+        this.gameExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                game.redo();
+            }
+        });
+    }
+
+    /**
+     * Plays one cell the {@link model.solver.Solver} could decide on the game thread: a safe cell is opened, otherwise a
+     * mine is marked. If no cell can be decided the player is told so.
+     */
+    public void hint() {
+        if (this.replaying)
+            return;
+
+        final Game game = this.game;
+        this.gameExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                Deduction deduction = getSolver().solve(game);
+                Board board = game.getBoard();
+                if (deduction.getSafeCount() > 0) {
+                    int cell = deduction.getSafeCell(0);
+                    game.openField(board.getX(cell), board.getY(cell));
+                } else if (deduction.getMineCount() > 0) {
+                    int cell = deduction.getMine(0);
+                    game.markField(board.getX(cell), board.getY(cell));
+                } else if (!game.isEnded()) {
+                    SwingUtilities.invokeLater(new Runnable() {
+                        @Override
+                        public void run() {
+                            JOptionPane.showMessageDialog(null, "No cell can be deduced, you have to guess.", "Hint",
+                                    JOptionPane.INFORMATION_MESSAGE);
+                        }
+                    });
+                }
+            }
+        });
+    }
+
+    /**
+     * Switches the auto-solver on or off. While it is on, every cell the {@link model.solver.Solver} can decide is
+     * played after each move of the player, until it gets stuck.
+     *
+     * @param autoSolving   {@link boolean} should the auto-solver be switched on?
+     */
+    public void setAutoSolving(boolean autoSolving) {
+        this.autoSolving = autoSolving;
+        if (autoSolving && !this.replaying) {
+            final Game game = this.game;
+            this.gameExecutor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    solveAll(game);
+                }
+            });
+        }
+    }
+
+    /**
+     * Chooses the {@link model.solver.Solver} of the hints and the auto-solver. The
+     * {@link model.solver.GaussianSolver} decides more cells, the {@link model.solver.RuleSolver} is faster.
+     *
+     * @param gaussianSolving   {@link boolean} should the {@link model.solver.GaussianSolver} be used?
+     */
+    public void setGaussianSolving(boolean gaussianSolving) {
+        this.gaussianSolving = gaussianSolving;
+    }
+
+    /**
+     * @return {@link model.solver.Solver} chosen for the hints and the auto-solver.
+     */
+    private Solver getSolver() {
+        return this.gaussianSolving ? this.gaussianSolver : this.ruleSolver;
+    }
+
+    /**
+     * Shows or hides the heatmap, which tints the closed cells by the probability that they are mines.
+     *
+     * @param heatmap       {@link boolean} should the heatmap be shown?
+     */
+    public void setHeatmap(boolean heatmap) {
+        this.heatmap = heatmap;
+        if (heatmap && !this.replaying)
+            this.updateHeatmap(this.game);
+        else
+            this.mineField.setProbabilities(null);
+    }
+
+    /**
+     * Calculates the probabilities of the given {@link model.Game} on the game thread after all pending moves and shows
+     * them on the Event Dispatch Thread, if the heatmap is switched on. Requests are coalesced while one is waiting.
+     *
+     * @param game          {@link model.Game} whose pitch changed.
+     */
+    private void updateHeatmap(final Game game) {
+        if (!this.heatmap || !this.heatmapPending.compareAndSet(false, true))
+            return;
+
+        this.gameExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                heatmapPending.set(false);
+                final Probabilities probabilities = probabilitySolver.compute(game);
+                SwingUtilities.invokeLater(new Runnable() {
+                    @Override
+                    public void run() {
+                        // The {@link model.Game} may have been replaced or the heatmap switched off meanwhile
+                        if (heatmap && !replaying && game == mineField.getGame())
+                            mineField.setProbabilities(probabilities);
+                    }
+                });
+            }
+        });
+    }
+
+    /**
+     * Plays the deductions of the {@link model.solver.Solver} until it gets stuck, the {@link model.Game} is over or the
+     * auto-solver is switched off. The whole run is one step, so it is undone at once. Runs on the game thread.
+     *
+     * @param game          {@link model.Game} to solve.
+     */
+    private void solveAll(Game game) {
+        Board board = game.getBoard();
+        game.beginStep();
+        try {
+            while (this.autoSolving && !game.isEnded()) {
+                Deduction deduction = this.getSolver().solve(game);
+                if (deduction.isEmpty())
+                    return;
+
+                for (int n = 0; n < deduction.getMineCount(); n++) {
+                    int cell = deduction.getMine(n);
+                    game.markField(board.getX(cell), board.getY(cell));
+                }
+                for (int n = 0; n < deduction.getSafeCount() && !game.isEnded(); n++) {
+                    int cell = deduction.getSafeCell(n);
+                    game.openField(board.getX(cell), board.getY(cell));
+                }
+            }
+        } finally {
+            game.endStep();
+        }
     }
 
     /**
@@ -153,6 +590,8 @@ public class Controller {
      */
     public void changeGamePorperties(int fieldSize, double pMine){
 
+            this.stopReplay();
+
             // Calculates height of the new pitch
             fieldSize = (int) Math.sqrt((double) fieldSize);
 
@@ -165,36 +604,150 @@ public class Controller {
     }
 
     /**
-     * Loads a saved {@link model.Game} by using an {@link java.io.ObjectInputStream}.
+     * Shows a new {@link model.EndlessBoard} instead of the {@link model.Game}. The {@link model.Game} is left: its
+     * journal is deleted, so it is not recovered, and neither autosaved nor recorded anymore.
      *
-     * @see java.io.ObjectInputStream
+     * @param pMine         {@link double} Represents the probability that a cell is a mine.
+     */
+    public void newEndlessGame(double pMine) {
+        this.stopReplay();
+        this.controlInterface.stopTimer();
+
+        EndlessBoard board;
+        try {
+            board = new EndlessBoard(new Random().nextLong(), pMine, MAX_ENDLESS_CHUNKS,
+                    EndlessBoard.getDefaultSpillDirectory());
+        } catch (IOException e) {
+            e.printStackTrace();
+            JOptionPane.showMessageDialog(null, e.getMessage(), "Can't start endless game", JOptionPane.ERROR_MESSAGE);
+            this.resumeGame();
+            return;
+        }
+
+        this.flushMappedFile(true);
+        this.disposeEndlessBoard();
+        this.endlessBoard = board;
+        this.endlessBoard.addPropertyChangeListener(new PropertyChangeListener() {
+            @Override
+            public void propertyChange(final PropertyChangeEvent propertyChangeEvent) {
+                if (!EndlessBoard.ENDED.equals(propertyChangeEvent.getPropertyName()))
+                    return;
+
+                // The mine was opened on the game thread
+                SwingUtilities.invokeLater(new Runnable() {
+                    @Override
+                    public void run() {
+                        EndlessBoard board = (EndlessBoard) propertyChangeEvent.getSource();
+                        // Ignore a board which was replaced meanwhile
+                        if (board == endlessBoard)
+                            endlessGameOver(board);
+                    }
+                });
+            }
+        });
+        this.deleteJournal();
+        this.stopAutoSave();
+        this.stopRecording();
+
+        this.mineField.clear();
+        this.mineField.initEndless(this.endlessBoard);
+        this.containingFrame.clear();
+        this.containingFrame.initComponents();
+        this.controlInterface.setEndless(true);
+        this.controlInterface.startTimer(new int[]{0, 0, 0});
+    }
+
+    /**
+     * Asks the user if he wants to play a new {@link model.EndlessBoard} after a mine of the given one was opened,
+     * otherwise the application will close. Called on the Event Dispatch Thread.
+     *
+     * @param board         {@link model.EndlessBoard} which is over.
+     */
+    private void endlessGameOver(EndlessBoard board) {
+        this.pauseGame();
+
+        ImageIcon icon = new ImageIcon(SpriteCache.get("defeat.png", 80, 1.0));
+        int reply = JOptionPane.showConfirmDialog(null, "Try again?", "You lose", JOptionPane.YES_NO_OPTION,
+                JOptionPane.QUESTION_MESSAGE, icon);
+        if (reply == JOptionPane.YES_OPTION) {
+            this.newEndlessGame(board.getpMine());
+        } else {
+            for (Window window : Window.getWindows()) {
+                if (window instanceof MainFrame)
+                    window.dispose();
+            }
+        }
+    }
+
+    /**
+     * Deletes the spill files of the current {@link model.EndlessBoard} and enables the controls of the
+     * {@link model.Game} again.
+     */
+    private void disposeEndlessBoard() {
+        if (null == this.endlessBoard)
+            return;
+
+        this.endlessBoard.dispose();
+        this.endlessBoard = null;
+        this.controlInterface.setEndless(false);
+    }
+
+    /**
+     * Loads a saved {@link model.Game} from a {@link model.SaveFile} and shows it on the existing pitch. Files of at
+     * least {@link controller.Controller#MAP_THRESHOLD} bytes are mapped into memory, the {@link model.Game} is played
+     * directly in the file and flushed every {@link controller.Controller#FLUSH_DELAY} milliseconds.
+     *
+     * @see model.SaveFile
      * @see javax.swing.JFileChooser
      */
     public void loadGame() {
+        this.stopReplay();
         this.pauseGame();
         JFileChooser chooser = new JFileChooser();
         if (chooser.showOpenDialog(null) == JFileChooser.APPROVE_OPTION) {
 
             try {
                 File f = chooser.getSelectedFile();
-                FileInputStream fis;
-                fis = new FileInputStream(f);
-                ObjectInputStream ois = new ObjectInputStream(fis);
 
-                this.mineField = (MinePanel) ois.readObject();
+                // The current file might be loaded again, so it is written first
+                this.flushMappedFile(true);
+
+                // Large files are played directly in the file
+                SaveFile mappedFile = null;
+                Game game;
+                if (f.length() >= MAP_THRESHOLD) {
+                    mappedFile = SaveFile.map(f);
+                    game = mappedFile.getGame();
+                } else {
+                    game = SaveFile.read(f);
+                }
+
+                this.mappedFile = mappedFile;
+                if (null != this.mappedFile)
+                    this.flushTimer.start();
+                this.disposeEndlessBoard();
 
-                ois.close();
-                fis.close();
-                this.game = this.mineField.getGame();
+                this.game = game;
+                // A mapped {@link model.Game} is stored in its file already
+                if (null == this.mappedFile) {
+                    this.startJournal(false);
+                    this.startAutoSave();
+                } else {
+                    this.deleteJournal();
+                    this.stopAutoSave();
+                }
+                this.startRecording();
+                this.game.setRecycleExecutor(this.recycleExecutor);
                 this.game.addObserver(new GameObserver());
+                this.game.addBoardListener(new HeatmapUpdater(this.game));
                 this.mineField.clear();
                 this.mineField.init(this.game);
+                this.updateHeatmap(this.game);
                 this.containingFrame.clear();
-                this.containingFrame.setMineField(this.mineField);
                 this.containingFrame.initComponents();
-            } catch (Exception e) {
-                // TODO Auto-generated catch block
+            } catch (IOException e) {
                 e.printStackTrace();
+                JOptionPane.showMessageDialog(null, e.getMessage(), "Can't load game", JOptionPane.ERROR_MESSAGE);
             }
 
         }
@@ -203,38 +756,456 @@ public class Controller {
     }
 
     /**
-     * Saves the current {@link model.Game} by using an {@link java.io.ObjectOutputStream}.
+     * Saves the current {@link model.Game} to a {@link model.SaveFile}. It is written on the game thread after all
+     * pending moves, so the pitch can't change meanwhile. The game goes on while it is written, a failure is reported
+     * afterwards.
      *
-     * @see java.io.ObjectOutputStream
+     * @see model.SaveFile
      * @see javax.swing.JFileChooser
      */
     public void saveGame() {
+        this.stopReplay();
         this.pauseGame();
         this.game.setInitialTime(this.controlInterface.getTime());
         JFileChooser chooser = new JFileChooser();
         if (chooser.showSaveDialog(null) == JFileChooser.APPROVE_OPTION) {
 
-            try {
-                File f = chooser.getSelectedFile();
-                FileOutputStream fos;
-                fos = new FileOutputStream(f);
-                ObjectOutputStream oos = new ObjectOutputStream(fos);
-                oos.writeObject(this.mineField);
-                oos.close();
-                fos.close();
-            } catch (Exception e) {
-                // TODO Auto-generated catch block
-                e.printStackTrace();
+            final File f = chooser.getSelectedFile();
+            final Game game = this.game;
+            final SaveFile mappedFile = this.mappedFile;
+            this.gameExecutor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        // The mapped file must not be truncated, it is up to date after a flush
+                        if (null != mappedFile && mappedFile.isFile(f))
+                            mappedFile.flush();
+                        else
+                            SaveFile.write(game, f);
+                    } catch (final IOException e) {
+                        e.printStackTrace();
+                        SwingUtilities.invokeLater(new Runnable() {
+                            @Override
+                            public void run() {
+                                JOptionPane.showMessageDialog(null, e.getMessage(), "Can't save game",
+                                        JOptionPane.ERROR_MESSAGE);
+                            }
+                        });
+                    }
+                }
+            });
+
+        }
+        this.resumeGame();
+    }
+
+    /**
+     * Closes the current {@link model.MoveJournal} and starts one for the current {@link model.Game} on the game
+     * thread.
+     *
+     * @param append    {@link boolean} continue the journal the {@link model.Game} was recovered from?
+     */
+    private void startJournal(final boolean append) {
+        final Future<MoveJournal> oldJournal = this.journal;
+        final Game game = this.game;
+        this.journal = this.gameExecutor.submit(new Callable<MoveJournal>() {
+            @Override
+            public MoveJournal call() {
+                try {
+                    MoveJournal journal = getResult(oldJournal);
+                    if (null != journal)
+                        journal.close();
+                    return new MoveJournal(MoveJournal.getDefaultFile(), game, append);
+                } catch (IOException e) {
+                    // Play on without journal
+                    e.printStackTrace();
+                    return null;
+                }
             }
+        });
+    }
 
+    /**
+     * Returns the result of a task which was submitted to the game thread before. Has to be called on the game thread,
+     * where such a task is done already.
+     *
+     * @param future    {@link java.util.concurrent.Future} of the task, may be null.
+     * @param <T>       type of the result.
+     * @return result of the task, null if there is none or the task failed.
+     */
+    private static <T> T getResult(Future<T> future) {
+        if (null == future)
+            return null;
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        } catch (ExecutionException e) {
+            e.getCause().printStackTrace();
+            return null;
         }
+    }
+
+    /**
+     * Deletes the current {@link model.MoveJournal} on the game thread, so no outdated {@link model.Game} is recovered.
+     */
+    private void deleteJournal() {
+        final Future<MoveJournal> future = this.journal;
+        this.journal = null;
+        if (null == future)
+            return;
+
+        this.gameExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                MoveJournal journal = getResult(future);
+                if (null == journal)
+                    return;
+                try {
+                    journal.delete();
+                } catch (IOException e) {
+                    e.printStackTrace();
+                }
+            }
+        });
+    }
+
+    /**
+     * Flushes the current {@link model.MoveJournal} on the game thread after all pending moves.
+     */
+    private void flushJournal() {
+        final Future<MoveJournal> future = this.journal;
+        if (null == future)
+            return;
+
+        this.gameExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                MoveJournal journal = getResult(future);
+                if (null == journal)
+                    return;
+                try {
+                    journal.flush();
+                } catch (IOException e) {
+                    e.printStackTrace();
+                }
+            }
+        });
+    }
+
+    /**
+     * Starts to autosave the current {@link model.Game} on the game thread.
+     */
+    private void startAutoSave() {
+        this.stopAutoSave();
+        final Game game = this.game;
+        this.autoSave = this.gameExecutor.submit(new Callable<AutoSave>() {
+            @Override
+            public AutoSave call() {
+                return new AutoSave(AutoSave.getDefaultFile(), game);
+            }
+        });
+    }
+
+    /**
+     * Stops to autosave the current {@link model.Game}.
+     */
+    private void stopAutoSave() {
+        final Future<AutoSave> future = this.autoSave;
+        this.autoSave = null;
+        if (null == future)
+            return;
+
+        this.gameExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                AutoSave autoSave = getResult(future);
+                if (null != autoSave)
+                    autoSave.stop();
+            }
+        });
+    }
+
+    /**
+     * Takes a snapshot of the current {@link model.Game} on the game thread after all pending moves and writes it on
+     * the {@link controller.Controller#autoSaveExecutor}. Neither the moves nor the game clock have to wait for it.
+     */
+    private void autoSave() {
+        final Future<AutoSave> future = this.autoSave;
+        if (null == future)
+            return;
+
+        // Store the elapsed time too
+        if (!this.replaying)
+            this.game.setInitialTime(this.controlInterface.getTime());
+
+        this.gameExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                AutoSave autoSave = getResult(future);
+                final AutoSave.Snapshot snapshot = null == autoSave ? null : autoSave.snapshot();
+                if (null == snapshot)
+                    return;
+
+                autoSaveExecutor.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        try {
+                            snapshot.write();
+                        } catch (IOException e) {
+                            e.printStackTrace();
+                        }
+                    }
+                });
+            }
+        });
+    }
+
+    /**
+     * Reads the last autosave, e.g. because the {@link model.MoveJournal} is damaged.
+     *
+     * @return {@link model.Game} of the last autosave, null if there is none or it can't be read.
+     */
+    private Game readAutoSave() {
+        File file = AutoSave.getDefaultFile();
+        if (!file.isFile())
+            return null;
+        try {
+            Game game = SaveFile.read(file);
+            return game.isEnded() ? null : game;
+        } catch (IOException e) {
+            e.printStackTrace();
+            return null;
+        }
+    }
+
+    /**
+     * Starts to record the current {@link model.Game} on the game thread. A {@link model.Game} in a mapped
+     * {@link model.SaveFile} is not recorded, since that would read the whole file.
+     */
+    private void startRecording() {
+        this.stopRecording();
+        if (null != this.mappedFile)
+            return;
+
+        final Game game = this.game;
+        this.replay = this.gameExecutor.submit(new Callable<Replay>() {
+            @Override
+            public Replay call() {
+                return new Replay(game);
+            }
+        });
+    }
+
+    /**
+     * Stops to record the current {@link model.Game} on the game thread.
+     */
+    private void stopRecording() {
+        final Future<Replay> future = this.replay;
+        this.replay = null;
+        if (null == future)
+            return;
+
+        this.gameExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                Replay replay = getResult(future);
+                if (null != replay)
+                    replay.stopRecording();
+            }
+        });
+    }
+
+    /**
+     * Prepares the playback of the current round on the game thread and shows it instead of the {@link model.Game},
+     * positioned after the last move. The game clock is paused and the pitch can't be played on meanwhile. Games in a
+     * mapped {@link model.SaveFile} are not recorded, the player is told so.
+     */
+    public void startReplay() {
+        if (this.replaying)
+            return;
+        if (null == this.replay) {
+            JOptionPane.showMessageDialog(null, "Games played in a mapped file can't be replayed.", "Replay",
+                    JOptionPane.INFORMATION_MESSAGE);
+            return;
+        }
+
+        final Future<Replay> future = this.replay;
+        this.gameExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                Replay replay = getResult(future);
+                if (null == replay)
+                    return;
+
+                final Game playback = replay.getPlayback();
+                replay.seek(replay.getMoveCount());
+                final int moveCount = replay.getMoveCount();
+                final int position = replay.getPosition();
+                SwingUtilities.invokeLater(new Runnable() {
+                    @Override
+                    public void run() {
+                        showReplay(future, playback, moveCount, position);
+                    }
+                });
+            }
+        });
+    }
+
+    /**
+     * Shows the prepared playback instead of the {@link model.Game}, unless the recording was replaced meanwhile.
+     *
+     * @param recording     {@link java.util.concurrent.Future} of the {@link model.Replay} the playback belongs to.
+     * @param playback      {@link model.Game} showing the playback.
+     * @param moveCount     {@link int} amount of recorded moves.
+     * @param position      {@link int} amount of moves the playback shows.
+     */
+    private void showReplay(Future<Replay> recording, Game playback, int moveCount, int position) {
+        if (this.replaying || recording != this.replay)
+            return;
+
+        this.replaying = true;
+        this.pauseGame();
+        this.mineField.setMoveExecutor(new Executor() {
+            @Override
+            public void execute(Runnable runnable) {
+                // The playback can't be played on
+            }
+        });
+        this.mineField.clear();
+        this.mineField.init(playback);
+        this.controlInterface.showPlayback(moveCount, position);
+    }
+
+    /**
+     * Moves the playback to the state after the given amount of moves on the game thread.
+     *
+     * @param move          {@link int} amount of moves to show.
+     */
+    public void seekReplay(int move) {
+        if (!this.replaying)
+            return;
+
+        final Future<Replay> future = this.replay;
+        this.replayTarget.set(move);
+        this.gameExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                Replay replay = getResult(future);
+                if (null == replay)
+                    return;
+                replay.seek(replayTarget.get());
+                final int position = replay.getPosition();
+                SwingUtilities.invokeLater(new Runnable() {
+                    @Override
+                    public void run() {
+                        if (replaying)
+                            controlInterface.setPlaybackPosition(position);
+                    }
+                });
+            }
+        });
+    }
+
+    /**
+     * Shows the {@link model.Game} again instead of the playback and resumes the game clock.
+     */
+    public void stopReplay() {
+        if (!this.replaying)
+            return;
+
+        this.replaying = false;
+        this.controlInterface.hidePlayback();
+        this.mineField.clear();
+        this.mineField.init(this.game);
+        this.mineField.setMoveExecutor(this.moveExecutor);
+        this.updateHeatmap(this.game);
         this.resumeGame();
     }
 
+    public boolean isReplaying() {
+        return replaying;
+    }
+
+    /**
+     * Flushes the {@link controller.Controller#mappedFile} on the game thread after all pending moves. Closing waits
+     * until the file is closed.
+     *
+     * @param close     {@link boolean} should it be closed afterwards because another {@link model.Game} is shown?
+     */
+    private void flushMappedFile(final boolean close) {
+        final SaveFile mappedFile = this.mappedFile;
+        if (null == mappedFile)
+            return;
+
+        if (close) {
+            this.flushTimer.stop();
+            this.mappedFile = null;
+        } else {
+            // Store the elapsed time too
+            this.game.setInitialTime(this.controlInterface.getTime());
+        }
+
+        Future<?> future = this.gameExecutor.submit(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    if (close)
+                        mappedFile.close();
+                    else
+                        mappedFile.flush();
+                } catch (IOException e) {
+                    e.printStackTrace();
+                }
+            }
+        });
+
+        // The file may be opened again right away
+        if (close) {
+            try {
+                future.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (ExecutionException e) {
+                e.getCause().printStackTrace();
+            }
+        }
+    }
+
     public Game getGame() {
         return game;
     }
 
+    /**
+     * Class: HeatmapUpdater
+     * Implements a {@link model.BoardListener} which updates the heatmap whenever the pitch of its {@link model.Game}
+     * changes.
+     *
+     * @see model.BoardListener
+     */
+    class HeatmapUpdater implements BoardListener {
+
+        /**
+         * {@link model.Game} this {@link controller.Controller.HeatmapUpdater} listens to.
+         */
+        private final Game game;
+
+        /**
+         * Class constructor.
+         *
+         * @param game          {@link model.Game} to listen to.
+         */
+        public HeatmapUpdater(Game game) {
+            this.game = game;
+        }
+
+        @Override
+        public void boardChanged(BoardDelta delta) {
+            updateHeatmap(this.game);
+        }
+    }
+
     /**
      * Class: GameObserver
      * Implements an {@link java.util.Observer} which should observe a {@link model.Game}. If it is the first turn of
@@ -254,7 +1225,8 @@ public class Controller {
 
         /**
          * Update method of this observer. Observes a {@link model.Game}. If its over is shows you a
-         * {@link javax.swing.JOptionPane} which asks the user if he wants to play agian.
+         * {@link javax.swing.JOptionPane} which asks the user if he wants to play agian. The
+         * {@link model.Game} notifies on the game thread, so the dialog is shown on the Event Dispatch Thread.
          *
          * @param arg0          {@link java.util.Observable} observed observable object.
          * @param arg1          {@link java.lang.Object} optional parameter.
@@ -265,7 +1237,17 @@ public class Controller {
          * @see model.Game
          * @see javax.swing.JOptionPane
          */
-        public void update(Observable arg0, Object arg1) {
+        public void update(final Observable arg0, final Object arg1) {
+            if (!SwingUtilities.isEventDispatchThread()) {
+                SwingUtilities.invokeLater(new Runnable() {
+                    @Override
+                    public void run() {
+                        update(arg0, arg1);
+                    }
+                });
+                return;
+            }
+
             Game game = (Game) arg0;
             int reply;
 
@@ -275,15 +1257,11 @@ public class Controller {
                 thisController.pauseGame();
 
                 if (!game.isWon()) {
-                    URL url = this.getClass().getResource("/" + "defeat.png");
-                    ImageIcon icon = new ImageIcon(url);
-                    icon.setImage(icon.getImage().getScaledInstance(80, 80, Image.SCALE_DEFAULT));
+                    ImageIcon icon = new ImageIcon(SpriteCache.get("defeat.png", 80, 1.0));
                     reply = JOptionPane.showConfirmDialog(null, "Try again?", "You lose", JOptionPane.YES_NO_OPTION, JOptionPane.QUESTION_MESSAGE, icon);
 
                 } else {
-                    URL url = this.getClass().getResource("/" + "victory.png");
-                    ImageIcon icon = new ImageIcon(url);
-                    icon.setImage(icon.getImage().getScaledInstance(80, 80, Image.SCALE_DEFAULT));
+                    ImageIcon icon = new ImageIcon(SpriteCache.get("victory.png", 80, 1.0));
                     reply = JOptionPane.showConfirmDialog(null, "Play again?", "You win", JOptionPane.YES_NO_OPTION, JOptionPane.QUESTION_MESSAGE, icon);
                 }
 
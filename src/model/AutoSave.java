@@ -0,0 +1,179 @@
+/*
+ * (C) Copyright 2014 Mark Alexander Dietrich <mark.dietrich93@gmail.com>.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Contributors:
+ *     Mark Alexander Dietrich
+ */
+
+package model;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * Created by Mark Alexander Dietrich on 06/11/14.
+ * <p/>
+ * File: AutoSave.java
+ * <p/>
+ * Class: AutoSave
+ * Periodically saves a {@link model.Game} without holding it up. {@link model.AutoSave#snapshot} runs on the thread of
+ * the {@link model.Game} and only takes snapshots: the opened and marked bitsets are
+ * {@link model.BitPlane.PersistentBitPlane}s, whose snapshots share all chunks with the {@link model.Game}, and the
+ * mines are copied only if their version changed since the last snapshot. The returned
+ * {@link model.AutoSave.Snapshot} is then compressed and written on any other thread while the {@link model.Game} goes
+ * on. The file is a compressed {@link model.SaveFile}, so it can be loaded like any other one.
+ * <p/>
+ * Nothing is saved if the {@link model.Game} did not change since the last snapshot, if it is over, if it lives in a
+ * mapped {@link model.SaveFile} or if the previous snapshot is still being written.
+ *
+ * @author Mark Alexander Dietrich
+ * @see model.SaveFile
+ * @see model.BitPlane.PersistentBitPlane
+ */
+public class AutoSave implements BoardListener {
+
+    /**
+     * {@link model.Game} to save.
+     */
+    private final Game game;
+
+    /**
+     * File to write.
+     */
+    private final File file;
+
+    /**
+     * Has the {@link model.Game} changed since the last snapshot?
+     */
+    private boolean changed;
+
+    /**
+     * Is a {@link model.AutoSave.Snapshot} being written?
+     */
+    private volatile boolean writing;
+
+    /**
+     * Copy of the mines of the last snapshot, together with the {@link model.Board} and its version of the mines.
+     */
+    private BitPlane mines;
+    private Board mineBoard;
+    private int mineVersion;
+
+    /**
+     * Class constructor. Starts to watch the given {@link model.Game} for changes.
+     *
+     * @param file {@link java.io.File} to write.
+     * @param game {@link model.Game} to save.
+     */
+    public AutoSave(File file, Game game) {
+        this.file = file;
+        this.game = game;
+        this.game.addBoardListener(this);
+    }
+
+    /**
+     * @return {@link java.io.File} in the home directory of the user the {@link model.Game} is saved to.
+     */
+    public static File getDefaultFile() {
+        return new File(new File(System.getProperty("user.home"), ".minesweeper"), "autosave");
+    }
+
+    /**
+     * Notes that the {@link model.Game} has to be saved again.
+     *
+     * @param delta {@link model.BoardDelta} describing the change.
+     */
+    @Override
+    public void boardChanged(BoardDelta delta) {
+        this.changed = true;
+    }
+
+    /**
+     * Stops watching the {@link model.Game}.
+     */
+    public void stop() {
+        this.game.removeBoardListener(this);
+    }
+
+    /**
+     * Takes a snapshot of the {@link model.Game}. It has to be called on the thread of the {@link model.Game}, it does
+     * not depend on the size of the pitch unless the mines have changed.
+     *
+     * @return {@link model.AutoSave.Snapshot} to write, null if there is nothing to save.
+     */
+    public Snapshot snapshot() {
+        Board board = this.game.getBoard();
+        if (!this.changed || this.writing || this.game.isEnded()
+                || !(board.getOpenPlane() instanceof BitPlane.PersistentBitPlane))
+            return null;
+
+        // The mines only change in the first turn and on a reset
+        if (null == this.mines || board != this.mineBoard || board.getMineVersion() != this.mineVersion) {
+            BitPlane source = board.getMinePlane();
+            BitPlane mines = new BitPlane.HeapBitPlane(source.getWordCount());
+            for (int w = 0; w < source.getWordCount(); w++)
+                mines.setWord(w, source.getWord(w));
+            this.mines = mines;
+            this.mineBoard = board;
+            this.mineVersion = board.getMineVersion();
+        }
+
+        this.changed = false;
+        this.writing = true;
+        return new Snapshot(SaveFile.createHeader(this.game), this.mines,
+                ((BitPlane.PersistentBitPlane) board.getOpenPlane()).snapshot(),
+                ((BitPlane.PersistentBitPlane) board.getMarkedPlane()).snapshot());
+    }
+
+    /**
+     * Class: Snapshot
+     * State of the {@link model.Game} at the time of {@link model.AutoSave#snapshot}. It does not change anymore, so it
+     * can be written on any thread.
+     */
+    public class Snapshot {
+
+        private final ByteBuffer header;
+
+        // Bitsets
+        private final BitPlane mines;
+        private final BitPlane opened;
+        private final BitPlane marked;
+
+        private Snapshot(ByteBuffer header, BitPlane mines, BitPlane opened, BitPlane marked) {
+            this.header = header;
+            this.mines = mines;
+            this.opened = opened;
+            this.marked = marked;
+        }
+
+        /**
+         * Compresses the snapshot and replaces the file of the {@link model.AutoSave} with it.
+         *
+         * @throws IOException if the file can't be written.
+         */
+        public void write() throws IOException {
+            try {
+                File directory = file.getAbsoluteFile().getParentFile();
+                if (null != directory && !directory.isDirectory() && !directory.mkdirs())
+                    throw new IOException("Can't create directory " + directory);
+
+                SaveFile.writeCompressed(this.header, this.mines, this.opened, this.marked, file);
+            } finally {
+                writing = false;
+            }
+        }
+    }
+}
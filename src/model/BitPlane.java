@@ -0,0 +1,328 @@
+/*
+ * (C) Copyright 2014 Mark Alexander Dietrich <mark.dietrich93@gmail.com>.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Contributors:
+ *     Mark Alexander Dietrich
+ */
+
+package model;
+
+import java.io.Serializable;
+import java.nio.LongBuffer;
+import java.nio.MappedByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Created by Mark Alexander Dietrich on 06/11/14.
+ * <p/>
+ * File: BitPlane.java
+ * <p/>
+ * Class: BitPlane
+ * One bit per cell of a {@link model.Board}, stored in 64 bit words. The words are either kept on the heap, in a
+ * persistent copy-on-write structure which allows cheap snapshots, or in a memory-mapped region of a
+ * {@link model.SaveFile}, where the operating system loads and writes back the pages on demand.
+ *
+ * @author Mark Alexander Dietrich
+ * @see model.Board
+ * @see model.SaveFile
+ */
+abstract class BitPlane implements Serializable {
+
+    /**
+     * {@code serialVersionUID}, which is used during deserialization to verify that the sender and receiver of a
+     * serialized object have loaded classes for that object that are compatible with respect to serialization. It has
+     * to be {@link final} and {@link long}.
+     *
+     * @see java.io.ObjectOutputStream
+     * @see java.io.ObjectInputStream
+     * @see final
+     * @see long
+     */
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * @return {@link int} amount of words.
+     */
+    abstract int getWordCount();
+
+    abstract long getWord(int word);
+
+    abstract void setWord(int word, long value);
+
+    /**
+     * Sets every word to the given value.
+     *
+     * @param value {@link long} new value of the words.
+     */
+    abstract void fill(long value);
+
+    /**
+     * Writes changed words to the storage device, if there is any.
+     */
+    void force() {
+    }
+
+    boolean get(int index) {
+        return 0 != (this.getWord(index >>> 6) & (1L << index));
+    }
+
+    void set(int index, boolean value) {
+        int word = index >>> 6;
+        if (value)
+            this.setWord(word, this.getWord(word) | (1L << index));
+        else
+            this.setWord(word, this.getWord(word) & ~(1L << index));
+    }
+
+    /**
+     * Class: HeapBitPlane
+     * Keeps the words in a {@link long[]}.
+     */
+    static final class HeapBitPlane extends BitPlane {
+
+        private static final long serialVersionUID = 1L;
+
+        private final long[] words;
+
+        HeapBitPlane(int wordCount) {
+            this.words = new long[wordCount];
+        }
+
+        @Override
+        int getWordCount() {
+            return this.words.length;
+        }
+
+        @Override
+        long getWord(int word) {
+            return this.words[word];
+        }
+
+        @Override
+        void setWord(int word, long value) {
+            this.words[word] = value;
+        }
+
+        @Override
+        void fill(long value) {
+            Arrays.fill(this.words, value);
+        }
+
+        @Override
+        boolean get(int index) {
+            return 0 != (this.words[index >>> 6] & (1L << index));
+        }
+
+        @Override
+        void set(int index, boolean value) {
+            if (value)
+                this.words[index >>> 6] |= 1L << index;
+            else
+                this.words[index >>> 6] &= ~(1L << index);
+        }
+    }
+
+    /**
+     * Class: PersistentBitPlane
+     * Keeps the words in chunks of {@code 2^CHUNK_BITS} words, which are grouped by {@code 2^GROUP_BITS}. A snapshot
+     * only copies the array of groups, afterwards every group and chunk is copied the first time it is written. So a
+     * snapshot costs memory proportional to the words changed after it, and restoring one only replaces the array of
+     * groups. Chunks which were never written share one chunk of zeros. A snapshot is a read-only
+     * {@link model.BitPlane.PersistentBitPlane} itself, so it can be handed to another thread.
+     */
+    static final class PersistentBitPlane extends BitPlane {
+
+        private static final long serialVersionUID = 1L;
+
+        private static final int CHUNK_BITS = 6;
+        private static final int GROUP_BITS = 6;
+        private static final int CHUNK_MASK = (1 << CHUNK_BITS) - 1;
+        private static final int GROUP_MASK = (1 << GROUP_BITS) - 1;
+
+        /**
+         * Shared by all chunks which were never written. It is never changed.
+         */
+        private static final long[] ZERO_CHUNK = new long[1 << CHUNK_BITS];
+
+        private final int wordCount;
+
+        /**
+         * Groups of chunks of words.
+         */
+        private long[][][] groups;
+
+        // Which groups and chunks were copied since the last snapshot and may be written, created on demand
+        private boolean[] ownedGroups;
+        private boolean[][] ownedChunks;
+
+        PersistentBitPlane(int wordCount) {
+            this.wordCount = wordCount;
+            int chunks = (wordCount + CHUNK_MASK) >>> CHUNK_BITS;
+            int groupCount = (chunks + GROUP_MASK) >>> GROUP_BITS;
+            this.groups = new long[groupCount][][];
+            this.fill(0L);
+        }
+
+        /**
+         * Class constructor of a snapshot. It owns none of the given groups.
+         */
+        private PersistentBitPlane(int wordCount, long[][][] groups) {
+            this.wordCount = wordCount;
+            this.groups = groups;
+        }
+
+        @Override
+        int getWordCount() {
+            return this.wordCount;
+        }
+
+        @Override
+        long getWord(int word) {
+            return this.groups[word >>> (CHUNK_BITS + GROUP_BITS)][(word >>> CHUNK_BITS) & GROUP_MASK][word & CHUNK_MASK];
+        }
+
+        @Override
+        void setWord(int word, long value) {
+            this.getChunk(word)[word & CHUNK_MASK] = value;
+        }
+
+        @Override
+        boolean get(int index) {
+            return 0 != (this.getWord(index >>> 6) & (1L << index));
+        }
+
+        @Override
+        void set(int index, boolean value) {
+            int word = index >>> 6;
+            long[] chunk = this.getChunk(word);
+            if (value)
+                chunk[word & CHUNK_MASK] |= 1L << index;
+            else
+                chunk[word & CHUNK_MASK] &= ~(1L << index);
+        }
+
+        @Override
+        void fill(long value) {
+            long[] chunk = ZERO_CHUNK;
+            if (0L != value) {
+                chunk = new long[1 << CHUNK_BITS];
+                Arrays.fill(chunk, value);
+            }
+            // All groups may share the same chunk, they are copied before they are written
+            long[][] group = new long[1 << GROUP_BITS][];
+            Arrays.fill(group, chunk);
+            Arrays.fill(this.groups, group);
+            this.ownedGroups = null;
+        }
+
+        /**
+         * Takes a snapshot of the current words. Following changes don't affect it.
+         *
+         * @return {@link model.BitPlane.PersistentBitPlane} containing the current words.
+         */
+        PersistentBitPlane snapshot() {
+            this.ownedGroups = null;
+            return new PersistentBitPlane(this.wordCount, this.groups.clone());
+        }
+
+        /**
+         * Sets the words to the state of the given snapshot.
+         *
+         * @param snapshot {@link model.BitPlane.PersistentBitPlane} returned by
+         *                 {@link model.BitPlane.PersistentBitPlane#snapshot}.
+         */
+        void restore(PersistentBitPlane snapshot) {
+            this.groups = snapshot.groups.clone();
+            this.ownedGroups = null;
+        }
+
+        /**
+         * Returns the chunk containing the given word, copying it and its group if they are shared.
+         */
+        private long[] getChunk(int word) {
+            int g = word >>> (CHUNK_BITS + GROUP_BITS);
+            int c = (word >>> CHUNK_BITS) & GROUP_MASK;
+
+            if (null == this.ownedGroups) {
+                this.ownedGroups = new boolean[this.groups.length];
+                this.ownedChunks = new boolean[this.groups.length][];
+            }
+
+            long[][] group = this.groups[g];
+            if (!this.ownedGroups[g]) {
+                group = group.clone();
+                this.groups[g] = group;
+                this.ownedGroups[g] = true;
+                this.ownedChunks[g] = new boolean[1 << GROUP_BITS];
+            }
+
+            long[] chunk = group[c];
+            if (!this.ownedChunks[g][c]) {
+                chunk = chunk.clone();
+                group[c] = chunk;
+                this.ownedChunks[g][c] = true;
+            }
+            return chunk;
+        }
+    }
+
+    /**
+     * Class: MappedBitPlane
+     * Keeps the words in a {@link java.nio.MappedByteBuffer}. It can't be serialized.
+     */
+    static final class MappedBitPlane extends BitPlane {
+
+        private static final long serialVersionUID = 1L;
+
+        private final transient MappedByteBuffer buffer;
+        private final transient LongBuffer words;
+
+        /**
+         * Class constructor.
+         *
+         * @param buffer {@link java.nio.MappedByteBuffer} containing exactly the words of this plane.
+         */
+        MappedBitPlane(MappedByteBuffer buffer) {
+            this.buffer = buffer;
+            this.words = buffer.asLongBuffer();
+        }
+
+        @Override
+        int getWordCount() {
+            return this.words.capacity();
+        }
+
+        @Override
+        long getWord(int word) {
+            return this.words.get(word);
+        }
+
+        @Override
+        void setWord(int word, long value) {
+            this.words.put(word, value);
+        }
+
+        @Override
+        void fill(long value) {
+            for (int w = 0; w < this.words.capacity(); w++)
+                this.words.put(w, value);
+        }
+
+        @Override
+        void force() {
+            this.buffer.force();
+        }
+    }
+}
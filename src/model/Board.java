@@ -0,0 +1,393 @@
+/*
+ * (C) Copyright 2014 Mark Alexander Dietrich <mark.dietrich93@gmail.com>.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Contributors:
+ *     Mark Alexander Dietrich
+ */
+
+package model;
+
+import java.io.Serializable;
+import java.util.Arrays;
+
+/**
+ * Created by Mark Alexander Dietrich on 06/11/14.
+ * <p/>
+ * File: Board.java
+ * <p/>
+ * Class: Board
+ * Stores the state of every cell of a {@link model.Game} in primitive arrays. Mine, open and marked flags are packed
+ * into one bit per cell ({@link model.BitPlane}s), the amount of neighbour mines takes one {@link byte} per cell. A
+ * cell is addressed by its index {@code x * width + y}, so a {@link model.Board} has at most
+ * {@link java.lang.Integer#MAX_VALUE} cells.
+ * <p/>
+ * The {@link model.BitPlane}s of a mapped {@link model.Board} lie in a {@link model.SaveFile}. It doesn't keep the
+ * amount of neighbour mines but counts them whenever they are needed, so opening it does not touch every cell.
+ *
+ * @author Mark Alexander Dietrich
+ * @see model.Game
+ * @see model.Field
+ * @see java.io.Serializable
+ */
+public class Board implements Serializable {
+
+    /**
+     * {@code serialVersionUID}, which is used during deserialization to verify that the sender and receiver of a
+     * serialized object have loaded classes for that object that are compatible with respect to serialization. It has
+     * to be {@link final} and {@link long}.
+     *
+     * @see java.io.ObjectOutputStream
+     * @see java.io.ObjectInputStream
+     * @see final
+     * @see long
+     */
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Bits of a cell state, see {@link model.Board#getState}.
+     */
+    public static final byte MINE = 1;
+    public static final byte OPEN = 2;
+    public static final byte MARKED = 4;
+
+    /**
+     * Height of the pitch.
+     */
+    private final int height;
+
+    /**
+     * Width of the pitch.
+     */
+    private final int width;
+
+    /**
+     * Amount of cells.
+     */
+    private final int cells;
+
+    // One bit per cell
+    private final BitPlane mines;
+    private final BitPlane opened;
+    private final BitPlane marked;
+
+    // Amount of mines bordering on each cell, null if they are counted on demand
+    private final byte[] neighborMines;
+
+    /**
+     * Increased whenever the mines change, so copies of them can be reused as long as it stays the same.
+     */
+    private int mineVersion;
+
+    /**
+     * Class constructor. All cells are closed, unmarked and no mines are placed. The opened and marked cells are kept
+     * in {@link model.BitPlane.PersistentBitPlane}s, so the {@link model.Game} can take snapshots of them.
+     *
+     * @param height {@link int} Height of the pitch.
+     * @param width  {@link int} Width of the pitch.
+     */
+    public Board(int height, int width) {
+        if (height <= 0 || width <= 0 || (long) height * width > Integer.MAX_VALUE)
+            throw new IllegalArgumentException("Unsupported board size " + height + "x" + width);
+
+        this.height = height;
+        this.width = width;
+        this.cells = height * width;
+
+        int words = getWordCount(this.cells);
+        this.mines = new BitPlane.HeapBitPlane(words);
+        this.opened = new BitPlane.PersistentBitPlane(words);
+        this.marked = new BitPlane.PersistentBitPlane(words);
+        this.neighborMines = new byte[this.cells];
+    }
+
+    /**
+     * Class constructor. Uses the given {@link model.BitPlane}s, which may lie in a {@link model.SaveFile}. The amount
+     * of neighbour mines is counted on demand.
+     *
+     * @param height {@link int} Height of the pitch.
+     * @param width  {@link int} Width of the pitch.
+     * @param mines  {@link model.BitPlane} of the mines.
+     * @param opened {@link model.BitPlane} of the opened cells.
+     * @param marked {@link model.BitPlane} of the marked cells.
+     */
+    Board(int height, int width, BitPlane mines, BitPlane opened, BitPlane marked) {
+        if (height <= 0 || width <= 0 || (long) height * width > Integer.MAX_VALUE)
+            throw new IllegalArgumentException("Unsupported board size " + height + "x" + width);
+
+        this.height = height;
+        this.width = width;
+        this.cells = height * width;
+        this.mines = mines;
+        this.opened = opened;
+        this.marked = marked;
+        this.neighborMines = null;
+    }
+
+    /**
+     * @param cells {@link int} amount of cells.
+     * @return {@link int} amount of words of a {@link model.BitPlane} with one bit per cell.
+     */
+    static int getWordCount(int cells) {
+        return (int) (((long) cells + 63) >>> 6);
+    }
+
+    /**
+     * Converts coordinates to a cell index.
+     *
+     * @param x {@link int} x coordinate
+     * @param y {@link int} y coordinate
+     * @return {@link int} index of the cell.
+     */
+    public int index(int x, int y) {
+        return x * this.width + y;
+    }
+
+    public int getX(int index) {
+        return index / this.width;
+    }
+
+    public int getY(int index) {
+        return index % this.width;
+    }
+
+    public boolean isMine(int index) {
+        return this.mines.get(index);
+    }
+
+    /**
+     * Places or removes a mine. Only the amount of neighbour mines of the bordering cells is updated.
+     *
+     * @param index {@link int} index of the cell.
+     * @param mine  {@link boolean} should the cell be a mine?
+     */
+    public void setMine(int index, boolean mine) {
+        if (this.mines.get(index) != mine) {
+            this.mines.set(index, mine);
+            this.mineVersion++;
+            if (null != this.neighborMines)
+                this.addToNeighbors(index, mine ? 1 : -1);
+        }
+    }
+
+    /**
+     * Places a mine without recalculating the amount of neighbour mines. Used while the pitch is generated, call
+     * {@link model.Board#countNeighborMines} afterwards.
+     *
+     * @param index {@link int} index of the cell.
+     */
+    void putMine(int index) {
+        this.mines.set(index, true);
+    }
+
+    /**
+     * Turns every mine of the given range into a safe cell and vice versa without recalculating the amount of
+     * neighbour mines. The range has to start at a multiple of 64.
+     *
+     * @param from {@link int} first cell of the range.
+     * @param to   {@link int} cell behind the range.
+     */
+    void invertMines(int from, int to) {
+        int word = from >>> 6;
+        for (int i = from; i < to; i += 64, word++) {
+            long mask = to - i >= 64 ? -1L : (1L << (to - i)) - 1;
+            this.mines.setWord(word, this.mines.getWord(word) ^ mask);
+        }
+    }
+
+    public boolean isOpen(int index) {
+        return this.opened.get(index);
+    }
+
+    public void setOpen(int index, boolean open) {
+        this.opened.set(index, open);
+    }
+
+    public boolean isMarked(int index) {
+        return this.marked.get(index);
+    }
+
+    public void setMarked(int index, boolean marked) {
+        this.marked.set(index, marked);
+    }
+
+    /**
+     * Combines the flags of the given cell.
+     *
+     * @param index {@link int} index of the cell.
+     * @return {@link byte} containing {@link model.Board#MINE}, {@link model.Board#OPEN} and {@link model.Board#MARKED}
+     * if the respective flag is set.
+     */
+    public byte getState(int index) {
+        int state = 0;
+        if (this.mines.get(index))
+            state |= MINE;
+        if (this.opened.get(index))
+            state |= OPEN;
+        if (this.marked.get(index))
+            state |= MARKED;
+        return (byte) state;
+    }
+
+    /**
+     * Removes all mines, opens and marks, so this {@link model.Board} can be used for another pitch of the same size.
+     */
+    void clear() {
+        this.mines.fill(0L);
+        this.mineVersion++;
+        this.opened.fill(0L);
+        this.marked.fill(0L);
+        if (null != this.neighborMines)
+            Arrays.fill(this.neighborMines, (byte) 0);
+    }
+
+    /**
+     * Opens every cell at the end of a {@link model.Game}. If it was won, marked cells stay marked and closed,
+     * otherwise all marks are removed.
+     *
+     * @param won {@link boolean} was the {@link model.Game} won?
+     */
+    void revealAll(boolean won) {
+        int words = this.opened.getWordCount();
+        for (int w = 0; w < words; w++) {
+            if (!won)
+                this.marked.setWord(w, 0L);
+            this.opened.setWord(w, ~this.marked.getWord(w));
+        }
+        // Bits behind the last cell stay clear
+        if (0 != (this.cells & 63))
+            this.opened.setWord(words - 1, this.opened.getWord(words - 1) & ((1L << this.cells) - 1));
+    }
+
+    /**
+     * Tells you how many mines border on the given cell.
+     *
+     * @param index {@link int} index of the cell.
+     * @return {@link int} how many mines border on the cell?
+     */
+    public int getNeighborMines(int index) {
+        if (null != this.neighborMines)
+            return this.neighborMines[index];
+
+        // Count them
+        int x = index / this.width;
+        int y = index - x * this.width;
+        int xMin = Math.max(0, x - 1);
+        int xMax = Math.min(this.height - 1, x + 1);
+        int yMin = Math.max(0, y - 1);
+        int yMax = Math.min(this.width - 1, y + 1);
+        int amount = 0;
+        for (int xHelp = xMin; xHelp <= xMax; xHelp++) {
+            int row = xHelp * this.width;
+            for (int yHelp = yMin; yHelp <= yMax; yHelp++) {
+                if (this.mines.get(row + yHelp))
+                    amount++;
+            }
+        }
+        return this.mines.get(index) ? amount - 1 : amount;
+    }
+
+    /**
+     * Recalculates the amount of neighbour mines of every cell. Walks only over the set bits of the mine bitset, so the
+     * costs depend on the amount of mines instead of the amount of cells. Does nothing if they are counted on demand.
+     * It has to be called after the mines were changed directly, it also increases the version of the mines.
+     */
+    public void countNeighborMines() {
+        this.mineVersion++;
+        if (null == this.neighborMines)
+            return;
+        Arrays.fill(this.neighborMines, (byte) 0);
+
+        int words = this.mines.getWordCount();
+        for (int w = 0; w < words; w++) {
+            long word = this.mines.getWord(w);
+            while (0 != word) {
+                int index = (w << 6) + Long.numberOfTrailingZeros(word);
+                word &= word - 1;
+                this.addToNeighbors(index, 1);
+            }
+        }
+    }
+
+    /**
+     * Adds the given value to the amount of neighbour mines of every cell bordering on the given one.
+     *
+     * @param index {@link int} index of the cell.
+     * @param delta {@link int} value to add.
+     */
+    private void addToNeighbors(int index, int delta) {
+        int x = index / this.width;
+        int y = index - x * this.width;
+        int xMin = Math.max(0, x - 1);
+        int xMax = Math.min(this.height - 1, x + 1);
+        int yMin = Math.max(0, y - 1);
+        int yMax = Math.min(this.width - 1, y + 1);
+        for (int xHelp = xMin; xHelp <= xMax; xHelp++) {
+            int row = xHelp * this.width;
+            for (int yHelp = yMin; yHelp <= yMax; yHelp++) {
+                this.neighborMines[row + yHelp] += delta;
+            }
+        }
+        // The cell itself was counted too
+        this.neighborMines[index] -= delta;
+    }
+
+    // Bitsets of the flags, only for reading and writing {@link model.SaveFile}s
+    BitPlane getMinePlane() {
+        return this.mines;
+    }
+
+    BitPlane getOpenPlane() {
+        return this.opened;
+    }
+
+    BitPlane getMarkedPlane() {
+        return this.marked;
+    }
+
+    /**
+     * @return {@link int} version of the mines, see {@link model.Board#countNeighborMines}.
+     */
+    int getMineVersion() {
+        return this.mineVersion;
+    }
+
+    /**
+     * @return {@link boolean} does this {@link model.Board} lie in a {@link model.SaveFile}?
+     */
+    boolean isMapped() {
+        return null == this.neighborMines;
+    }
+
+    /**
+     * Writes changed cells of a mapped {@link model.Board} to its {@link model.SaveFile}.
+     */
+    void force() {
+        this.mines.force();
+        this.opened.force();
+        this.marked.force();
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getCellCount() {
+        return cells;
+    }
+}
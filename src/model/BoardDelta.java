@@ -0,0 +1,161 @@
+/*
+ * (C) Copyright 2014 Mark Alexander Dietrich <mark.dietrich93@gmail.com>.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Contributors:
+ *     Mark Alexander Dietrich
+ */
+
+package model;
+
+/**
+ * Created by Mark Alexander Dietrich on 06/11/14.
+ * <p/>
+ * File: BoardDelta.java
+ * <p/>
+ * Class: BoardDelta
+ * Describes all cells of a {@link model.Board} which were changed by one action of the user. It lists the index of
+ * each changed cell together with its new state, see {@link model.Board#getState}. If every cell may have changed,
+ * e.g. after a reset, an undo or at the end of a {@link model.Game}, the delta is full and does not list any cells.
+ * The cells opened by one {@link model.BoardDelta.Action#OPEN} are listed in the order of their distance to the
+ * origin. A move which continues the step of the previous move, see {@link model.Game#beginStep}, is marked as
+ * continued.
+ * <p/>
+ * Instances are immutable, so they can be handed to other threads.
+ *
+ * @author Mark Alexander Dietrich
+ * @see model.BoardListener
+ * @see model.Game
+ */
+public final class BoardDelta {
+
+    /**
+     * Action which caused a {@link model.BoardDelta}.
+     */
+    public enum Action {
+        OPEN, MARK, RESET, UNDO, REDO
+    }
+
+    /**
+     * Action which caused this delta.
+     */
+    private final Action action;
+
+    /**
+     * Index of the cell the action was performed on, -1 if it affected the whole {@link model.Board}.
+     */
+    private final int origin;
+
+    // Changed cells and their new states
+    private final int[] cells;
+    private final byte[] states;
+
+    /**
+     * Have all cells changed?
+     */
+    private final boolean full;
+
+    /**
+     * Does the move continue the step of the previous move?
+     */
+    private final boolean continued;
+
+    /**
+     * Class constructor. The given arrays must not be changed afterwards.
+     *
+     * @param action    {@link model.BoardDelta.Action} which caused this delta.
+     * @param origin    {@link int} index of the cell the action was performed on.
+     * @param cells     {@link int[]} indices of the changed cells.
+     * @param states    {@link byte[]} new states of the changed cells.
+     * @param full      {@link boolean} have all cells changed?
+     * @param continued {@link boolean} does the move continue the step of the previous move?
+     */
+    BoardDelta(Action action, int origin, int[] cells, byte[] states, boolean full, boolean continued) {
+        this.action = action;
+        this.origin = origin;
+        this.cells = cells;
+        this.states = states;
+        this.full = full;
+        this.continued = continued;
+    }
+
+    /**
+     * Creates a delta which lists the current state of the given cells.
+     *
+     * @param board     {@link model.Board} to read the states from.
+     * @param action    {@link model.BoardDelta.Action} which caused this delta.
+     * @param origin    {@link int} index of the cell the action was performed on.
+     * @param cells     {@link int[]} indices of the changed cells.
+     * @param continued {@link boolean} does the move continue the step of the previous move?
+     * @return new {@link model.BoardDelta}.
+     */
+    static BoardDelta of(Board board, Action action, int origin, int[] cells, boolean continued) {
+        byte[] states = new byte[cells.length];
+        for (int i = 0; i < cells.length; i++) {
+            states[i] = board.getState(cells[i]);
+        }
+        return new BoardDelta(action, origin, cells, states, false, continued);
+    }
+
+    /**
+     * Creates a delta which tells that every cell may have changed.
+     *
+     * @param action    {@link model.BoardDelta.Action} which caused this delta.
+     * @param origin    {@link int} index of the cell the action was performed on.
+     * @param continued {@link boolean} does the move continue the step of the previous move?
+     * @return new {@link model.BoardDelta}.
+     */
+    static BoardDelta full(Action action, int origin, boolean continued) {
+        return new BoardDelta(action, origin, new int[0], new byte[0], true, continued);
+    }
+
+    public Action getAction() {
+        return action;
+    }
+
+    public int getOrigin() {
+        return origin;
+    }
+
+    public boolean isFull() {
+        return full;
+    }
+
+    public boolean isContinued() {
+        return continued;
+    }
+
+    /**
+     * @return {@link int} amount of listed cells.
+     */
+    public int size() {
+        return this.cells.length;
+    }
+
+    /**
+     * @param n {@link int} position in this delta.
+     * @return {@link int} index of the n-th changed cell.
+     */
+    public int getCell(int n) {
+        return this.cells[n];
+    }
+
+    /**
+     * @param n {@link int} position in this delta.
+     * @return {@link byte} new state of the n-th changed cell.
+     */
+    public byte getState(int n) {
+        return this.states[n];
+    }
+}
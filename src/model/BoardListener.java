@@ -0,0 +1,42 @@
+/*
+ * (C) Copyright 2014 Mark Alexander Dietrich <mark.dietrich93@gmail.com>.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Contributors:
+ *     Mark Alexander Dietrich
+ */
+
+package model;
+
+/**
+ * Created by Mark Alexander Dietrich on 06/11/14.
+ * <p/>
+ * File: BoardListener.java
+ * <p/>
+ * Interface: BoardListener
+ * Gets notified once for every action of the user which changed the {@link model.Board} of a {@link model.Game}.
+ *
+ * @author Mark Alexander Dietrich
+ * @see model.BoardDelta
+ * @see model.Game#addBoardListener
+ */
+public interface BoardListener {
+
+    /**
+     * Called after an action of the user changed the {@link model.Board}.
+     *
+     * @param delta {@link model.BoardDelta} describing the changed cells.
+     */
+    void boardChanged(BoardDelta delta);
+}
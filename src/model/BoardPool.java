@@ -0,0 +1,193 @@
+/*
+ * (C) Copyright 2014 Mark Alexander Dietrich <mark.dietrich93@gmail.com>.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Contributors:
+ *     Mark Alexander Dietrich
+ */
+
+package model;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Created by Mark Alexander Dietrich on 06/11/14.
+ * <p/>
+ * File: BoardPool.java
+ * <p/>
+ * Class: BoardPool
+ * Keeps the next {@link model.Board} of a {@link model.Game} ready. While the current pitch is played a background
+ * thread generates another one of the same size and amount of mines, so a reset only has to swap them. The replaced
+ * {@link model.Board} is handed back by {@link model.BoardPool#recycle} once nobody reads it anymore, and is cleared
+ * for the next round instead of being allocated again. So at most two {@link model.Board}s exist per
+ * {@link model.Game}. The first {@link model.Board} is generated by the first {@link model.BoardPool#take}.
+ *
+ * @author Mark Alexander Dietrich
+ * @see model.Game#reset
+ * @see model.MineGenerator
+ */
+public class BoardPool {
+
+    /**
+     * Single background thread shared by all pools. It does not keep the application alive.
+     */
+    private static final ExecutorService WORKER = Executors.newSingleThreadExecutor(new ThreadFactory() {
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, "board-pool");
+            thread.setDaemon(true);
+            thread.setPriority(Thread.MIN_PRIORITY);
+            return thread;
+        }
+    });
+
+    // Size of the generated pitches
+    private final int height;
+    private final int width;
+
+    /**
+     * Amount of mines of the generated pitches.
+     */
+    private final int amountMines;
+
+    /**
+     * Chooses the seeds of the generated pitches.
+     */
+    private final SplittableRandom random;
+
+    /**
+     * Generated {@link model.Board} waiting to be taken and its seed, null if there is none.
+     */
+    private Board ready;
+    private long readySeed;
+
+    /**
+     * Is a {@link model.Board} being generated?
+     */
+    private boolean generating;
+
+    /**
+     * Seed of the {@link model.Board} which was taken last.
+     */
+    private long seed;
+
+    /**
+     * Class constructor. Nothing is generated until the first {@link model.Board} is taken.
+     *
+     * @param height      {@link int} Height of the pitches.
+     * @param width       {@link int} Width of the pitches.
+     * @param amountMines {@link int} Exact amount of mines of the pitches.
+     */
+    public BoardPool(int height, int width, int amountMines) {
+        this.height = height;
+        this.width = width;
+        this.amountMines = amountMines;
+        this.random = new SplittableRandom();
+    }
+
+    /**
+     * Takes the generated {@link model.Board}, waiting for it if necessary. If none is ready or being generated, e.g.
+     * on the first call, a new one is generated. The next one is generated when the taken one's predecessor is
+     * recycled.
+     *
+     * @return {@link model.Board} with all mines placed and all cells closed.
+     */
+    public synchronized Board take() {
+        if (null == this.ready && !this.generating)
+            this.refill(null);
+
+        boolean interrupted = false;
+        while (null == this.ready) {
+            try {
+                this.wait();
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted)
+            Thread.currentThread().interrupt();
+
+        Board board = this.ready;
+        this.seed = this.readySeed;
+        this.ready = null;
+        return board;
+    }
+
+    /**
+     * Hands back a {@link model.Board} which was replaced by a reset and starts generating the next round on it. It
+     * must not be read by anyone anymore, e.g. by the view. If a {@link model.Board} is ready or being generated
+     * already, the given one is dropped.
+     *
+     * @param used {@link model.Board} which is not used anymore, may be null.
+     */
+    public synchronized void recycle(Board used) {
+        if (null != this.ready || this.generating)
+            return;
+
+        // Only a {@link model.Board} of the same size can be reused
+        if (null != used && (used.getHeight() != this.height || used.getWidth() != this.width))
+            used = null;
+        this.refill(used);
+    }
+
+    /**
+     * Generates the next {@link model.Board} in the background. Has to be called while holding the lock.
+     *
+     * @param recycled {@link model.Board} to reuse, null to allocate a new one.
+     */
+    private void refill(final Board recycled) {
+        this.generating = true;
+        final long nextSeed = this.random.nextLong();
+        WORKER.execute(new Runnable() {
+            @Override
+            public void run() {
+                Board board = recycled;
+                if (null == board)
+                    board = new Board(height, width);
+                else
+                    board.clear();
+                new MineGenerator(nextSeed).generate(board, amountMines);
+
+                synchronized (BoardPool.this) {
+                    ready = board;
+                    readySeed = nextSeed;
+                    generating = false;
+                    BoardPool.this.notifyAll();
+                }
+            }
+        });
+    }
+
+    /**
+     * @return {@link long} seed of the {@link model.Board} which was taken last.
+     */
+    public synchronized long getSeed() {
+        return seed;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getAmountMines() {
+        return amountMines;
+    }
+}
@@ -0,0 +1,500 @@
+/*
+ * (C) Copyright 2014 Mark Alexander Dietrich <mark.dietrich93@gmail.com>.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Contributors:
+ *     Mark Alexander Dietrich
+ */
+
+package model;
+
+import java.beans.PropertyChangeListener;
+import java.beans.PropertyChangeSupport;
+import java.io.*;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.SplittableRandom;
+
+/**
+ * Created by Mark Alexander Dietrich on 06/11/14.
+ * <p/>
+ * File: EndlessBoard.java
+ * <p/>
+ * Class: EndlessBoard
+ * A pitch without borders for the endless mode. It is divided into chunks of 64x64 cells which are generated when a
+ * cascade or the viewport reaches them. The mines of a chunk only depend on the seed and the chunk coordinates, so an
+ * untouched chunk can always be generated again. Only a limited amount of chunks is kept in memory, the state of
+ * evicted chunks which were played on is written to the spill directory and read again on demand. Every board gets
+ * its own spill directory, which is deleted by {@link model.EndlessBoard#dispose}.
+ * <p/>
+ * The game starts at cell (0, 0), the cells around it are never mines. When a mine is opened the
+ * {@link java.beans.PropertyChangeListener}s are told that the property {@link model.EndlessBoard#ENDED} changed, on
+ * the thread which opened it.
+ * <p/>
+ * A cascade is opened in steps: {@link model.EndlessBoard#openField} opens the clicked cell and
+ * {@link model.EndlessBoard#continueCascade} expands the queued cells bit by bit, so the moves can be performed on a
+ * worker thread while the Event Dispatch Thread reads the cells in between. The methods are synchronized for this.
+ * Cells which were opened but not expanded yet stay queued, even if reading or writing a chunk failed, and are expanded
+ * by the next step.
+ *
+ * @author Mark Alexander Dietrich
+ * @see model.Board
+ */
+public class EndlessBoard {
+
+    /**
+     * Edge length of a chunk. Every row of a chunk fits into one {@link long}.
+     */
+    public static final int CHUNK_SIZE = 64;
+
+    /**
+     * Maximal amount of cells one move should let a cascade open. Without a limit a cascade on a sparse pitch might
+     * never end, the rest of it stays queued and is continued by the next move.
+     */
+    public static final int MAX_CASCADE = 1 << 20;
+
+    /**
+     * Name of the property which changes when a mine is opened.
+     */
+    public static final String ENDED = "ended";
+
+    /**
+     * Seed the mines are generated from.
+     */
+    private final long seed;
+
+    /**
+     * Probability that a cell is a mine.
+     */
+    private final double pMine;
+
+    /**
+     * Directory which contains the state of evicted chunks, only used by this board.
+     */
+    private final File spillDirectory;
+
+    /**
+     * Chunks in memory in access order, the eldest one is evicted first.
+     */
+    private final LinkedHashMap<Long, Chunk> chunks;
+
+    /**
+     * Most recently used chunk, most lookups hit the same chunk several times in a row.
+     */
+    private Chunk lastChunk;
+
+    /**
+     * Queue of the cascade: opened cells whose neighbours are not opened yet, from {@code head} to {@code size}.
+     */
+    private long[] queueX = new long[64];
+    private long[] queueY = new long[64];
+    private int head;
+    private int size;
+
+    /**
+     * Game over?
+     */
+    private boolean ended;
+
+    /**
+     * Has {@link model.EndlessBoard#dispose} been called?
+     */
+    private boolean disposed;
+
+    private final PropertyChangeSupport propertyChangeSupport = new PropertyChangeSupport(this);
+
+    /**
+     * Class constructor. Creates the spill directory of the board.
+     *
+     * @param seed      {@link long} seed the mines are generated from.
+     * @param pMine     {@link double} Represents the probability that a cell is a mine.
+     * @param maxChunks {@link int} how many chunks are kept in memory.
+     * @param parent    {@link java.io.File} directory the spill directory is created in.
+     * @throws IOException if the spill directory can't be created.
+     */
+    public EndlessBoard(long seed, double pMine, final int maxChunks, File parent) throws IOException {
+        this.seed = seed;
+        this.pMine = pMine;
+        if (!parent.isDirectory() && !parent.mkdirs())
+            throw new IOException("Can't create " + parent);
+        this.spillDirectory = Files.createTempDirectory(parent.toPath(), "endless_" + seed + "_").toFile();
+        // Files registered later are deleted first, so the directory is empty by then
+        this.spillDirectory.deleteOnExit();
+        this.ended = false;
+        this.chunks = new LinkedHashMap<Long, Chunk>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, Chunk> eldest) {
+                if (size() <= maxChunks)
+                    return false;
+                evict(eldest.getValue());
+                return true;
+            }
+        };
+    }
+
+    /**
+     * Opens the given cell if it wasn't already opened or marked. If no mines border on it, it is queued, so
+     * {@link model.EndlessBoard#continueCascade} opens the region around it.
+     *
+     * @param x {@link long} x coordinate
+     * @param y {@link long} y coordinate
+     * @return {@link int} how many cells were opened?
+     */
+    public synchronized int openField(long x, long y) {
+        if (this.ended || this.disposed || this.isOpen(x, y) || this.isMarked(x, y))
+            return 0;
+
+        this.setOpen(x, y);
+        if (this.isMine(x, y)) {
+            this.ended = true;
+            this.head = 0;
+            this.size = 0;
+            this.propertyChangeSupport.firePropertyChange(ENDED, false, true);
+        } else {
+            this.enqueue(x, y);
+        }
+        return 1;
+    }
+
+    /**
+     * Expands at most the given amount of queued cells: the neighbours of a queued cell without neighbour mines are
+     * opened and queued as well. A cell leaves the queue only after all of its neighbours were opened.
+     *
+     * @param budget {@link int} how many queued cells to expand at most.
+     * @return {@link int} how many cells were opened?
+     */
+    public synchronized int continueCascade(int budget) {
+        int opened = 0;
+        while (budget-- > 0 && this.head < this.size && !this.ended && !this.disposed) {
+            long currentX = this.queueX[this.head];
+            long currentY = this.queueY[this.head];
+
+            if (0 == this.getAmountNeighborMines(currentX, currentY)) {
+                for (long xHelp = currentX - 1; xHelp <= currentX + 1; xHelp++) {
+                    for (long yHelp = currentY - 1; yHelp <= currentY + 1; yHelp++) {
+                        if (!this.isOpen(xHelp, yHelp) && !this.isMarked(xHelp, yHelp)) {
+                            this.setOpen(xHelp, yHelp);
+                            this.enqueue(xHelp, yHelp);
+                            opened++;
+                        }
+                    }
+                }
+            }
+            this.head++;
+        }
+        if (this.head == this.size) {
+            this.head = 0;
+            this.size = 0;
+        }
+        return opened;
+    }
+
+    /**
+     * @return {@link boolean} are there queued cells left to expand?
+     */
+    public synchronized boolean hasCascade() {
+        return this.head < this.size && !this.ended && !this.disposed;
+    }
+
+    /**
+     * Marks the given cell or removes its mark. Opened cells can't be marked.
+     *
+     * @param x {@link long} x coordinate
+     * @param y {@link long} y coordinate
+     */
+    public synchronized void markField(long x, long y) {
+        if (this.ended || this.disposed || this.isOpen(x, y))
+            return;
+
+        Chunk chunk = this.getChunk(x, y);
+        int row = (int) Math.floorMod(x, (long) CHUNK_SIZE);
+        chunk.marked[row] ^= 1L << Math.floorMod(y, (long) CHUNK_SIZE);
+        chunk.dirty = true;
+    }
+
+    /**
+     * Tells you the state of the given cell, see {@link model.Board#getState}.
+     *
+     * @param x {@link long} x coordinate
+     * @param y {@link long} y coordinate
+     * @return {@link byte} state of the cell.
+     */
+    public synchronized byte getState(long x, long y) {
+        Chunk chunk = this.getChunk(x, y);
+        int row = (int) Math.floorMod(x, (long) CHUNK_SIZE);
+        long bit = 1L << Math.floorMod(y, (long) CHUNK_SIZE);
+
+        int state = 0;
+        if (0 != (chunk.mines[row] & bit))
+            state |= Board.MINE;
+        if (0 != (chunk.opened[row] & bit))
+            state |= Board.OPEN;
+        if (0 != (chunk.marked[row] & bit))
+            state |= Board.MARKED;
+        return (byte) state;
+    }
+
+    /**
+     * Tells you how many mines border on the given cell.
+     *
+     * @param x {@link long} x coordinate
+     * @param y {@link long} y coordinate
+     * @return {@link int} how many mines border on the cell?
+     */
+    public synchronized int getAmountNeighborMines(long x, long y) {
+        int amountMines = 0;
+        for (long xHelp = x - 1; xHelp <= x + 1; xHelp++) {
+            for (long yHelp = y - 1; yHelp <= y + 1; yHelp++) {
+                if ((xHelp != x || yHelp != y) && this.isMine(xHelp, yHelp))
+                    amountMines++;
+            }
+        }
+        return amountMines;
+    }
+
+    public boolean isMine(long x, long y) {
+        return 0 != (this.getState(x, y) & Board.MINE);
+    }
+
+    public boolean isOpen(long x, long y) {
+        return 0 != (this.getState(x, y) & Board.OPEN);
+    }
+
+    public boolean isMarked(long x, long y) {
+        return 0 != (this.getState(x, y) & Board.MARKED);
+    }
+
+    public synchronized boolean isEnded() {
+        return ended;
+    }
+
+    public long getSeed() {
+        return seed;
+    }
+
+    public double getpMine() {
+        return pMine;
+    }
+
+    /**
+     * @return {@link int} how many chunks are in memory at the moment?
+     */
+    public synchronized int getLoadedChunks() {
+        return this.chunks.size();
+    }
+
+    public void addPropertyChangeListener(PropertyChangeListener listener) {
+        this.propertyChangeSupport.addPropertyChangeListener(listener);
+    }
+
+    public void removePropertyChangeListener(PropertyChangeListener listener) {
+        this.propertyChangeSupport.removePropertyChangeListener(listener);
+    }
+
+    /**
+     * Tells you where the spill directories are created by default.
+     *
+     * @return {@link java.io.File} directory in the home directory of the user.
+     */
+    public static File getDefaultSpillDirectory() {
+        return new File(new File(System.getProperty("user.home"), ".minesweeper"), "endless");
+    }
+
+    /**
+     * Drops all chunks and deletes the spill directory. Moves on the board are ignored afterwards.
+     */
+    public synchronized void dispose() {
+        this.disposed = true;
+        this.head = 0;
+        this.size = 0;
+        this.chunks.clear();
+        this.lastChunk = null;
+        File[] files = this.spillDirectory.listFiles();
+        if (null != files) {
+            for (File file : files) {
+                if (!file.delete())
+                    file.deleteOnExit();
+            }
+        }
+        if (!this.spillDirectory.delete())
+            this.spillDirectory.deleteOnExit();
+    }
+
+    /**
+     * Appends the given cell to the queue of the cascade. Expanded cells are dropped before the queue grows.
+     *
+     * @param x {@link long} x coordinate
+     * @param y {@link long} y coordinate
+     */
+    private void enqueue(long x, long y) {
+        if (this.size == this.queueX.length) {
+            int length = this.size - this.head;
+            if (length > this.queueX.length >>> 1) {
+                this.queueX = Arrays.copyOf(this.queueX, this.queueX.length << 1);
+                this.queueY = Arrays.copyOf(this.queueY, this.queueY.length << 1);
+            }
+            System.arraycopy(this.queueX, this.head, this.queueX, 0, length);
+            System.arraycopy(this.queueY, this.head, this.queueY, 0, length);
+            this.head = 0;
+            this.size = length;
+        }
+        this.queueX[this.size] = x;
+        this.queueY[this.size++] = y;
+    }
+
+    private void setOpen(long x, long y) {
+        Chunk chunk = this.getChunk(x, y);
+        chunk.opened[(int) Math.floorMod(x, (long) CHUNK_SIZE)] |= 1L << Math.floorMod(y, (long) CHUNK_SIZE);
+        chunk.dirty = true;
+    }
+
+    /**
+     * Returns the chunk which contains the given cell. It will be loaded or generated if it is not in memory.
+     *
+     * @param x {@link long} x coordinate
+     * @param y {@link long} y coordinate
+     * @return chunk containing the cell.
+     */
+    private Chunk getChunk(long x, long y) {
+        int chunkX = (int) Math.floorDiv(x, (long) CHUNK_SIZE);
+        int chunkY = (int) Math.floorDiv(y, (long) CHUNK_SIZE);
+
+        if (null != this.lastChunk && this.lastChunk.x == chunkX && this.lastChunk.y == chunkY)
+            return this.lastChunk;
+
+        Long key = ((long) chunkX << 32) | (chunkY & 0xFFFFFFFFL);
+        Chunk chunk = this.chunks.get(key);
+        if (null == chunk) {
+            chunk = this.loadChunk(chunkX, chunkY);
+            this.chunks.put(key, chunk);
+        }
+        this.lastChunk = chunk;
+        return chunk;
+    }
+
+    /**
+     * Generates the mines of a chunk and reads its state from the spill directory if it was evicted before.
+     *
+     * @param chunkX {@link int} x coordinate of the chunk.
+     * @param chunkY {@link int} y coordinate of the chunk.
+     * @return loaded chunk.
+     */
+    private Chunk loadChunk(int chunkX, int chunkY) {
+        Chunk chunk = new Chunk(chunkX, chunkY);
+
+        // Every chunk gets its own generator, so the order in which chunks are reached does not matter
+        SplittableRandom random = new SplittableRandom(this.seed ^ (chunkX * 0x9E3779B97F4A7C15L)
+                ^ (chunkY * 0xC2B2AE3D27D4EB4FL));
+        for (int row = 0; row < CHUNK_SIZE; row++) {
+            long bits = 0L;
+            for (int column = 0; column < CHUNK_SIZE; column++) {
+                if (random.nextDouble() < this.pMine)
+                    bits |= 1L << column;
+            }
+            chunk.mines[row] = bits;
+        }
+
+        // The cells around the start are never mines
+        if (0 == chunkX && 0 == chunkY) {
+            chunk.mines[0] &= ~3L;
+            chunk.mines[1] &= ~3L;
+        } else if (-1 == chunkX && 0 == chunkY) {
+            chunk.mines[CHUNK_SIZE - 1] &= ~3L;
+        } else if (0 == chunkX && -1 == chunkY) {
+            chunk.mines[0] &= Long.MAX_VALUE;
+            chunk.mines[1] &= Long.MAX_VALUE;
+        } else if (-1 == chunkX && -1 == chunkY) {
+            chunk.mines[CHUNK_SIZE - 1] &= Long.MAX_VALUE;
+        }
+
+        File file = this.spillFile(chunkX, chunkY);
+        if (file.exists()) {
+            try {
+                DataInputStream dis = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+                try {
+                    for (int row = 0; row < CHUNK_SIZE; row++) {
+                        chunk.opened[row] = dis.readLong();
+                        chunk.marked[row] = dis.readLong();
+                    }
+                } finally {
+                    dis.close();
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            // The state on disk is still valid, so the chunk needs no spill unless it changes
+        }
+        return chunk;
+    }
+
+    /**
+     * Drops a chunk from memory. If it was played on its state is written to the spill directory first.
+     *
+     * @param chunk chunk to evict.
+     */
+    private void evict(Chunk chunk) {
+        if (this.lastChunk == chunk)
+            this.lastChunk = null;
+        if (!chunk.dirty || this.disposed)
+            return;
+
+        File file = this.spillFile(chunk.x, chunk.y);
+        file.deleteOnExit();
+        try {
+            DataOutputStream dos = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)));
+            try {
+                for (int row = 0; row < CHUNK_SIZE; row++) {
+                    dos.writeLong(chunk.opened[row]);
+                    dos.writeLong(chunk.marked[row]);
+                }
+            } finally {
+                dos.close();
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private File spillFile(int chunkX, int chunkY) {
+        return new File(this.spillDirectory, "chunk_" + chunkX + "_" + chunkY + ".bin");
+    }
+
+    /**
+     * Class: Chunk
+     * 64x64 cells of an {@link model.EndlessBoard}. Row r of a chunk is stored in the r-th {@link long} of each plane,
+     * the column is the bit.
+     */
+    private static class Chunk {
+
+        // Chunk coordinates
+        private final int x;
+        private final int y;
+
+        private final long[] mines = new long[CHUNK_SIZE];
+        private final long[] opened = new long[CHUNK_SIZE];
+        private final long[] marked = new long[CHUNK_SIZE];
+
+        /**
+         * Has the state changed since the chunk was generated or loaded?
+         */
+        private boolean dirty;
+
+        private Chunk(int x, int y) {
+            this.x = x;
+            this.y = y;
+        }
+    }
+}
@@ -19,75 +19,47 @@
 
 package model;
 
-import java.io.Serializable;
-import java.util.ArrayList;
-import java.util.Observable;
-
 /**
  * Created by Mark Alexander Dietrich on 06/11/14.
  * <p/>
  * File: Field.java
  * <p/>
  * Class: Field
- * Represents a part of the pitch of a {@link model.Game}.
+ * Represents a part of the pitch of a {@link model.Game}. The state itself is stored in the {@link model.Board} of the
+ * {@link model.Game}, a {@link model.Field} only provides access to it. Every change is made by a move of the
+ * {@link model.Game}, which keeps its counters and reports it to its {@link model.BoardListener}s.
  *
  * @author Mark Alexander Dietrich
- * @see java.util.Observable
- * @see java.io.Serializable
+ * @see model.Board
+ * @see model.BoardListener
  */
-public class Field extends Observable implements Serializable {
+public class Field {
 
     /**
-     * {@code serialVersionUID}, which is used during deserialization to verify that the sender and receiver of a
-     * serialized object have loaded classes for that object that are compatible with respect to serialization. It has
-     * to be {@link final} and {@link long}.
-     *
-     * @see java.io.ObjectOutputStream
-     * @see java.io.ObjectInputStream
-     * @see final
-     * @see long
+     * {@link model.Game} which stores the state of this {@link model.Field} in its {@link model.Board}.
      */
-    private static final long serialVersionUID = 1L;
+    private Game game;
 
     // Coordinates
     private int x;
     private int y;
 
-    // Is this {@link model.Field} a mine?
-    private boolean mine;
-
-    // Is this {@link model.Field} opened?
-    private boolean open;
-
-    // Is this {@link model.Field} opened?
-    private boolean marked;
-
-    // {@link model.Field}s which border on this {@link model.Field}
-    private ArrayList<Field> neighbors;
+    // Index of this {@link model.Field} in the {@link model.Board}
+    private int index;
 
     /**
-     * Class constructor.
+     * Class constructor. A {@link model.Field} does not hold any state itself, it is only a view on a cell of the
+     * {@link model.Board} of the given {@link model.Game}.
      *
-     * @param x      {@link int} x coordinate
-     * @param y      {@link int} y coordinate
-     * @param isMine {@link boolean} is this {@link model.Field} a mine?
+     * @param game {@link model.Game} this {@link model.Field} belongs to.
+     * @param x    {@link int} x coordinate
+     * @param y    {@link int} y coordinate
      */
-    public Field(int x, int y, boolean isMine) {
-        this.mine = isMine;
-        this.open = false;
-        this.marked = false;
+    Field(Game game, int x, int y) {
+        this.game = game;
         this.x = x;
         this.y = y;
-        neighbors = new ArrayList<Field>();
-    }
-
-    /**
-     * Adds a bordering {@link model.Field} to the list of neighbours.
-     *
-     * @param neighbor {@link model.Field} that borders to this one.
-     */
-    public void addNeighbor(Field neighbor) {
-        neighbors.add(neighbor);
+        this.index = game.getBoard().index(x, y);
     }
 
     /**
@@ -96,38 +68,25 @@ public class Field extends Observable implements Serializable {
      * @return {@link int} how many mines border on this {@link model.Field}?
      */
     public int getAmountNeighborMines() {
-        int amountMines = 0;
-        for (Field neighbor : neighbors) {
-            if (neighbor.isMine()) {
-                amountMines++;
-            }
-        }
-        return amountMines;
+        return this.game.getBoard().getNeighborMines(this.index);
     }
 
     /**
      * Opens this {@link model.Field} if it wasn't already opened or marked.
+     *
+     * @see model.Game#openField
      */
     public void open() {
-        if (!isOpen() && !isMarked()) {
-            setChanged();
-            notifyObservers(new Object());
-            setOpen(true);
-            if (!isMine()) {
-                // If no mines border to this {@link model.Field} all neighbours will be opened too
-                if (0 == getAmountNeighborMines()) {
-                    for (Field neighbor : neighbors) {
-                        neighbor.open();
-                    }
-                }
-            }
-            setChanged();
-            notifyObservers();
-        }
+        this.game.openField(this.x, this.y);
     }
 
+    /**
+     * Removes the mark of this {@link model.Field}, if it is marked.
+     *
+     * @see model.Game#markField
+     */
     public void unmark() {
-        this.marked = false;
+        this.setMarked(false);
     }
 
     public boolean isExploded() {
@@ -135,31 +94,26 @@ public class Field extends Observable implements Serializable {
     }
 
     public boolean isMarked() {
-        return marked;
+        return this.game.getBoard().isMarked(this.index);
     }
 
+    /**
+     * Marks this {@link model.Field} or removes its mark.
+     *
+     * @param marked {@link boolean} should this {@link model.Field} be marked?
+     * @see model.Game#markField
+     */
     public void setMarked(boolean marked) {
-        this.marked = marked;
-        // Notifies {@link java.util.Observer} because maybe it was the last {@link model.Field} of the
-        // {@link model.Game} which means it is over
-        setChanged();
-        notifyObservers();
+        if (marked != isMarked())
+            this.game.markField(this.x, this.y);
     }
 
     public boolean isMine() {
-        return mine;
-    }
-
-    public void setMine(boolean mine) {
-        this.mine = mine;
+        return this.game.getBoard().isMine(this.index);
     }
 
     public boolean isOpen() {
-        return open;
-    }
-
-    public void setOpen(boolean open) {
-        this.open = open;
+        return this.game.getBoard().isOpen(this.index);
     }
 
     public int getX() {
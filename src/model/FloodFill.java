@@ -0,0 +1,110 @@
+/*
+ * (C) Copyright 2014 Mark Alexander Dietrich <mark.dietrich93@gmail.com>.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Contributors:
+ *     Mark Alexander Dietrich
+ */
+
+package model;
+
+import java.util.Arrays;
+
+/**
+ * Created by Mark Alexander Dietrich on 06/11/14.
+ * <p/>
+ * File: FloodFill.java
+ * <p/>
+ * Class: FloodFill
+ * Opens cells of a {@link model.Board}. If an opened cell does not border on any mine its neighbours are opened too,
+ * which continues until the whole region is revealed. Instead of recursion it uses an explicit work queue, so the size
+ * of a region is only limited by the heap.
+ *
+ * @author Mark Alexander Dietrich
+ * @see model.Board
+ */
+public class FloodFill {
+
+    /**
+     * {@link model.Board} to open the cells of.
+     */
+    private final Board board;
+
+    /**
+     * Work queue. Every cell is opened when it is added, so the queue contains the revealed cells in the order they
+     * were opened. It is kept between calls to avoid growing it again.
+     */
+    private int[] queue;
+
+    /**
+     * Class constructor.
+     *
+     * @param board {@link model.Board} to open the cells of.
+     */
+    public FloodFill(Board board) {
+        this.board = board;
+        this.queue = new int[64];
+    }
+
+    /**
+     * Opens the given cell if it wasn't already opened or marked. If no mines border on it, the whole region around it
+     * will be opened in one pass.
+     *
+     * @param start {@link int} index of the cell to open.
+     * @return {@link int[]} indices of all cells which were opened, starting with the given one. The queue is first in
+     * first out, so the cells are sorted by their distance to the given one and can be revealed as a wavefront. Empty
+     * if nothing changed.
+     */
+    public int[] open(int start) {
+        if (this.board.isOpen(start) || this.board.isMarked(start))
+            return new int[0];
+
+        int height = this.board.getHeight();
+        int width = this.board.getWidth();
+        int head = 0;
+        int size = 0;
+
+        this.board.setOpen(start, true);
+        this.queue[size++] = start;
+
+        while (head < size) {
+            int current = this.queue[head++];
+
+            // Only cells without bordering mines spread
+            if (this.board.isMine(current) || 0 != this.board.getNeighborMines(current))
+                continue;
+
+            int x = current / width;
+            int y = current - x * width;
+            int xMin = Math.max(0, x - 1);
+            int xMax = Math.min(height - 1, x + 1);
+            int yMin = Math.max(0, y - 1);
+            int yMax = Math.min(width - 1, y + 1);
+
+            for (int xHelp = xMin; xHelp <= xMax; xHelp++) {
+                for (int yHelp = yMin; yHelp <= yMax; yHelp++) {
+                    int neighbor = xHelp * width + yHelp;
+                    if (!this.board.isOpen(neighbor) && !this.board.isMarked(neighbor)) {
+                        this.board.setOpen(neighbor, true);
+                        if (size == this.queue.length)
+                            this.queue = Arrays.copyOf(this.queue, size << 1);
+                        this.queue[size++] = neighbor;
+                    }
+                }
+            }
+        }
+
+        return Arrays.copyOf(this.queue, size);
+    }
+}
@@ -20,8 +20,13 @@
 package model;
 
 import java.io.Serializable;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.List;
 import java.util.Observable;
-import java.util.Observer;
+import java.util.SplittableRandom;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
 
 /**
  * Created by Mark Alexander Dietrich on 06/11/14.
@@ -29,11 +34,24 @@ import java.util.Observer;
  * File: Game.java
  * <p/>
  * Class: Game
- * Represents state of the {@link model.Game}.
+ * Represents state of the {@link model.Game}. Every action of the user which changes the pitch is reported to the
+ * {@link model.BoardListener}s as one {@link model.BoardDelta}, the {@link java.util.Observer}s are notified when the
+ * {@link model.Game} is over.
+ * <p/>
+ * Moves can be undone and redone. Before each move the opened and marked bitsets are remembered as snapshots of their
+ * {@link model.BitPlane.PersistentBitPlane}s, which share every chunk the move does not touch. So the history costs
+ * memory proportional to the changed chunks, and undoing a move only swaps the snapshots back in. At most
+ * {@link model.Game#MAX_HISTORY} steps are remembered, the oldest ones are forgotten first. The moves between
+ * {@link model.Game#beginStep} and {@link model.Game#endStep}, e.g. a run of the auto-solver, are one step which is
+ * undone as a whole. A mapped {@link model.Board} has no history.
+ * <p/>
+ * A {@link model.Game} is not thread-safe. All actions have to be performed by one thread at a time, e.g. by a single
+ * threaded {@link java.util.concurrent.Executor}, the listeners are notified on that thread.
  *
  * @author Mark Alexander Dietrich
  * @see java.util.Observable
  * @see java.io.Serializable
+ * @see model.BoardListener
  */
 public class Game extends Observable implements Serializable {
 
@@ -50,9 +68,59 @@ public class Game extends Observable implements Serializable {
     private static final long serialVersionUID = 1L;
 
     /**
-     * Matrix which contains the {@link model.Field}s of the {@link model.Game}.
+     * Maximal amount of steps which can be undone.
+     */
+    public static final int MAX_HISTORY = 256;
+
+    /**
+     * Packed state of all cells of the {@link model.Game}. It is replaced by {@link model.Game#reset}, which may happen
+     * on another thread than the one painting it.
+     */
+    volatile Board board;
+
+    /**
+     * {@link model.BoardListener}s which are notified about changes of the pitch.
+     */
+    private transient List<BoardListener> boardListeners;
+
+    /**
+     * Opens cells of the {@link model.Board}.
+     */
+    private transient FloodFill floodFill;
+
+    /**
+     * Generates the {@link model.Board} of the next round in the background, created by the first reset.
      */
-    Field[][] fields;
+    private transient BoardPool boardPool;
+
+    /**
+     * Hands the {@link model.Board} replaced by a reset back to the {@link model.BoardPool}, null to hand it back
+     * right away.
+     */
+    private transient Executor recycleExecutor;
+
+    /**
+     * States before the performed moves and before the undone moves, the latest first.
+     */
+    private transient Deque<State> undoStack;
+    private transient Deque<State> redoStack;
+
+    /**
+     * Are no states remembered, e.g. for the playback of a {@link model.Replay}?
+     */
+    private transient boolean historyDisabled;
+
+    /**
+     * How often {@link model.Game#beginStep} was called without {@link model.Game#endStep}, and has a move of the open
+     * step been performed yet?
+     */
+    private transient int stepDepth;
+    private transient boolean stepStarted;
+
+    /**
+     * Does the current move continue the step of the previous move?
+     */
+    private transient boolean continued;
 
     /**
      * Game over?
@@ -87,28 +155,63 @@ public class Game extends Observable implements Serializable {
      */
     private double pMine;
 
+    /**
+     * Seed the mines of the current pitch were generated from.
+     */
+    private long seed;
+
     /**
      * Is it the first turn of the game?
      */
     private boolean firstTurn;
 
     /**
-     * Class constructor.
+     * Amount of moves which changed the pitch since the last reset.
+     */
+    private long moveCount;
+
+    /**
+     * Amount of mines on the pitch.
+     */
+    private int amountMines;
+
+    /**
+     * Amount of {@link model.Field}s which are no mines and not opened yet. They are updated by
+     * {@link model.Game#openField} and {@link model.Game#markField}, so the state of the {@link model.Game} can be
+     * decided without iterating through the pitch.
+     */
+    private int amountClosedSafeFields;
+
+    /**
+     * Amount of marked {@link model.Field}s which are mines.
+     */
+    private int amountCorrectMarks;
+
+    /**
+     * Amount of marked {@link model.Field}s which are no mines.
+     */
+    private int amountIncorrectMarks;
+
+    /**
+     * Class constructor. The pitch is generated from the given seed, so the same seed always results in the same
+     * pitch.
      *
      * @param height      {@link int} Height of the pitch.
      * @param width       {@link int} Width of the pitch.
-     * @param pMine       {@link double} Represents the probability that a {@link model.Field} is a mine.
+     * @param amountMines {@link int} Exact amount of mines on the pitch.
+     * @param seed        {@link long} Seed to generate the mines from.
      * @param initialTime {@link int[]} Time to initialize the {@link model.Game} with.
      */
-    public Game(int height, int width, double pMine, int[] initialTime) {
+    public Game(int height, int width, int amountMines, long seed, int[] initialTime) {
 
         // Initialize parameters
         this.won = false;
         this.ended = false;
         this.height = height;
         this.width = width;
-        this.pMine = pMine;
-        this.fields = new Field[height][width];
+        this.amountMines = amountMines;
+        this.pMine = (double) amountMines / ((double) height * width);
+        this.seed = seed;
         this.firstTurn = true;
 
         // If no initialTime was given start at 0
@@ -117,17 +220,22 @@ public class Game extends Observable implements Serializable {
         else
             this.initialTime = initialTime;
 
-        // Initialize {@link model.Field}s of the pitch
-        for (int x = 0; x <= height - 1; x++) {
-            for (int y = 0; y <= width - 1; y++) {
-                Field tmp = new Field(x, y, Math.random() < this.pMine);
-                // Add {@link model.Game.StartObserver}
-                tmp.addObserver(new StartObserver());
-                this.fields[x][y] = tmp;
-            }
-        }
-        // Let the {@link model.Field}s know which {@link model.Field}s border on them
-        this.connectNeighbors();
+        // Initialize cells of the pitch
+        this.initBoard();
+    }
+
+    /**
+     * Class constructor. The amount of mines is the given probability of the amount of {@link model.Field}s, the seed
+     * is chosen randomly.
+     *
+     * @param height      {@link int} Height of the pitch.
+     * @param width       {@link int} Width of the pitch.
+     * @param pMine       {@link double} Represents the probability that a {@link model.Field} is a mine.
+     * @param initialTime {@link int[]} Time to initialize the {@link model.Game} with.
+     */
+    public Game(int height, int width, double pMine, int[] initialTime) {
+        // Constructor chaining with the constructor above
+        this(height, width, (int) Math.round(pMine * height * width), newSeed(), initialTime);
     }
 
     /**
@@ -143,7 +251,100 @@ public class Game extends Observable implements Serializable {
     }
 
     /**
-     * Resets this {@link model.Game}.
+     * Class constructor. Continues a {@link model.Game} on the given {@link model.Board}, e.g. one read from a
+     * {@link model.SaveFile}. The counters are calculated from the bitsets.
+     *
+     * @param board       {@link model.Board} with mines, opened and marked cells and their neighbour mines.
+     * @param seed        {@link long} Seed the mines were generated from.
+     * @param initialTime {@link int[]} Time to initialize the {@link model.Game} with.
+     * @param flags       {@link int} {@link model.SaveFile} flags of the state.
+     * @param moveCount   {@link long} Amount of moves played so far.
+     */
+    Game(Board board, long seed, int[] initialTime, int flags, long moveCount) {
+        this(board, seed, initialTime, flags, moveCount, countCells(board));
+    }
+
+    /**
+     * Class constructor. Continues a {@link model.Game} on the given {@link model.Board} with known counters, so the
+     * cells don't have to be read.
+     *
+     * @param board       {@link model.Board} with mines, opened and marked cells.
+     * @param seed        {@link long} Seed the mines were generated from.
+     * @param initialTime {@link int[]} Time to initialize the {@link model.Game} with.
+     * @param flags       {@link int} {@link model.SaveFile} flags of the state.
+     * @param moveCount   {@link long} Amount of moves played so far.
+     * @param counters    {@link int[]} amount of mines, closed safe cells, correct and incorrect marks.
+     */
+    Game(Board board, long seed, int[] initialTime, int flags, long moveCount, int[] counters) {
+        this.board = board;
+        this.height = board.getHeight();
+        this.width = board.getWidth();
+        this.seed = seed;
+        this.initialTime = initialTime;
+        this.moveCount = moveCount;
+        this.firstTurn = 0 != (flags & SaveFile.FIRST_TURN);
+        this.ended = 0 != (flags & SaveFile.ENDED);
+        this.won = 0 != (flags & SaveFile.WON);
+        this.amountMines = counters[0];
+        this.amountClosedSafeFields = counters[1];
+        this.amountCorrectMarks = counters[2];
+        this.amountIncorrectMarks = counters[3];
+        this.pMine = (double) this.amountMines / ((double) this.height * this.width);
+    }
+
+    /**
+     * Takes over a state which was written into the {@link model.Board} directly, e.g. by a {@link model.Replay}, and
+     * notifies the {@link model.BoardListener}s with a full {@link model.BoardDelta}.
+     *
+     * @param flags     {@link int} {@link model.SaveFile} flags of the state.
+     * @param moveCount {@link long} Amount of moves played so far.
+     * @param counters  {@link int[]} amount of mines, closed safe cells, correct and incorrect marks.
+     */
+    void restore(int flags, long moveCount, int[] counters) {
+        this.firstTurn = 0 != (flags & SaveFile.FIRST_TURN);
+        this.ended = 0 != (flags & SaveFile.ENDED);
+        this.won = 0 != (flags & SaveFile.WON);
+        this.moveCount = moveCount;
+        this.amountMines = counters[0];
+        this.amountClosedSafeFields = counters[1];
+        this.amountCorrectMarks = counters[2];
+        this.amountIncorrectMarks = counters[3];
+        this.clearHistory();
+
+        this.fireBoardChanged(BoardDelta.full(BoardDelta.Action.RESET, -1, false));
+    }
+
+    /**
+     * Counts the cells of the given {@link model.Board}, word by word.
+     *
+     * @param board {@link model.Board} to count the cells of.
+     * @return {@link int[]} amount of mines, closed safe cells, correct and incorrect marks.
+     */
+    static int[] countCells(Board board) {
+        BitPlane mines = board.getMinePlane();
+        BitPlane opened = board.getOpenPlane();
+        BitPlane marked = board.getMarkedPlane();
+        int amountMines = 0;
+        int openedSafeFields = 0;
+        int correctMarks = 0;
+        int incorrectMarks = 0;
+        for (int w = 0; w < mines.getWordCount(); w++) {
+            long mine = mines.getWord(w);
+            long mark = marked.getWord(w);
+            amountMines += Long.bitCount(mine);
+            openedSafeFields += Long.bitCount(opened.getWord(w) & ~mine);
+            correctMarks += Long.bitCount(mark & mine);
+            incorrectMarks += Long.bitCount(mark & ~mine);
+        }
+        return new int[]{amountMines, board.getCellCount() - amountMines - openedSafeFields, correctMarks,
+                incorrectMarks};
+    }
+
+    /**
+     * Resets this {@link model.Game}. The new pitch has the same amount of mines but a new seed. It is taken from the
+     * {@link model.BoardPool}. After the {@link model.BoardListener}s were notified the replaced {@link model.Board} is
+     * handed back via the recycle {@link java.util.concurrent.Executor}, and its storage is reused for the round
+     * after. A mapped {@link model.Board} is cleared and generated again in place.
      */
     public void reset() {
 
@@ -151,56 +352,520 @@ public class Game extends Observable implements Serializable {
         this.won = false;
         this.ended = false;
         this.initialTime = new int[]{0, 0, 0};
-        this.fields = new Field[height][width];
         this.firstTurn = true;
-
-        // Reinitialize {@link model.Field}s of the pitch
-        for (int x = 0; x <= this.height - 1; x++) {
-            for (int y = 0; y <= this.width - 1; y++) {
-                Field tmp = new Field(x, y, Math.random() < this.pMine);
-                tmp.addObserver(new StartObserver());
-                this.fields[x][y] = tmp;
-            }
+        this.moveCount = 0;
+
+        Board used = null;
+        if (this.board.isMapped()) {
+            // Generate the next round in place, the {@link model.SaveFile} is the only storage
+            this.seed = newSeed();
+            this.board.clear();
+            new MineGenerator(this.seed).generate(this.board, this.amountMines);
+        } else {
+            // Swap in the pitch of the next round
+            BoardPool boardPool = this.getBoardPool();
+            used = this.board;
+            this.board = boardPool.take();
+            this.seed = boardPool.getSeed();
+            this.amountMines = boardPool.getAmountMines();
         }
-        // Let the {@link model.Field}s know which {@link model.Field}s border on them
-        connectNeighbors();
-    }
-
-    /**
-     * Iterates trough the {@link model.Field}s and let them know which {@link model.Field}s border on them.
-     */
-    private void connectNeighbors() {
-        for (int i = 0; i < this.fields.length; i++) {
-            for (int j = 0; j < this.fields[i].length; j++) {
-                for (int iHelp = i - 1; iHelp <= i + 1; iHelp++) {
-                    for (int jHelp = j - 1; jHelp <= j + 1; jHelp++) {
-                        if (iHelp >= 0 && jHelp >= 0 &&
-                                iHelp < this.fields.length &&
-                                jHelp < this.fields[i].length
-                                && (iHelp != i || jHelp != j)
-                                ) {
-                            this.fields[i][j].addNeighbor(fields[iHelp][jHelp]);
-                        }
-                    }
-                }
+        this.floodFill = null;
+        this.initCounters();
+        this.clearHistory();
+
+        this.fireBoardChanged(BoardDelta.full(BoardDelta.Action.RESET, -1, false));
+        if (null != used)
+            this.recycle(used);
+    }
+
+    /**
+     * Hands the given {@link model.Board} back to the {@link model.BoardPool} via the recycle
+     * {@link java.util.concurrent.Executor}. The view may still paint it until it has seen the reset.
+     *
+     * @param used {@link model.Board} replaced by a reset.
+     */
+    private void recycle(final Board used) {
+        final BoardPool boardPool = this.getBoardPool();
+        Runnable recycle = new Runnable() {
+            @Override
+            public void run() {
+                boardPool.recycle(used);
             }
-        }
+        };
+        if (null == this.recycleExecutor)
+            recycle.run();
+        else
+            this.recycleExecutor.execute(recycle);
+    }
+
+    /**
+     * Sets the {@link java.util.concurrent.Executor} which hands the {@link model.Board} replaced by a reset back to
+     * the {@link model.BoardPool}. It should run the hand-back once no other thread reads the replaced
+     * {@link model.Board} anymore, e.g. on the Event Dispatch Thread after the view has seen the reset.
+     *
+     * @param recycleExecutor {@link java.util.concurrent.Executor} to use, null to hand it back right away.
+     */
+    public void setRecycleExecutor(Executor recycleExecutor) {
+        this.recycleExecutor = recycleExecutor;
     }
 
+    /**
+     * Creates the {@link model.BoardPool} on demand, e.g. after deserialization.
+     *
+     * @return {@link model.BoardPool} for the size and amount of mines of this {@link model.Game}.
+     */
+    BoardPool getBoardPool() {
+        if (null == this.boardPool)
+            this.boardPool = new BoardPool(this.height, this.width, this.amountMines);
+        return this.boardPool;
+    }
+
+    /**
+     * @return {@link long} randomly chosen seed.
+     */
+    private static long newSeed() {
+        return new SplittableRandom().nextLong();
+    }
+
+    /**
+     * Creates a new {@link model.Board} and lets the {@link model.MineGenerator} place the mines.
+     */
+    private void initBoard() {
+        this.board = new Board(this.height, this.width);
+        this.floodFill = null;
+
+        new MineGenerator(this.seed).generate(this.board, this.amountMines);
+        this.initCounters();
+    }
+
+    /**
+     * Initializes the counters for a pitch without opened or marked cells.
+     */
+    private void initCounters() {
+        this.amountClosedSafeFields = this.board.getCellCount() - this.amountMines;
+        this.amountCorrectMarks = 0;
+        this.amountIncorrectMarks = 0;
+    }
+
+    /**
+     * Builds a matrix of all {@link model.Field}s. Every {@link model.Field} of the pitch will be created, so use
+     * {@link model.Game#getField} or the {@link model.Board} whenever possible.
+     *
+     * @return {@link model.Field[][]} containing the {@link model.Field}s of the pitch.
+     */
     public Field[][] getFields() {
-        return fields;
+        Field[][] matrix = new Field[this.height][this.width];
+        for (int x = 0; x < this.height; x++) {
+            for (int y = 0; y < this.width; y++) {
+                matrix[x][y] = this.getField(x, y);
+            }
+        }
+        return matrix;
     }
 
+    /**
+     * Returns the {@link model.Field} at the given coordinates. It is only a view on the {@link model.Board}, so a new
+     * one is created for every request.
+     *
+     * @param x {@link int} x coordinate
+     * @param y {@link int} y coordinate
+     * @return {@link model.Field} at the given coordinates.
+     */
     public Field getField(int x, int y) {
-        return fields[x][y];
+        return new Field(this, x, y);
+    }
+
+    /**
+     * Tells you how many mines border on the {@link model.Field} at the given coordinates. The amount is calculated
+     * when the pitch is generated, so this is a plain lookup.
+     *
+     * @param x {@link int} x coordinate
+     * @param y {@link int} y coordinate
+     * @return {@link int} how many mines border on the {@link model.Field}?
+     */
+    public int getAmountNeighborMines(int x, int y) {
+        return this.board.getNeighborMines(this.board.index(x, y));
+    }
+
+    /**
+     * Makes the user invulnerable against mines in the first turn. Moves the mine of the given cell to the next cell in
+     * row-major order which is no mine. If every other cell is a
+     * mine it is just removed. Only the amount of neighbour mines around both cells changes.
+     *
+     * @param index {@link int} index of the cell containing the mine.
+     * @return {@link int} index of the cell the mine was moved to, -1 if it was removed.
+     */
+    private int moveMine(int index) {
+        int cells = this.board.getCellCount();
+        this.board.setMine(index, false);
+        this.amountMines--;
+        this.amountClosedSafeFields++;
+        for (int i = (index + 1) % cells; i != index; i = (i + 1) % cells) {
+            if (!this.board.isMine(i)) {
+                this.board.setMine(i, true);
+                this.amountMines++;
+                this.amountClosedSafeFields--;
+                // No {@link model.Field} is opened yet, but it might be marked already
+                if (this.board.isMarked(i)) {
+                    this.amountIncorrectMarks--;
+                    this.amountCorrectMarks++;
+                }
+                return i;
+            }
+        }
+        return -1;
     }
 
+    public Board getBoard() {
+        return board;
+    }
+
+    /**
+     * Opens the {@link model.Field} at the given coordinates. If no mines border on it the whole region around it is
+     * opened by the {@link model.FloodFill}. Afterwards the {@link model.BoardListener}s are notified once about all
+     * opened {@link model.Field}s.
+     *
+     * @param x {@link int} x coordinate
+     * @param y {@link int} y coordinate
+     */
     public void openField(int x, int y) {
-        this.fields[x][y].open();
+        int index = this.board.index(x, y);
+
+        if (this.ended || this.board.isOpen(index) || this.board.isMarked(index))
+            return;
+
+        State state = this.remember();
+
+        // If it is the first turn the user is invulnerable against mines
+        if (this.firstTurn) {
+            if (this.board.isMine(index)) {
+                int target = this.moveMine(index);
+                if (null != state) {
+                    state.mineFrom = index;
+                    state.mineTo = target;
+                }
+            }
+            // First turn is over
+            this.firstTurn = false;
+        }
+
+        if (null == this.floodFill)
+            this.floodFill = new FloodFill(this.board);
+
+        int[] opened = this.floodFill.open(index);
+        this.moveCount++;
+
+        // Only the first {@link model.Field} can be a mine, the {@link model.FloodFill} stops in front of them
+        if (this.board.isMine(index)) {
+            this.won = false;
+            this.ended = true;
+        } else {
+            this.amountClosedSafeFields -= opened.length;
+            this.checkVictory();
+        }
+
+        this.finishMove(BoardDelta.Action.OPEN, index, opened);
     }
 
+    /**
+     * Marks the {@link model.Field} at the given coordinates or removes its mark. Opened {@link model.Field}s can't
+     * be marked.
+     *
+     * @param x {@link int} x coordinate
+     * @param y {@link int} y coordinate
+     */
     public void markField(int x, int y) {
-        this.fields[x][y].setMarked(!this.fields[x][y].isMarked());
+        int index = this.board.index(x, y);
+
+        if (this.ended || this.board.isOpen(index))
+            return;
+
+        this.remember();
+        boolean marked = !this.board.isMarked(index);
+        this.board.setMarked(index, marked);
+        this.moveCount++;
+
+        // Update counters
+        int delta = marked ? 1 : -1;
+        if (this.board.isMine(index))
+            this.amountCorrectMarks += delta;
+        else
+            this.amountIncorrectMarks += delta;
+        this.checkVictory();
+
+        this.finishMove(BoardDelta.Action.MARK, index, new int[]{index});
+    }
+
+    /**
+     * Takes back the last move which was not undone yet. The {@link model.BoardListener}s are notified with a full
+     * {@link model.BoardDelta}.
+     *
+     * @return {@link boolean} was a move undone?
+     */
+    public boolean undo() {
+        if (!this.canUndo())
+            return false;
+
+        State previous = this.undoStack.pop();
+        this.redoStack.push(this.capture(previous.mineFrom, previous.mineTo));
+
+        // The first move may have moved a mine
+        if (previous.mineFrom >= 0) {
+            if (previous.mineTo >= 0)
+                this.board.setMine(previous.mineTo, false);
+            this.board.setMine(previous.mineFrom, true);
+        }
+        this.apply(previous, BoardDelta.Action.UNDO);
+        return true;
+    }
+
+    /**
+     * Performs the last undone move again. The {@link model.BoardListener}s are notified with a full
+     * {@link model.BoardDelta}.
+     *
+     * @return {@link boolean} was a move redone?
+     */
+    public boolean redo() {
+        if (!this.canRedo())
+            return false;
+
+        State next = this.redoStack.pop();
+        this.undoStack.push(this.capture(next.mineFrom, next.mineTo));
+
+        if (next.mineFrom >= 0) {
+            this.board.setMine(next.mineFrom, false);
+            if (next.mineTo >= 0)
+                this.board.setMine(next.mineTo, true);
+        }
+        this.apply(next, BoardDelta.Action.REDO);
+        return true;
+    }
+
+    public boolean canUndo() {
+        return null != this.undoStack && !this.undoStack.isEmpty();
+    }
+
+    public boolean canRedo() {
+        return null != this.redoStack && !this.redoStack.isEmpty();
+    }
+
+    /**
+     * Starts a step: the following moves until {@link model.Game#endStep} are remembered as one state, so they are
+     * undone and redone together. Steps may be nested, the outermost one counts.
+     */
+    public void beginStep() {
+        if (0 == this.stepDepth++)
+            this.stepStarted = false;
+    }
+
+    /**
+     * Ends the step started by {@link model.Game#beginStep}.
+     */
+    public void endStep() {
+        if (this.stepDepth > 0)
+            this.stepDepth--;
+    }
+
+    /**
+     * Lets the next moves continue the step of the previous move until {@link model.Game#endStep}, e.g. because a
+     * {@link model.MoveJournal} performs a recorded step again.
+     */
+    void continueStep() {
+        this.stepDepth++;
+        this.stepStarted = true;
+    }
+
+    /**
+     * Stops remembering states, e.g. because nobody will undo the moves.
+     */
+    void disableHistory() {
+        this.historyDisabled = true;
+        this.clearHistory();
+    }
+
+    /**
+     * Remembers the current state before a move and forgets the undone moves. A move which continues the open step
+     * remembers nothing, the state before the step covers it. If more than {@link model.Game#MAX_HISTORY} states are
+     * remembered, the oldest one is forgotten.
+     *
+     * @return {@link model.Game.State} before the move or its step, null if there is no history.
+     */
+    private State remember() {
+        this.continued = this.stepDepth > 0 && this.stepStarted;
+        this.stepStarted = this.stepDepth > 0;
+        if (this.historyDisabled || !(this.board.getOpenPlane() instanceof BitPlane.PersistentBitPlane))
+            return null;
+
+        if (null == this.undoStack) {
+            this.undoStack = new ArrayDeque<State>();
+            this.redoStack = new ArrayDeque<State>();
+        }
+        if (this.continued && !this.undoStack.isEmpty())
+            return this.undoStack.peek();
+
+        State state = this.capture(-1, -1);
+        this.undoStack.push(state);
+        this.redoStack.clear();
+        if (this.undoStack.size() > MAX_HISTORY)
+            this.undoStack.removeLast();
+        return state;
+    }
+
+    /**
+     * Forgets the undone and the remembered moves, e.g. because a {@link model.MoveJournal} starts from a snapshot of
+     * the current state, which has no history.
+     */
+    void clearHistory() {
+        if (null != this.undoStack) {
+            this.undoStack.clear();
+            this.redoStack.clear();
+        }
+    }
+
+    /**
+     * Takes snapshots of the current state.
+     *
+     * @param mineFrom {@link int} cell whose mine was moved between the state and the next one, -1 if none was moved.
+     * @param mineTo   {@link int} cell the mine was moved to, -1 if it was removed.
+     * @return {@link model.Game.State} of the current state.
+     */
+    private State capture(int mineFrom, int mineTo) {
+        State state = new State();
+        state.opened = ((BitPlane.PersistentBitPlane) this.board.getOpenPlane()).snapshot();
+        state.marked = ((BitPlane.PersistentBitPlane) this.board.getMarkedPlane()).snapshot();
+        state.flags = this.getFlags();
+        state.moveCount = this.moveCount;
+        state.counters = new int[]{this.amountMines, this.amountClosedSafeFields, this.amountCorrectMarks,
+                this.amountIncorrectMarks};
+        state.mineFrom = mineFrom;
+        state.mineTo = mineTo;
+        return state;
+    }
+
+    /**
+     * Swaps in the given state and notifies the {@link model.BoardListener}s, and the {@link java.util.Observer}s if
+     * it is over.
+     *
+     * @param state  {@link model.Game.State} to swap in.
+     * @param action {@link model.BoardDelta.Action} which caused it.
+     */
+    private void apply(State state, BoardDelta.Action action) {
+        ((BitPlane.PersistentBitPlane) this.board.getOpenPlane()).restore(state.opened);
+        ((BitPlane.PersistentBitPlane) this.board.getMarkedPlane()).restore(state.marked);
+        this.firstTurn = 0 != (state.flags & SaveFile.FIRST_TURN);
+        this.ended = 0 != (state.flags & SaveFile.ENDED);
+        this.won = 0 != (state.flags & SaveFile.WON);
+        this.moveCount = state.moveCount;
+        this.amountMines = state.counters[0];
+        this.amountClosedSafeFields = state.counters[1];
+        this.amountCorrectMarks = state.counters[2];
+        this.amountIncorrectMarks = state.counters[3];
+
+        this.fireBoardChanged(BoardDelta.full(action, -1, false));
+        if (this.ended) {
+            this.setChanged();
+            this.notifyObservers();
+        }
+    }
+
+    /**
+     * Reports the changed cells of an action to the {@link model.BoardListener}s. If the {@link model.Game} is over
+     * all cells are revealed and the {@link java.util.Observer}s are notified afterwards.
+     *
+     * @param action {@link model.BoardDelta.Action} which was performed.
+     * @param origin {@link int} index of the cell the action was performed on.
+     * @param cells  {@link int[]} indices of the changed cells.
+     */
+    private void finishMove(BoardDelta.Action action, int origin, int[] cells) {
+        if (this.ended) {
+            this.board.revealAll(this.won);
+            this.fireBoardChanged(BoardDelta.full(action, origin, this.continued));
+            // Notify {@link controller.Controller.GameObserver}
+            this.setChanged();
+            this.notifyObservers();
+        } else {
+            this.fireBoardChanged(BoardDelta.of(this.board, action, origin, cells, this.continued));
+        }
+    }
+
+    /**
+     * Delivers the given {@link model.BoardDelta} to every {@link model.BoardListener}.
+     *
+     * @param delta {@link model.BoardDelta} to deliver.
+     */
+    private void fireBoardChanged(BoardDelta delta) {
+        if (null == this.boardListeners)
+            return;
+        for (BoardListener listener : this.boardListeners) {
+            listener.boardChanged(delta);
+        }
+    }
+
+    /**
+     * Adds a {@link model.BoardListener} which will be notified about changes of the pitch.
+     *
+     * @param listener {@link model.BoardListener} to add.
+     */
+    public void addBoardListener(BoardListener listener) {
+        if (null == this.boardListeners)
+            this.boardListeners = new CopyOnWriteArrayList<BoardListener>();
+        this.boardListeners.add(listener);
+    }
+
+    /**
+     * Removes the given {@link model.BoardListener}.
+     *
+     * @param listener {@link model.BoardListener} to remove.
+     */
+    public void removeBoardListener(BoardListener listener) {
+        if (null != this.boardListeners)
+            this.boardListeners.remove(listener);
+    }
+
+    /**
+     * Checks the counters. You have won the {@link model.Game} if every mine is marked and each {@link model.Field}
+     * which is no mine is either opened or marked.
+     */
+    private void checkVictory() {
+        if (this.amountCorrectMarks == this.amountMines
+                && this.amountClosedSafeFields == this.amountIncorrectMarks) {
+            this.won = true;
+            this.ended = true;
+        }
+    }
+
+    public int getAmountMines() {
+        return amountMines;
+    }
+
+    public int getAmountClosedSafeFields() {
+        return amountClosedSafeFields;
+    }
+
+    public int getAmountCorrectMarks() {
+        return amountCorrectMarks;
+    }
+
+    public int getAmountIncorrectMarks() {
+        return amountIncorrectMarks;
+    }
+
+    public long getMoveCount() {
+        return moveCount;
+    }
+
+    /**
+     * @return {@link int} state of this {@link model.Game} as {@link model.SaveFile} flags.
+     */
+    int getFlags() {
+        int flags = 0;
+        if (this.firstTurn)
+            flags |= SaveFile.FIRST_TURN;
+        if (this.ended)
+            flags |= SaveFile.ENDED;
+        if (this.won)
+            flags |= SaveFile.WON;
+        return flags;
     }
 
     public boolean isWon() {
@@ -242,48 +907,31 @@ public class Game extends Observable implements Serializable {
         return pMine;
     }
 
+    public long getSeed() {
+        return seed;
+    }
+
     /**
-     * Class: StartObserver
-     * Implements an {@link java.util.Observer} which should observe a {@link model.Game}. If it is the first turn of
-     * the {@link model.Game} it makes you invulnerable against mines.
-     *
-     * @see java.util.Observer
-     * @see model.Game
+     * Class: State
+     * Remembered state of a {@link model.Game}. The bitsets are snapshots of
+     * {@link model.BitPlane.PersistentBitPlane}s, the mines are not stored since only the first move can change them.
      */
-    class StartObserver implements Observer {
+    private static class State {
 
-        /**
-         * Class constructor.
-         */
-        public StartObserver() {
-            super();
-        }
+        // Snapshots of the bitsets
+        private BitPlane.PersistentBitPlane opened;
+        private BitPlane.PersistentBitPlane marked;
+
+        private int flags;
+        private long moveCount;
 
         /**
-         * Update method of this observer. If the referencing {@link model.Field} changes it's state and it's the first
-         * turn of the referencing {@link model.Game} it makes the user invulnerable against mines.
-         *
-         * @param arg0 {@link java.util.Observable} observed observable object.
-         * @param arg1 {@link java.lang.Object} optional parameter.
-         * @see java.util.Observer
-         * @see java.util.Observable
-         * @see java.lang.Object
-         * @see model.Field
-         * @see model.Game
+         * Amount of mines, closed safe cells, correct and incorrect marks.
          */
-        public void update(Observable arg0, Object arg1) {
-            Field field = (Field) arg0;
-
-            if (null != arg1) {
-                if (firstTurn) {
-                    // If the {@link model.Field#isMine} is true refuse it
-                    if (field.isMine()) {
-                        field.setMine(false);
-                    }
-                    // First turn is over
-                    firstTurn = false;
-                }
-            }
-        }
+        private int[] counters;
+
+        // Mine moved between this state and the next one
+        private int mineFrom;
+        private int mineTo;
     }
 }
@@ -0,0 +1,266 @@
+/*
+ * (C) Copyright 2014 Mark Alexander Dietrich <mark.dietrich93@gmail.com>.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Contributors:
+ *     Mark Alexander Dietrich
+ */
+
+package model;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Created by Mark Alexander Dietrich on 06/11/14.
+ * <p/>
+ * File: MineGenerator.java
+ * <p/>
+ * Class: MineGenerator
+ * Places an exact amount of mines on a {@link model.Board}. The cells are split into bands of whole bitset words. Each
+ * band gets its share of the mines and its own {@link java.util.SplittableRandom}, which are derived from the seed
+ * along a fixed tree of splits. Therefore the same seed always produces the same pitch, no matter how many threads
+ * work on it. The share of a band is drawn from the exact hypergeometric distribution, so the layout is a uniform
+ * sample as if all mines were placed one after another. Inside a band the mines are sampled with Floyd's algorithm in
+ * O(mines).
+ *
+ * @author Mark Alexander Dietrich
+ * @see model.Board
+ * @see java.util.SplittableRandom
+ */
+public class MineGenerator {
+
+    /**
+     * Bands with at most this many cells are not split any further.
+     */
+    private static final int BAND_CELLS = 1 << 16;
+
+    /**
+     * Probabilities of the split below this fraction of the sum of the larger ones are omitted.
+     */
+    private static final double NEGLIGIBLE = 1e-20;
+
+    /**
+     * Seed the mines are generated from.
+     */
+    private final long seed;
+
+    /**
+     * Class constructor.
+     *
+     * @param seed {@link long} seed the mines are generated from.
+     */
+    public MineGenerator(long seed) {
+        this.seed = seed;
+    }
+
+    /**
+     * Places exactly the given amount of mines on the given empty {@link model.Board} and calculates the amount of
+     * neighbour mines of each cell. Large pitches are generated on the common
+     * {@link java.util.concurrent.ForkJoinPool}.
+     *
+     * @param board       {@link model.Board} without mines.
+     * @param amountMines {@link int} how many mines to place.
+     */
+    public void generate(Board board, int amountMines) {
+        int cells = board.getCellCount();
+        if (amountMines < 0 || amountMines > cells)
+            throw new IllegalArgumentException("Can't place " + amountMines + " mines on " + cells + " cells");
+
+        Band root = new Band(board, 0, (cells + 63) >>> 6, amountMines, new SplittableRandom(this.seed));
+        if (cells <= BAND_CELLS)
+            root.compute();
+        else
+            ForkJoinPool.commonPool().invoke(root);
+
+        board.countNeighborMines();
+    }
+
+    /**
+     * Draws the amount of mines which fall into the first part of a band, i.e. a hypergeometric distributed value, by
+     * inversion: the probabilities are walked starting at the mode, alternating below and above it, until the uniform
+     * value is used up. They are calculated relative to the mode with the ratio of neighbouring probabilities and
+     * normalized by their sum, which is taken over all values whose probability is at least
+     * {@link model.MineGenerator#NEGLIGIBLE} times the sum. The omitted tails are below the resolution of
+     * {@link java.util.SplittableRandom#nextDouble}, so the result follows the exact distribution up to the rounding
+     * of double arithmetic, and the mines are placed as if all of them were sampled sequentially. Both walks take
+     * O(standard deviation) steps.
+     *
+     * @param random     {@link java.util.SplittableRandom} to use.
+     * @param draws      {@link int} mines of the whole band.
+     * @param successes  {@link int} cells of the first part.
+     * @param population {@link int} cells of the whole band.
+     * @return {@link int} mines of the first part.
+     */
+    static int hypergeometric(SplittableRandom random, int draws, int successes, int population) {
+        int min = Math.max(0, draws - (population - successes));
+        int max = Math.min(draws, successes);
+        if (min == max)
+            return min;
+
+        double n = draws;
+        double k = successes;
+        double others = (double) population - successes;
+        int mode = (int) Math.max(min, Math.min(max, (long) ((n + 1) * (k + 1) / ((double) population + 2))));
+
+        // Sum of the probabilities relative to the mode, and the range which is not negligible
+        double total = 1;
+        int low = mode;
+        double weight = 1;
+        while (low > min) {
+            weight *= down(low, n, k, others);
+            if (weight < NEGLIGIBLE * total)
+                break;
+            total += weight;
+            low--;
+        }
+        int high = mode;
+        weight = 1;
+        while (high < max) {
+            weight *= up(high, n, k, others);
+            if (weight < NEGLIGIBLE * total)
+                break;
+            total += weight;
+            high++;
+        }
+
+        // Walk the same range again until the uniform value is used up
+        double u = random.nextDouble() * total - 1;
+        if (u < 0)
+            return mode;
+        int below = mode;
+        int above = mode;
+        double belowWeight = 1;
+        double aboveWeight = 1;
+        while (below > low || above < high) {
+            if (below > low) {
+                belowWeight *= down(below, n, k, others);
+                below--;
+                u -= belowWeight;
+                if (u < 0)
+                    return below;
+            }
+            if (above < high) {
+                aboveWeight *= up(above, n, k, others);
+                above++;
+                u -= aboveWeight;
+                if (u < 0)
+                    return above;
+            }
+        }
+        // Only rounding can leave something of the uniform value
+        return mode;
+    }
+
+    /**
+     * @return {@link double} P(x - 1) / P(x) of the hypergeometric distribution.
+     */
+    private static double down(int x, double n, double k, double others) {
+        return x * (others - n + x) / ((k - x + 1) * (n - x + 1));
+    }
+
+    /**
+     * @return {@link double} P(x + 1) / P(x) of the hypergeometric distribution.
+     */
+    private static double up(int x, double n, double k, double others) {
+        return (k - x) * (n - x) / ((x + 1) * (others - n + x + 1));
+    }
+
+    /**
+     * Class: Band
+     * Places the mines of a range of bitset words. It splits itself until the range is small enough.
+     *
+     * @see java.util.concurrent.RecursiveAction
+     */
+    private static class Band extends RecursiveAction {
+
+        /**
+         * {@code serialVersionUID}, which is used during deserialization to verify that the sender and receiver
+         * of a serialized object have loaded classes for that object that are compatible with respect to
+         * serialization. It has to be {@link final} and {@link long}.
+         *
+         * @see java.io.ObjectOutputStream
+         * @see java.io.ObjectInputStream
+         * @see final
+         * @see long
+         */
+        private static final long serialVersionUID = 1L;
+
+        private final Board board;
+
+        // Range of bitset words
+        private final int fromWord;
+        private final int toWord;
+
+        /**
+         * Mines of this range.
+         */
+        private final int amountMines;
+
+        private final SplittableRandom random;
+
+        private Band(Board board, int fromWord, int toWord, int amountMines, SplittableRandom random) {
+            this.board = board;
+            this.fromWord = fromWord;
+            this.toWord = toWord;
+            this.amountMines = amountMines;
+            this.random = random;
+        }
+
+        @Override
+        protected void compute() {
+            int from = this.fromWord << 6;
+            int to = (int) Math.min((long) this.toWord << 6, this.board.getCellCount());
+
+            if (to - from <= BAND_CELLS) {
+                this.sample(from, to);
+                return;
+            }
+
+            // The split depends only on the size, the random values only on the position in the tree
+            int middleWord = (this.fromWord + this.toWord) >>> 1;
+            int middle = middleWord << 6;
+            int leftMines = hypergeometric(this.random, this.amountMines, middle - from, to - from);
+            SplittableRandom leftRandom = this.random.split();
+
+            invokeAll(new Band(this.board, this.fromWord, middleWord, leftMines, leftRandom),
+                    new Band(this.board, middleWord, this.toWord, this.amountMines - leftMines, this.random));
+        }
+
+        /**
+         * Places the mines of this band with Floyd's algorithm. If more than half of the cells are mines the safe cells
+         * are sampled instead.
+         *
+         * @param from {@link int} first cell of the band.
+         * @param to   {@link int} cell behind the band.
+         */
+        private void sample(int from, int to) {
+            int cells = to - from;
+            boolean inverted = this.amountMines > cells / 2;
+            int amount = inverted ? cells - this.amountMines : this.amountMines;
+
+            for (int j = cells - amount; j < cells; j++) {
+                int t = this.random.nextInt(j + 1);
+                if (this.board.isMine(from + t))
+                    this.board.putMine(from + j);
+                else
+                    this.board.putMine(from + t);
+            }
+
+            if (inverted)
+                this.board.invertMines(from, to);
+        }
+    }
+}
@@ -0,0 +1,399 @@
+/*
+ * (C) Copyright 2014 Mark Alexander Dietrich <mark.dietrich93@gmail.com>.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Contributors:
+ *     Mark Alexander Dietrich
+ */
+
+package model;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Created by Mark Alexander Dietrich on 06/11/14.
+ * <p/>
+ * File: MoveJournal.java
+ * <p/>
+ * Class: MoveJournal
+ * Appends every move of a {@link model.Game} to a small journal file, so an interrupted {@link model.Game} can be
+ * recovered. The pitch follows from its seed, therefore the journal only contains a header of
+ * {@link model.MoveJournal#HEADER_SIZE} bytes
+ * <pre>
+ *  0  int    magic number "MJNL"
+ *  4  int    version
+ *  8  int    height
+ * 12  int    width
+ * 16  int    amount of mines
+ * 20  int    flags: based on a snapshot
+ * 24  long   seed
+ * </pre>
+ * and one record of {@link model.MoveJournal#RECORD_SIZE} bytes per move: the ordinal of the
+ * {@link model.BoardDelta.Action}, together with {@link model.MoveJournal#CONTINUED} if the move continues the step of
+ * the previous move, and the index of the cell. Records are collected in a buffer and written when it is
+ * full or when the journal is flushed, which also forces them to the storage device. A reset starts a new journal,
+ * when the {@link model.Game} is over the journal is emptied because there is nothing left to recover. Undone and
+ * redone moves are recorded like moves and repeated on recovery. If the {@link model.Game} already contained moves
+ * when the journal was started, e.g. because it was loaded, its state is written to a {@link model.SaveFile} next to
+ * the journal and the moves are replayed onto it. The snapshot has no history, so the undo and redo history of the
+ * {@link model.Game} is cleared then, as it is when an undo continues a {@link model.Game} which was over.
+ * <p/>
+ * A {@link model.MoveJournal} has to be used on the thread which performs the actions of the {@link model.Game}.
+ *
+ * @author Mark Alexander Dietrich
+ * @see model.BoardListener
+ * @see model.Game
+ */
+public class MoveJournal implements BoardListener {
+
+    /**
+     * "MJNL" in ASCII.
+     */
+    public static final int MAGIC = 0x4D4A4E4C;
+
+    /**
+     * Version of the format written by this class. Version 1 has no {@link model.MoveJournal#CONTINUED} flag and is
+     * still read.
+     */
+    public static final int VERSION = 2;
+
+    /**
+     * Size of the header in bytes.
+     */
+    public static final int HEADER_SIZE = 32;
+
+    /**
+     * Size of a record in bytes.
+     */
+    public static final int RECORD_SIZE = 8;
+
+    /**
+     * Flag of a journal which is based on a snapshot.
+     */
+    private static final int BASED = 1;
+
+    /**
+     * Flag of a move which continues the step of the previous move, see {@link model.Game#beginStep}. It is combined
+     * with the ordinal of the {@link model.BoardDelta.Action}.
+     */
+    static final int CONTINUED = 1 << 16;
+
+    /**
+     * Records which are buffered before they are written.
+     */
+    private static final int BUFFERED_RECORDS = 512;
+
+    /**
+     * {@link model.Game} whose moves are written.
+     */
+    private final Game game;
+
+    /**
+     * Journal file.
+     */
+    private final File file;
+
+    /**
+     * Open journal file.
+     */
+    private final RandomAccessFile randomAccessFile;
+    private final FileChannel channel;
+
+    /**
+     * Records which are not written yet.
+     */
+    private final ByteBuffer buffer;
+
+    /**
+     * Class constructor. Starts to write the moves of the given {@link model.Game}.
+     *
+     * @param file   {@link java.io.File} of the journal.
+     * @param game   {@link model.Game} whose moves are written.
+     * @param append {@link boolean} continue the journal the {@link model.Game} was recovered from instead of starting
+     *               a new one?
+     * @throws IOException if the journal can't be written.
+     */
+    public MoveJournal(File file, Game game, boolean append) throws IOException {
+        this.game = game;
+        this.file = file;
+        this.buffer = ByteBuffer.allocate(BUFFERED_RECORDS * RECORD_SIZE);
+
+        File directory = file.getAbsoluteFile().getParentFile();
+        if (null != directory && !directory.isDirectory() && !directory.mkdirs())
+            throw new IOException("Can't create directory " + directory);
+
+        this.randomAccessFile = new RandomAccessFile(file, "rw");
+        this.channel = this.randomAccessFile.getChannel();
+        if (append && this.channel.size() >= HEADER_SIZE) {
+            // Drop an incomplete last record
+            long records = (this.channel.size() - HEADER_SIZE) / RECORD_SIZE;
+            this.channel.truncate(HEADER_SIZE + records * RECORD_SIZE);
+            // The appended records may carry flags of the current version
+            ByteBuffer version = ByteBuffer.allocate(4);
+            version.putInt(VERSION).flip();
+            while (version.hasRemaining())
+                this.channel.write(version, 4 + version.position());
+            this.channel.position(this.channel.size());
+        } else {
+            this.restart(0 != this.game.getMoveCount());
+        }
+
+        this.game.addBoardListener(this);
+    }
+
+    /**
+     * @return {@link java.io.File} of the journal in the directory {@code .minesweeper} of the user.
+     */
+    public static File getDefaultFile() {
+        return new File(new File(System.getProperty("user.home"), ".minesweeper"), "journal");
+    }
+
+    /**
+     * @param file {@link java.io.File} of a journal.
+     * @return {@link java.io.File} of the snapshot it is based on.
+     */
+    private static File getBaseFile(File file) {
+        return new File(file.getPath() + ".base");
+    }
+
+    /**
+     * Rebuilds the {@link model.Game} written to the given journal by generating its pitch from the seed, or reading
+     * the snapshot it is based on, and performing the moves again. An incomplete last record is ignored.
+     *
+     * @param file {@link java.io.File} of the journal.
+     * @return {@link model.Game} as it was after the last complete record, null if there is nothing to recover.
+     * @throws IOException if the journal can't be read or is corrupt.
+     */
+    public static Game recover(File file) throws IOException {
+        if (!file.isFile() || file.length() < HEADER_SIZE)
+            return null;
+
+        RandomAccessFile randomAccessFile = new RandomAccessFile(file, "r");
+        try {
+            FileChannel channel = randomAccessFile.getChannel();
+            ByteBuffer buffer = ByteBuffer.allocate(BUFFERED_RECORDS * RECORD_SIZE);
+            buffer.limit(HEADER_SIZE);
+            readFully(channel, buffer);
+            if (MAGIC != buffer.getInt(0) || buffer.getInt(4) < 1 || buffer.getInt(4) > VERSION)
+                throw new IOException("Not a move journal: " + file);
+
+            int height = buffer.getInt(8);
+            int width = buffer.getInt(12);
+            int amountMines = buffer.getInt(16);
+            long seed = buffer.getLong(24);
+            if (height <= 0 || width <= 0 || (long) height * width > Integer.MAX_VALUE || amountMines < 0
+                    || amountMines > height * width)
+                throw new IOException("Corrupt move journal: " + file);
+            Game game;
+            if (0 != (buffer.getInt(20) & BASED)) {
+                game = SaveFile.read(getBaseFile(file));
+                if (game.getHeight() != height || game.getWidth() != width || game.getSeed() != seed)
+                    throw new IOException("Snapshot does not belong to move journal: " + file);
+            } else {
+                game = new Game(height, width, amountMines, seed, null);
+            }
+
+            long records = (channel.size() - HEADER_SIZE) / RECORD_SIZE;
+            while (records > 0) {
+                int count = (int) Math.min(records, BUFFERED_RECORDS);
+                buffer.clear();
+                buffer.limit(count * RECORD_SIZE);
+                readFully(channel, buffer);
+                buffer.flip();
+                for (int i = 0; i < count; i++) {
+                    int action = buffer.getInt();
+                    int index = buffer.getInt();
+                    int ordinal = action & ~CONTINUED;
+                    boolean history = BoardDelta.Action.UNDO.ordinal() == ordinal
+                            || BoardDelta.Action.REDO.ordinal() == ordinal;
+                    if (!history && (index < 0 || index >= game.getBoard().getCellCount()))
+                        throw new IOException("Corrupt move journal: " + file);
+                    apply(game, action, index);
+                }
+                records -= count;
+            }
+
+            // A {@link model.Game} which is over can't be continued
+            return game.isEnded() ? null : game;
+        } finally {
+            randomAccessFile.close();
+        }
+    }
+
+    /**
+     * Performs a move of the journal. A move flagged with {@link model.MoveJournal#CONTINUED} continues the step of
+     * the previous move.
+     *
+     * @param game   {@link model.Game} to perform the move on.
+     * @param action {@link int} ordinal of the {@link model.BoardDelta.Action}, possibly with
+     *               {@link model.MoveJournal#CONTINUED}.
+     * @param index  {@link int} index of the cell, ignored by an undo or redo.
+     * @throws IOException if the action is unknown.
+     */
+    static void apply(Game game, int action, int index) throws IOException {
+        Board board = game.getBoard();
+        boolean continued = 0 != (action & CONTINUED);
+        action &= ~CONTINUED;
+        if (continued)
+            game.continueStep();
+        try {
+            if (BoardDelta.Action.OPEN.ordinal() == action)
+                game.openField(board.getX(index), board.getY(index));
+            else if (BoardDelta.Action.MARK.ordinal() == action)
+                game.markField(board.getX(index), board.getY(index));
+            else if (BoardDelta.Action.UNDO.ordinal() == action)
+                game.undo();
+            else if (BoardDelta.Action.REDO.ordinal() == action)
+                game.redo();
+            else
+                throw new IOException("Unknown action " + action);
+        } finally {
+            if (continued)
+                game.endStep();
+        }
+    }
+
+    /**
+     * Appends the move which caused the given {@link model.BoardDelta}. If the journal can't be written it stops
+     * listening, so the {@link model.Game} is not disturbed.
+     *
+     * @param delta {@link model.BoardDelta} describing the move.
+     */
+    @Override
+    public void boardChanged(BoardDelta delta) {
+        try {
+            if (BoardDelta.Action.RESET == delta.getAction()) {
+                this.restart(false);
+                return;
+            }
+
+            // An undo continues a {@link model.Game} which was over, the emptied journal starts from its state
+            if (0 == this.channel.size()) {
+                this.restart(true);
+                return;
+            }
+
+            this.buffer.putInt(delta.getAction().ordinal() | (delta.isContinued() ? CONTINUED : 0));
+            this.buffer.putInt(delta.getOrigin());
+            if (!this.buffer.hasRemaining())
+                this.writeBuffer();
+
+            // Nothing left to recover
+            if (this.game.isEnded()) {
+                this.buffer.clear();
+                this.channel.truncate(0);
+                this.channel.force(false);
+            }
+        } catch (IOException e) {
+            // The {@link model.Game} goes on without journal
+            e.printStackTrace();
+            this.game.removeBoardListener(this);
+        }
+    }
+
+    /**
+     * Writes the buffered records and forces them to the storage device.
+     *
+     * @throws IOException if the journal can't be written.
+     */
+    public void flush() throws IOException {
+        this.writeBuffer();
+        this.channel.force(false);
+    }
+
+    /**
+     * Flushes and closes the journal. The moves of the {@link model.Game} are not written anymore.
+     *
+     * @throws IOException if the journal can't be written.
+     */
+    public void close() throws IOException {
+        this.game.removeBoardListener(this);
+        try {
+            this.flush();
+        } finally {
+            this.randomAccessFile.close();
+        }
+    }
+
+    /**
+     * Closes the journal and deletes its files, e.g. because the {@link model.Game} is stored elsewhere.
+     *
+     * @throws IOException if the files can't be deleted.
+     */
+    public void delete() throws IOException {
+        this.game.removeBoardListener(this);
+        this.randomAccessFile.close();
+
+        File baseFile = getBaseFile(this.file);
+        if (this.file.exists() && !this.file.delete())
+            throw new IOException("Can't delete " + this.file);
+        if (baseFile.exists() && !baseFile.delete())
+            throw new IOException("Can't delete " + baseFile);
+    }
+
+    /**
+     * Starts a new journal for the current pitch of the {@link model.Game}.
+     *
+     * @param based {@link boolean} does the {@link model.Game} contain moves already, which have to be saved as
+     *              snapshot?
+     */
+    private void restart(boolean based) throws IOException {
+        this.buffer.clear();
+        this.channel.truncate(0);
+        this.channel.position(0);
+
+        File baseFile = getBaseFile(this.file);
+        if (based) {
+            SaveFile.write(this.game, baseFile);
+            // The recovered {@link model.Game} can't undo past the snapshot, so neither may this one
+            this.game.clearHistory();
+        }
+        else if (baseFile.exists() && !baseFile.delete())
+            throw new IOException("Can't delete " + baseFile);
+
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        header.putInt(MAGIC);
+        header.putInt(VERSION);
+        header.putInt(this.game.getHeight());
+        header.putInt(this.game.getWidth());
+        header.putInt(this.game.getAmountMines());
+        header.putInt(based ? BASED : 0);
+        header.putLong(this.game.getSeed());
+        header.flip();
+        while (header.hasRemaining())
+            this.channel.write(header);
+        this.channel.force(false);
+    }
+
+    /**
+     * Writes the buffered records.
+     */
+    private void writeBuffer() throws IOException {
+        this.buffer.flip();
+        while (this.buffer.hasRemaining())
+            this.channel.write(this.buffer);
+        this.buffer.clear();
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer) < 0)
+                throw new IOException("Unexpected end of move journal");
+        }
+    }
+}
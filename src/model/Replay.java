@@ -0,0 +1,419 @@
+/*
+ * (C) Copyright 2014 Mark Alexander Dietrich <mark.dietrich93@gmail.com>.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Contributors:
+ *     Mark Alexander Dietrich
+ */
+
+package model;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Created by Mark Alexander Dietrich on 06/11/14.
+ * <p/>
+ * File: Replay.java
+ * <p/>
+ * Class: Replay
+ * Records the moves of a {@link model.Game} and plays them back on a second {@link model.Game}. A recording is the
+ * seed of the pitch plus the list of moves, or a snapshot of the start if the {@link model.Game} already contained
+ * moves. A reset starts a new recording. An undone step, see {@link model.Game#beginStep}, is taken off the recording
+ * and put back if it is redone, so the recording always leads to the current state.
+ * <p/>
+ * To seek quickly, the playback takes a compact snapshot every {@link model.Replay#INTERVAL} moves the first time it
+ * passes them: the opened and marked bitsets compressed with a {@link java.util.zip.Deflater}, the mines only if they
+ * differ from the previous snapshot. Seeking restores the nearest snapshot before the target and performs at most
+ * {@link model.Replay#INTERVAL} moves, so it does not depend on the length of the recording.
+ * <p/>
+ * A {@link model.Replay} has to be used on the thread which performs the actions of the recorded {@link model.Game}.
+ * Games whose {@link model.Board} is mapped from a {@link model.SaveFile} can't be recorded: the snapshot of the start
+ * and the playback would read and copy the whole file.
+ *
+ * @author Mark Alexander Dietrich
+ * @see model.Game
+ * @see model.BoardListener
+ */
+public class Replay implements BoardListener {
+
+    /**
+     * Amount of moves between two snapshots.
+     */
+    public static final int INTERVAL = 256;
+
+    /**
+     * Recorded {@link model.Game}.
+     */
+    private final Game game;
+
+    /**
+     * Seed of the recorded pitch.
+     */
+    private long seed;
+
+    /**
+     * Amount of mines of the recorded pitch when the recording started.
+     */
+    private int amountMines;
+
+    /**
+     * State at the start of the recording, null if it is the untouched pitch of the seed.
+     */
+    private Snapshot start;
+
+    /**
+     * Recorded moves, each one is the ordinal of the {@link model.BoardDelta.Action}, possibly with
+     * {@link model.MoveJournal#CONTINUED}, in the upper and the index of the cell in the lower 32 bits.
+     */
+    private long[] moves;
+    private int moveCount;
+
+    /**
+     * Moves taken off the recording by an undo, the latest last.
+     */
+    private long[] undoneMoves;
+    private int undoneCount;
+
+    /**
+     * {@link model.Game} showing the playback, created on demand.
+     */
+    private Game playback;
+
+    /**
+     * Amount of recorded moves performed on the playback.
+     */
+    private int position;
+
+    /**
+     * Snapshots of the playback, the n-th one after n * {@link model.Replay#INTERVAL} moves.
+     */
+    private final List<Snapshot> snapshots = new ArrayList<Snapshot>();
+
+    /**
+     * Class constructor. Starts to record the given {@link model.Game} from its current state.
+     *
+     * @param game {@link model.Game} to record.
+     * @throws IllegalArgumentException if the {@link model.Board} of the {@link model.Game} is mapped.
+     */
+    public Replay(Game game) {
+        if (game.getBoard().isMapped())
+            throw new IllegalArgumentException("Games mapped from a file can't be recorded");
+        this.game = game;
+        this.moves = new long[64];
+        this.undoneMoves = new long[64];
+        this.restart();
+        this.game.addBoardListener(this);
+    }
+
+    /**
+     * Records the move which caused the given {@link model.BoardDelta}. A reset starts a new recording, as well as an
+     * undo or redo of a move which is not part of the recording.
+     *
+     * @param delta {@link model.BoardDelta} describing the move.
+     */
+    @Override
+    public void boardChanged(BoardDelta delta) {
+        switch (delta.getAction()) {
+            case RESET:
+                this.restart();
+                return;
+            case UNDO:
+                if (0 == this.moveCount) {
+                    this.restart();
+                } else {
+                    // Take the moves of the step off, down to the one which started it
+                    long move;
+                    do {
+                        move = this.moves[--this.moveCount];
+                        if (this.undoneCount == this.undoneMoves.length)
+                            this.undoneMoves = Arrays.copyOf(this.undoneMoves, this.undoneCount << 1);
+                        this.undoneMoves[this.undoneCount++] = move;
+                    } while (isContinued(move) && this.moveCount > 0);
+
+                    // The step started before the recording
+                    if (isContinued(move)) {
+                        this.restart();
+                        return;
+                    }
+
+                    // Snapshots behind the last move are not valid anymore, the playback goes back on the next seek
+                    while (this.snapshots.size() > this.moveCount / INTERVAL + 1)
+                        this.snapshots.remove(this.snapshots.size() - 1);
+                }
+                return;
+            case REDO:
+                if (0 == this.undoneCount) {
+                    this.restart();
+                } else {
+                    // Put the step back, the moves which continue it follow the one which started it
+                    do {
+                        this.append(this.undoneMoves[--this.undoneCount]);
+                    } while (this.undoneCount > 0 && isContinued(this.undoneMoves[this.undoneCount - 1]));
+                }
+                return;
+            default:
+                this.undoneCount = 0;
+                int action = delta.getAction().ordinal() | (delta.isContinued() ? MoveJournal.CONTINUED : 0);
+                this.append(((long) action << 32) | (delta.getOrigin() & 0xFFFFFFFFL));
+        }
+    }
+
+    /**
+     * @param move {@link long} recorded move.
+     * @return {@link boolean} does the move continue the step of the previous move?
+     */
+    private static boolean isContinued(long move) {
+        return 0 != ((int) (move >>> 32) & MoveJournal.CONTINUED);
+    }
+
+    private void append(long move) {
+        if (this.moveCount == this.moves.length)
+            this.moves = Arrays.copyOf(this.moves, this.moveCount << 1);
+        this.moves[this.moveCount++] = move;
+    }
+
+    /**
+     * Stops recording. The playback can still be used.
+     */
+    public void stopRecording() {
+        this.game.removeBoardListener(this);
+    }
+
+    /**
+     * @return {@link int} amount of recorded moves.
+     */
+    public int getMoveCount() {
+        return moveCount;
+    }
+
+    /**
+     * @return {@link int} amount of recorded moves performed on the playback.
+     */
+    public int getPosition() {
+        return position;
+    }
+
+    /**
+     * Returns the {@link model.Game} showing the playback. It must only be changed by this {@link model.Replay}.
+     *
+     * @return {@link model.Game} at the current position of the playback.
+     */
+    public Game getPlayback() {
+        if (null == this.playback) {
+            // The playback is never reset, so it needs no {@link model.BoardPool}
+            Board board = new Board(this.game.getHeight(), this.game.getWidth());
+            Game playback;
+            if (null == this.start) {
+                new MineGenerator(this.seed).generate(board, this.amountMines);
+                int[] counters = {this.amountMines, board.getCellCount() - this.amountMines, 0, 0};
+                playback = new Game(board, this.seed, new int[]{0, 0, 0}, SaveFile.FIRST_TURN, 0, counters);
+            } else {
+                playback = new Game(board, this.seed, new int[]{0, 0, 0}, this.start.flags, this.start.moveCount,
+                        this.start.counters);
+                this.restore(playback, this.start);
+            }
+            playback.disableHistory();
+            this.playback = playback;
+            this.position = 0;
+            this.snapshots.add(this.capture(playback, null));
+        }
+        return this.playback;
+    }
+
+    /**
+     * Moves the playback to the state after the given amount of moves. Its {@link model.BoardListener}s are notified
+     * about every performed move, or once with a full {@link model.BoardDelta} if a snapshot was restored.
+     *
+     * @param target {@link int} amount of moves, clamped to the recorded ones.
+     */
+    public void seek(int target) {
+        Game playback = this.getPlayback();
+        target = Math.max(0, Math.min(this.moveCount, target));
+
+        // Going back or far ahead starts at the nearest known snapshot
+        if (target < this.position || target - this.position > INTERVAL) {
+            int index = Math.min(target / INTERVAL, this.snapshots.size() - 1);
+            if (index * INTERVAL > this.position || target < this.position) {
+                this.restore(playback, this.snapshots.get(index));
+                this.position = index * INTERVAL;
+            }
+        }
+
+        while (this.position < target) {
+            long move = this.moves[this.position];
+            try {
+                MoveJournal.apply(playback, (int) (move >>> 32), (int) move);
+            } catch (IOException e) {
+                // Only known actions are recorded
+                throw new IllegalStateException(e);
+            }
+            this.position++;
+
+            // Index the new position
+            if (0 == this.position % INTERVAL && this.position / INTERVAL == this.snapshots.size())
+                this.snapshots.add(this.capture(playback, this.snapshots.get(this.snapshots.size() - 1)));
+        }
+    }
+
+    /**
+     * Starts a new recording from the current state of the {@link model.Game}.
+     */
+    private void restart() {
+        this.seed = this.game.getSeed();
+        this.amountMines = this.game.getAmountMines();
+        this.start = 0 == this.game.getMoveCount() ? null : this.capture(this.game, null);
+        this.moveCount = 0;
+        this.undoneCount = 0;
+        this.playback = null;
+        this.position = 0;
+        this.snapshots.clear();
+    }
+
+    /**
+     * Takes a snapshot of the given {@link model.Game}.
+     *
+     * @param game     {@link model.Game} to take the snapshot of.
+     * @param previous {@link model.Replay.Snapshot} whose mines may be shared, may be null.
+     * @return {@link model.Replay.Snapshot} of the current state.
+     */
+    private Snapshot capture(Game game, Snapshot previous) {
+        Board board = game.getBoard();
+        BitPlane mines = board.getMinePlane();
+
+        // The mines only change when the first move hits one
+        long[] mineWords = null;
+        if (null != previous && equals(mines, previous.mines))
+            mineWords = previous.mines;
+        if (null == mineWords) {
+            mineWords = new long[mines.getWordCount()];
+            for (int w = 0; w < mineWords.length; w++)
+                mineWords[w] = mines.getWord(w);
+        }
+
+        int[] counters = {game.getAmountMines(), game.getAmountClosedSafeFields(), game.getAmountCorrectMarks(),
+                game.getAmountIncorrectMarks()};
+        return new Snapshot(game.getFlags(), game.getMoveCount(), counters, mineWords,
+                deflate(board.getOpenPlane()), deflate(board.getMarkedPlane()));
+    }
+
+    /**
+     * Sets the given {@link model.Game} to the state of the given snapshot.
+     */
+    private void restore(Game game, Snapshot snapshot) {
+        Board board = game.getBoard();
+        BitPlane mines = board.getMinePlane();
+        if (!equals(mines, snapshot.mines)) {
+            for (int w = 0; w < snapshot.mines.length; w++)
+                mines.setWord(w, snapshot.mines[w]);
+            board.countNeighborMines();
+        }
+        inflate(snapshot.opened, board.getOpenPlane());
+        inflate(snapshot.marked, board.getMarkedPlane());
+
+        game.restore(snapshot.flags, snapshot.moveCount, snapshot.counters);
+    }
+
+    private static boolean equals(BitPlane plane, long[] words) {
+        for (int w = 0; w < words.length; w++) {
+            if (plane.getWord(w) != words[w])
+                return false;
+        }
+        return true;
+    }
+
+    /**
+     * Compresses the given {@link model.BitPlane}.
+     */
+    private static byte[] deflate(BitPlane plane) {
+        ByteBuffer bytes = ByteBuffer.allocate(plane.getWordCount() << 3);
+        for (int w = 0; w < plane.getWordCount(); w++)
+            bytes.putLong(plane.getWord(w));
+
+        Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        deflater.setInput(bytes.array());
+        deflater.finish();
+        byte[] result = new byte[64];
+        int length = 0;
+        while (!deflater.finished()) {
+            if (length == result.length)
+                result = Arrays.copyOf(result, length << 1);
+            length += deflater.deflate(result, length, result.length - length);
+        }
+        deflater.end();
+        return Arrays.copyOf(result, length);
+    }
+
+    /**
+     * Decompresses the given data into the given {@link model.BitPlane}.
+     */
+    private static void inflate(byte[] data, BitPlane plane) {
+        byte[] bytes = new byte[plane.getWordCount() << 3];
+        Inflater inflater = new Inflater();
+        inflater.setInput(data);
+        try {
+            int length = 0;
+            while (length < bytes.length && !inflater.finished())
+                length += inflater.inflate(bytes, length, bytes.length - length);
+        } catch (DataFormatException e) {
+            // Only data of {@link model.Replay#deflate} is inflated
+            throw new IllegalStateException(e);
+        } finally {
+            inflater.end();
+        }
+
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        for (int w = 0; w < plane.getWordCount(); w++)
+            plane.setWord(w, buffer.getLong());
+    }
+
+    /**
+     * Class: Snapshot
+     * Compact state of a {@link model.Game}.
+     */
+    private static class Snapshot {
+
+        private final int flags;
+        private final long moveCount;
+
+        /**
+         * Amount of mines, closed safe cells, correct and incorrect marks.
+         */
+        private final int[] counters;
+
+        /**
+         * Uncompressed mines, shared between snapshots.
+         */
+        private final long[] mines;
+
+        // Compressed bitsets
+        private final byte[] opened;
+        private final byte[] marked;
+
+        private Snapshot(int flags, long moveCount, int[] counters, long[] mines, byte[] opened, byte[] marked) {
+            this.flags = flags;
+            this.moveCount = moveCount;
+            this.counters = counters;
+            this.mines = mines;
+            this.opened = opened;
+            this.marked = marked;
+        }
+    }
+}
@@ -0,0 +1,488 @@
+/*
+ * (C) Copyright 2014 Mark Alexander Dietrich <mark.dietrich93@gmail.com>.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Contributors:
+ *     Mark Alexander Dietrich
+ */
+
+package model;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.LongBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Created by Mark Alexander Dietrich on 06/11/14.
+ * <p/>
+ * File: SaveFile.java
+ * <p/>
+ * Class: SaveFile
+ * Reads and writes a {@link model.Game} in a compact binary format. The file starts with a header of
+ * {@link model.SaveFile#HEADER_SIZE} bytes:
+ * <pre>
+ *  0  int    magic number "MINE"
+ *  4  int    version
+ *  8  int    height
+ * 12  int    width
+ * 16  int    amount of mines
+ * 20  int    flags: first turn, ended, won
+ * 24  long   seed
+ * 32  long   elapsed time in seconds
+ * 40  long   amount of moves
+ * 48  int    amount of closed cells which are no mines (since version 2)
+ * 52  int    amount of correct marks (since version 2)
+ * 56  int    amount of incorrect marks (since version 2)
+ * 60         reserved
+ * </pre>
+ * It is followed by the mine, open and marked bitsets of the {@link model.Board}, one bit per cell in 64 bit words.
+ * All values are big-endian and every bitset starts at a multiple of 8 bytes. The amount of neighbour mines is not
+ * stored, it is recalculated from the mines.
+ * <p/>
+ * Instead of being read, a file can also be mapped into memory with {@link model.SaveFile#map}. Its bitsets become the
+ * live storage of the {@link model.Board}: pages are loaded when the player reaches them and changes are written back
+ * by the operating system or by {@link model.SaveFile#flush}.
+ * <p/>
+ * The same format may also be compressed with GZIP, e.g. by an {@link model.AutoSave}. Such files are recognised and
+ * decompressed by {@link model.SaveFile#read}, but can't be mapped.
+ *
+ * @author Mark Alexander Dietrich
+ * @see model.Game
+ * @see model.Board
+ */
+public class SaveFile {
+
+    /**
+     * "MINE" in ASCII.
+     */
+    public static final int MAGIC = 0x4D494E45;
+
+    /**
+     * Version of the format written by this class.
+     */
+    public static final int VERSION = 2;
+
+    /**
+     * Size of the header in bytes.
+     */
+    public static final int HEADER_SIZE = 64;
+
+    // Bits of the flags
+    static final int FIRST_TURN = 1;
+    static final int ENDED = 2;
+    static final int WON = 4;
+
+    /**
+     * First two bytes of a GZIP stream.
+     */
+    private static final int GZIP_MAGIC = 0x1F8B;
+
+    /**
+     * Size of the buffer the bitsets are copied through.
+     */
+    private static final int BUFFER_SIZE = 1 << 20;
+
+    /**
+     * Open file of a mapped {@link model.SaveFile}.
+     */
+    private final RandomAccessFile randomAccessFile;
+    private final File file;
+
+    /**
+     * Mapped header.
+     */
+    private final MappedByteBuffer header;
+
+    /**
+     * {@link model.Game} living in the mapped file.
+     */
+    private final Game game;
+
+    /**
+     * Class constructor. Maps the given file.
+     *
+     * @param file {@link java.io.File} to map.
+     * @throws IOException if the {@link java.io.File} can't be mapped or is no valid save file.
+     */
+    private SaveFile(File file) throws IOException {
+        this.file = file;
+        this.randomAccessFile = new RandomAccessFile(file, "rw");
+        try {
+            FileChannel channel = this.randomAccessFile.getChannel();
+            if (channel.size() < HEADER_SIZE)
+                throw new IOException("Not a save file: " + file);
+            this.header = channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_SIZE);
+
+            int[] size = readSize(this.header, file);
+            int words = Board.getWordCount(size[0] * size[1]);
+            checkLength(channel, words);
+
+            long planeSize = 8L * words;
+            BitPlane mines = new BitPlane.MappedBitPlane(
+                    channel.map(FileChannel.MapMode.READ_WRITE, HEADER_SIZE, planeSize));
+            BitPlane opened = new BitPlane.MappedBitPlane(
+                    channel.map(FileChannel.MapMode.READ_WRITE, HEADER_SIZE + planeSize, planeSize));
+            BitPlane marked = new BitPlane.MappedBitPlane(
+                    channel.map(FileChannel.MapMode.READ_WRITE, HEADER_SIZE + 2 * planeSize, planeSize));
+
+            Board board = new Board(size[0], size[1], mines, opened, marked);
+            this.game = readGame(this.header, board, false);
+        } catch (IOException e) {
+            this.randomAccessFile.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Maps the given file into memory. The returned {@link model.SaveFile} keeps it open until it is closed.
+     *
+     * @param file {@link java.io.File} to map.
+     * @return {@link model.SaveFile} whose {@link model.Game} lives in the file.
+     * @throws IOException if the {@link java.io.File} can't be mapped or is no valid save file.
+     */
+    public static SaveFile map(File file) throws IOException {
+        return new SaveFile(file);
+    }
+
+    /**
+     * @param file {@link java.io.File} to compare.
+     * @return {@link boolean} is the given {@link java.io.File} the mapped one?
+     * @throws IOException if the paths can't be resolved.
+     */
+    public boolean isFile(File file) throws IOException {
+        return this.file.getCanonicalFile().equals(file.getCanonicalFile());
+    }
+
+    /**
+     * @return {@link model.Game} living in the mapped file.
+     */
+    public Game getGame() {
+        return game;
+    }
+
+    /**
+     * Writes the state of the {@link model.Game} into the header and forces all changes to the storage device. Has to
+     * be called on the thread which performs the actions of the {@link model.Game}.
+     *
+     * @throws IOException if the file can't be written.
+     */
+    public void flush() throws IOException {
+        this.header.clear();
+        writeHeader(this.header, this.game);
+        this.header.force();
+        this.game.getBoard().force();
+    }
+
+    /**
+     * Flushes and closes the mapped file. The {@link model.Game} must not be used afterwards.
+     *
+     * @throws IOException if the file can't be written.
+     */
+    public void close() throws IOException {
+        try {
+            this.flush();
+        } finally {
+            this.randomAccessFile.close();
+        }
+    }
+
+    /**
+     * Writes the given {@link model.Game} to the given {@link java.io.File}. The {@link model.Game} must not change
+     * meanwhile.
+     *
+     * @param game {@link model.Game} to save.
+     * @param file {@link java.io.File} to write.
+     * @throws IOException if the {@link java.io.File} can't be written.
+     */
+    public static void write(Game game, File file) throws IOException {
+        Board board = game.getBoard();
+        RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw");
+        try {
+            FileChannel channel = randomAccessFile.getChannel();
+            channel.truncate(0);
+
+            ByteBuffer header = createHeader(game);
+            header.clear();
+            writeFully(channel, header);
+
+            ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+            writePlane(channel, buffer, board.getMinePlane());
+            writePlane(channel, buffer, board.getOpenPlane());
+            writePlane(channel, buffer, board.getMarkedPlane());
+        } finally {
+            randomAccessFile.close();
+        }
+    }
+
+    /**
+     * Writes the given header and bitsets compressed with GZIP. The data is written to a temporary file first, which
+     * replaces the given {@link java.io.File} when it is complete, so an interrupted write keeps the previous one.
+     *
+     * @param header {@link java.nio.ByteBuffer} containing the header, see {@link model.SaveFile#createHeader}.
+     * @param mines  {@link model.BitPlane} of the mines.
+     * @param opened {@link model.BitPlane} of the opened cells.
+     * @param marked {@link model.BitPlane} of the marked cells.
+     * @param file   {@link java.io.File} to write.
+     * @throws IOException if the {@link java.io.File} can't be written.
+     */
+    static void writeCompressed(ByteBuffer header, BitPlane mines, BitPlane opened, BitPlane marked, File file)
+            throws IOException {
+        File temporary = new File(file.getPath() + ".tmp");
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                new GZIPOutputStream(new FileOutputStream(temporary), BUFFER_SIZE), BUFFER_SIZE));
+        try {
+            out.write(header.array(), 0, HEADER_SIZE);
+            writePlane(out, mines);
+            writePlane(out, opened);
+            writePlane(out, marked);
+        } finally {
+            out.close();
+        }
+        Files.move(temporary.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Reads a {@link model.Game} from the given {@link java.io.File} into the heap. Compressed files are decompressed.
+     *
+     * @param file {@link java.io.File} to read.
+     * @return {@link model.Game} as it was saved.
+     * @throws IOException if the {@link java.io.File} can't be read or is no valid save file.
+     */
+    public static Game read(File file) throws IOException {
+        RandomAccessFile randomAccessFile = new RandomAccessFile(file, "r");
+        try {
+            FileChannel channel = randomAccessFile.getChannel();
+
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            header.limit(2);
+            readFully(channel, header);
+            if (GZIP_MAGIC == (header.getShort(0) & 0xFFFF))
+                return readCompressed(file);
+            header.limit(HEADER_SIZE);
+            readFully(channel, header);
+            header.flip();
+            int[] size = readSize(header, file);
+
+            Board board = new Board(size[0], size[1]);
+            checkLength(channel, board.getMinePlane().getWordCount());
+
+            ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+            readPlane(channel, buffer, board.getMinePlane());
+            readPlane(channel, buffer, board.getOpenPlane());
+            readPlane(channel, buffer, board.getMarkedPlane());
+            board.countNeighborMines();
+
+            return readGame(header, board, true);
+        } finally {
+            randomAccessFile.close();
+        }
+    }
+
+    /**
+     * Reads a {@link model.Game} from the given compressed {@link java.io.File}.
+     */
+    private static Game readCompressed(File file) throws IOException {
+        DataInputStream in = new DataInputStream(new BufferedInputStream(
+                new GZIPInputStream(new FileInputStream(file), BUFFER_SIZE), BUFFER_SIZE));
+        try {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            in.readFully(header.array());
+            int[] size = readSize(header, file);
+
+            Board board = new Board(size[0], size[1]);
+            readPlane(in, board.getMinePlane());
+            readPlane(in, board.getOpenPlane());
+            readPlane(in, board.getMarkedPlane());
+            if (in.read() >= 0)
+                throw new IOException("Corrupt save file: data behind the bitsets");
+            board.countNeighborMines();
+
+            return readGame(header, board, true);
+        } catch (EOFException e) {
+            throw new IOException("Unexpected end of save file", e);
+        } finally {
+            in.close();
+        }
+    }
+
+    /**
+     * Creates the header of the given {@link model.Game}.
+     *
+     * @param game {@link model.Game} to describe.
+     * @return {@link java.nio.ByteBuffer} of {@link model.SaveFile#HEADER_SIZE} bytes.
+     */
+    static ByteBuffer createHeader(Game game) {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        writeHeader(header, game);
+        return header;
+    }
+
+    /**
+     * Writes the header of the given {@link model.Game} into the given buffer.
+     */
+    private static void writeHeader(ByteBuffer header, Game game) {
+        Board board = game.getBoard();
+        header.putInt(MAGIC);
+        header.putInt(VERSION);
+        header.putInt(board.getHeight());
+        header.putInt(board.getWidth());
+        header.putInt(game.getAmountMines());
+        header.putInt(game.getFlags());
+        header.putLong(game.getSeed());
+        int[] time = game.getInitialTime();
+        header.putLong(time[0] * 3600L + time[1] * 60L + time[2]);
+        header.putLong(game.getMoveCount());
+        header.putInt(game.getAmountClosedSafeFields());
+        header.putInt(game.getAmountCorrectMarks());
+        header.putInt(game.getAmountIncorrectMarks());
+    }
+
+    /**
+     * Checks magic number and version of the given header and reads the size of the pitch.
+     *
+     * @return {@link int[]} height and width.
+     */
+    private static int[] readSize(ByteBuffer header, File file) throws IOException {
+        if (MAGIC != header.getInt(0))
+            throw new IOException("Not a save file: " + file);
+        int version = header.getInt(4);
+        if (version < 1 || version > VERSION)
+            throw new IOException("Unsupported save file version " + version);
+
+        int height = header.getInt(8);
+        int width = header.getInt(12);
+        if (height <= 0 || width <= 0 || (long) height * width > Integer.MAX_VALUE)
+            throw new IOException("Corrupt save file: unsupported size " + height + "x" + width);
+        return new int[]{height, width};
+    }
+
+    /**
+     * Checks that the file contains exactly the header and three bitsets of the given size.
+     */
+    private static void checkLength(FileChannel channel, int words) throws IOException {
+        long expected = HEADER_SIZE + 3L * 8 * words;
+        if (channel.size() != expected)
+            throw new IOException("Corrupt save file: " + channel.size() + " bytes instead of " + expected);
+    }
+
+    /**
+     * Creates the {@link model.Game} described by the given header on the given {@link model.Board}. Files of version 1
+     * don't contain the counters, so the cells are counted. The cells of a {@link model.Board} which was read completely
+     * are counted as well and have to match the counters of the header, unless the {@link model.Game} is over. Only a
+     * mapped one trusts them.
+     *
+     * @param verify {@link boolean} count the cells and compare them with the counters of the header?
+     * @throws IOException if the counters don't match the bitsets.
+     */
+    private static Game readGame(ByteBuffer header, Board board, boolean verify) throws IOException {
+        int version = header.getInt(4);
+        int amountMines = header.getInt(16);
+        int flags = header.getInt(20);
+        long seed = header.getLong(24);
+        long elapsed = header.getLong(32);
+        long moveCount = header.getLong(40);
+        int[] time = {(int) (elapsed / 3600), (int) (elapsed / 60 % 60), (int) (elapsed % 60)};
+
+        Game game;
+        if (version < 2) {
+            game = new Game(board, seed, time, flags, moveCount);
+        } else {
+            int[] counters = {amountMines, header.getInt(48), header.getInt(52), header.getInt(56)};
+            // The end of a {@link model.Game} reveals the pitch without updating the counters
+            if (verify && 0 == (flags & ENDED) && !Arrays.equals(counters, Game.countCells(board)))
+                throw new IOException("Corrupt save file: the counters don't match the bitsets");
+            game = new Game(board, seed, time, flags, moveCount, counters);
+        }
+        if (game.getAmountMines() != amountMines)
+            throw new IOException("Corrupt save file: " + game.getAmountMines() + " mines instead of " + amountMines);
+        return game;
+    }
+
+    /**
+     * Writes the given bitset through the given buffer.
+     */
+    private static void writePlane(FileChannel channel, ByteBuffer buffer, BitPlane plane) throws IOException {
+        buffer.clear();
+        LongBuffer longs = buffer.asLongBuffer();
+        int words = plane.getWordCount();
+        for (int offset = 0; offset < words; ) {
+            int length = Math.min(longs.capacity(), words - offset);
+            longs.clear();
+            for (int w = 0; w < length; w++)
+                longs.put(plane.getWord(offset + w));
+            buffer.clear();
+            buffer.limit(length << 3);
+            writeFully(channel, buffer);
+            offset += length;
+        }
+    }
+
+    /**
+     * Reads the given bitset through the given buffer.
+     */
+    private static void readPlane(FileChannel channel, ByteBuffer buffer, BitPlane plane) throws IOException {
+        buffer.clear();
+        LongBuffer longs = buffer.asLongBuffer();
+        int words = plane.getWordCount();
+        for (int offset = 0; offset < words; ) {
+            int length = Math.min(longs.capacity(), words - offset);
+            buffer.clear();
+            buffer.limit(length << 3);
+            readFully(channel, buffer);
+            longs.clear();
+            for (int w = 0; w < length; w++)
+                plane.setWord(offset + w, longs.get());
+            offset += length;
+        }
+    }
+
+    private static void writePlane(DataOutputStream out, BitPlane plane) throws IOException {
+        for (int w = 0; w < plane.getWordCount(); w++)
+            out.writeLong(plane.getWord(w));
+    }
+
+    private static void readPlane(DataInputStream in, BitPlane plane) throws IOException {
+        for (int w = 0; w < plane.getWordCount(); w++)
+            plane.setWord(w, in.readLong());
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining())
+            channel.write(buffer);
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer) < 0)
+                throw new IOException("Unexpected end of save file");
+        }
+    }
+}
@@ -0,0 +1,240 @@
+/*
+ * (C) Copyright 2014 Mark Alexander Dietrich <mark.dietrich93@gmail.com>.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Contributors:
+ *     Mark Alexander Dietrich
+ */
+
+package model.solver;
+
+import model.Board;
+
+import java.util.Arrays;
+
+/**
+ * Created by Mark Alexander Dietrich on 06/11/14.
+ * <p/>
+ * File: ConstraintGraph.java
+ * <p/>
+ * Class: ConstraintGraph
+ * The frontier of a {@link model.Board} and the constraints on it. The frontier consists of the closed, unmarked cells
+ * bordering on an opened cell, they are numbered in the order of their index. Every opened cell with such neighbours
+ * is a constraint: its frontier cells, at most eight, contain exactly the amount of neighbour mines minus the marked
+ * neighbours. Each cell is read once while the rows around it are kept.
+ *
+ * @author Mark Alexander Dietrich
+ * @see model.solver.ProbabilitySolver
+ * @see model.solver.GaussianSolver
+ */
+class ConstraintGraph {
+
+    // States of a cell while the frontier is collected
+    private static final byte OUTSIDE = 0;
+    private static final byte OPENED = 1;
+    private static final byte UNKNOWN = 2;
+    private static final byte MARKED = 3;
+
+    final Board board;
+
+    // Frontier cells sorted by index
+    int[] cells = new int[64];
+    int size;
+
+    // Constraints: frontier cells, eight slots each, their amount and the mines they need
+    int[] constraintCells = new int[512];
+    int[] constraintSizes = new int[64];
+    int[] needs = new int[64];
+    int constraintCount;
+
+    // Constraints of each frontier cell, see {@link model.solver.ConstraintGraph#split}
+    int[] cellConstraintStart;
+    int[] cellConstraints;
+
+    /**
+     * Closed, unmarked cells and marks of the whole pitch.
+     */
+    long unknownCount;
+    long markCount;
+
+    /**
+     * Class constructor. Collects the frontier and the constraints of the given {@link model.Board}.
+     *
+     * @param board {@link model.Board} to read.
+     */
+    ConstraintGraph(Board board) {
+        this.board = board;
+        this.collect();
+    }
+
+    /**
+     * Reads every cell once and collects the frontier and the constraints of the opened cells.
+     */
+    private void collect() {
+        int height = this.board.getHeight();
+        int width = this.board.getWidth();
+
+        // Row x is kept in rows[x % 3], the rows around the pitch lie outside
+        byte[][] rows = new byte[3][width + 2];
+        this.readRow(0, rows[0]);
+        for (int x = 0; x < height; x++) {
+            byte[] above = rows[(x + 2) % 3];
+            byte[] row = rows[x % 3];
+            byte[] below = rows[(x + 1) % 3];
+            if (x + 1 < height)
+                this.readRow(x + 1, below);
+            else
+                Arrays.fill(below, OUTSIDE);
+            byte[][] block = {above, row, below};
+
+            for (int y = 1; y <= width; y++) {
+                byte state = row[y];
+                if (MARKED == state) {
+                    this.markCount++;
+                } else if (UNKNOWN == state) {
+                    this.unknownCount++;
+                    if (OPENED == above[y - 1] || OPENED == above[y] || OPENED == above[y + 1]
+                            || OPENED == row[y - 1] || OPENED == row[y + 1]
+                            || OPENED == below[y - 1] || OPENED == below[y] || OPENED == below[y + 1])
+                        this.addCell(x * width + y - 1);
+                } else if (OPENED == state) {
+                    this.addConstraint(x, y - 1, block);
+                }
+            }
+        }
+
+        // Refer to the frontier cells by their position
+        for (int c = 0; c < this.constraintCount; c++) {
+            for (int j = 0; j < this.constraintSizes[c]; j++) {
+                int slot = (c << 3) + j;
+                this.constraintCells[slot] = Arrays.binarySearch(this.cells, 0, this.size, this.constraintCells[slot]);
+            }
+        }
+    }
+
+    /**
+     * Reads the states of the given row into the given array, leaving a border cell on both sides.
+     */
+    private void readRow(int x, byte[] row) {
+        int first = x * this.board.getWidth();
+        for (int y = 0; y < this.board.getWidth(); y++) {
+            int cell = first + y;
+            row[y + 1] = this.board.isOpen(cell) ? OPENED : this.board.isMarked(cell) ? MARKED : UNKNOWN;
+        }
+    }
+
+    private void addCell(int cell) {
+        if (this.size == this.cells.length)
+            this.cells = Arrays.copyOf(this.cells, this.size << 1);
+        this.cells[this.size++] = cell;
+    }
+
+    /**
+     * Adds the constraint of the opened cell at the given coordinates, if it has unknown neighbours.
+     */
+    private void addConstraint(int x, int y, byte[][] block) {
+        if (this.constraintCount == this.needs.length) {
+            int length = this.constraintCount << 1;
+            this.constraintCells = Arrays.copyOf(this.constraintCells, length << 3);
+            this.constraintSizes = Arrays.copyOf(this.constraintSizes, length);
+            this.needs = Arrays.copyOf(this.needs, length);
+        }
+
+        int width = this.board.getWidth();
+        int id = this.constraintCount;
+        int amount = 0;
+        int marks = 0;
+        for (int dx = -1; dx <= 1; dx++) {
+            byte[] row = block[dx + 1];
+            for (int dy = -1; dy <= 1; dy++) {
+                byte state = row[y + 1 + dy];
+                if (UNKNOWN == state)
+                    this.constraintCells[(id << 3) + amount++] = (x + dx) * width + y + dy;
+                else if (MARKED == state)
+                    marks++;
+            }
+        }
+        if (0 == amount)
+            return;
+
+        this.constraintSizes[id] = amount;
+        this.needs[id] = this.board.getNeighborMines(x * width + y) - marks;
+        this.constraintCount++;
+    }
+
+    /**
+     * Splits the frontier into the components connected by constraints and lists the constraints of each frontier
+     * cell.
+     *
+     * @return {@link int[][]} frontier cells of each component, in the order of their first cell.
+     */
+    int[][] split() {
+        // Union-find over the frontier cells
+        int[] parents = new int[this.size];
+        for (int f = 0; f < this.size; f++)
+            parents[f] = f;
+        for (int c = 0; c < this.constraintCount; c++) {
+            int root = find(parents, this.constraintCells[c << 3]);
+            for (int j = 1; j < this.constraintSizes[c]; j++) {
+                int other = find(parents, this.constraintCells[(c << 3) + j]);
+                if (other != root)
+                    parents[other] = root;
+            }
+        }
+
+        // Constraints of each cell
+        this.cellConstraintStart = new int[this.size + 1];
+        for (int c = 0; c < this.constraintCount; c++) {
+            for (int j = 0; j < this.constraintSizes[c]; j++)
+                this.cellConstraintStart[this.constraintCells[(c << 3) + j] + 1]++;
+        }
+        for (int f = 0; f < this.size; f++)
+            this.cellConstraintStart[f + 1] += this.cellConstraintStart[f];
+        this.cellConstraints = new int[this.cellConstraintStart[this.size]];
+        int[] fill = Arrays.copyOf(this.cellConstraintStart, this.size);
+        for (int c = 0; c < this.constraintCount; c++) {
+            for (int j = 0; j < this.constraintSizes[c]; j++)
+                this.cellConstraints[fill[this.constraintCells[(c << 3) + j]]++] = c;
+        }
+
+        // Members of each component
+        int[] componentOf = new int[this.size];
+        int[] memberCounts = new int[this.size];
+        int componentCount = 0;
+        Arrays.fill(componentOf, -1);
+        for (int f = 0; f < this.size; f++) {
+            int root = find(parents, f);
+            if (-1 == componentOf[root])
+                componentOf[root] = componentCount++;
+            memberCounts[componentOf[root]]++;
+        }
+        int[][] members = new int[componentCount][];
+        for (int n = 0; n < componentCount; n++)
+            members[n] = new int[memberCounts[n]];
+        Arrays.fill(memberCounts, 0);
+        for (int f = 0; f < this.size; f++) {
+            int n = componentOf[find(parents, f)];
+            members[n][memberCounts[n]++] = f;
+        }
+        return members;
+    }
+
+    private static int find(int[] parents, int f) {
+        while (parents[f] != f) {
+            parents[f] = parents[parents[f]];
+            f = parents[f];
+        }
+        return f;
+    }
+}
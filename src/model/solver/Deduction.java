@@ -0,0 +1,94 @@
+/*
+ * (C) Copyright 2014 Mark Alexander Dietrich <mark.dietrich93@gmail.com>.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Contributors:
+ *     Mark Alexander Dietrich
+ */
+
+package model.solver;
+
+/**
+ * Created by Mark Alexander Dietrich on 06/11/14.
+ * <p/>
+ * File: Deduction.java
+ * <p/>
+ * Class: Deduction
+ * Result of a {@link model.solver.Solver}: the indices of the cells which are provably safe and of those which are
+ * provably mines, in the order they were found.
+ * <p/>
+ * Instances are immutable, so they can be handed to other threads.
+ *
+ * @author Mark Alexander Dietrich
+ * @see model.solver.Solver
+ */
+public final class Deduction {
+
+    /**
+     * {@link model.solver.Deduction} without any cells.
+     */
+    public static final Deduction EMPTY = new Deduction(new int[0], new int[0]);
+
+    // Indices of the decided cells
+    private final int[] safeCells;
+    private final int[] mines;
+
+    /**
+     * Class constructor. The given arrays must not be changed afterwards.
+     *
+     * @param safeCells {@link int[]} indices of the safe cells.
+     * @param mines     {@link int[]} indices of the mines.
+     */
+    public Deduction(int[] safeCells, int[] mines) {
+        this.safeCells = safeCells;
+        this.mines = mines;
+    }
+
+    /**
+     * @return {@link int} amount of safe cells.
+     */
+    public int getSafeCount() {
+        return this.safeCells.length;
+    }
+
+    /**
+     * @param n {@link int} position of the safe cell.
+     * @return {@link int} index of the n-th safe cell.
+     */
+    public int getSafeCell(int n) {
+        return this.safeCells[n];
+    }
+
+    /**
+     * @return {@link int} amount of mines.
+     */
+    public int getMineCount() {
+        return this.mines.length;
+    }
+
+    /**
+     * @param n {@link int} position of the mine.
+     * @return {@link int} index of the n-th mine.
+     */
+    public int getMine(int n) {
+        return this.mines[n];
+    }
+
+    /**
+     * @return {@link boolean} was no cell decided?
+     */
+    public boolean isEmpty() {
+        return 0 == this.safeCells.length && 0 == this.mines.length;
+    }
+}
@@ -0,0 +1,537 @@
+/*
+ * (C) Copyright 2014 Mark Alexander Dietrich <mark.dietrich93@gmail.com>.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Contributors:
+ *     Mark Alexander Dietrich
+ */
+
+package model.solver;
+
+import model.Game;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Created by Mark Alexander Dietrich on 06/11/14.
+ * <p/>
+ * File: GaussianSolver.java
+ * <p/>
+ * Class: GaussianSolver
+ * Deduces cells by linear algebra. The constraints of each component of the frontier form a linear system over its
+ * cells, whose values are 0 or 1. It is reduced twice by Gauss-Jordan elimination, with the cells as columns in the
+ * order of their index, so the rows stay narrow:
+ * <ul>
+ * <li>modulo 2: every row is a bitset packed into {@link long} words together with the parity of its mines, rows are
+ * combined by exclusive or. A row with one cell left decides it.</li>
+ * <li>over the integers: every row keeps its coefficients in a {@link long[]}, rows are combined without fractions and
+ * divided by the greatest common divisor. A row is checked against its bounds: if a cell can't take one of its values
+ * without making the sum unreachable by the others, it takes the other one.</li>
+ * </ul>
+ * The original constraints and the differences of those sharing a cell are checked against their bounds too, which
+ * covers the rules of the {@link model.solver.RuleSolver}. Decided cells are inserted into the constraints and
+ * the system is reduced again, until nothing changes. Unlike the {@link model.solver.RuleSolver} this combines any
+ * amount of constraints of a component, so it finds deductions which no pair of constraints shows.
+ *
+ * @author Mark Alexander Dietrich
+ * @see model.solver.Solver
+ * @see model.solver.RuleSolver
+ */
+public class GaussianSolver implements Solver {
+
+    /**
+     * Rows with larger coefficients are dropped instead of risking an overflow.
+     */
+    private static final long MAX_COEFFICIENT = 1L << 30;
+
+    // Values of the decided cells
+    private static final byte UNDECIDED = 0;
+    private static final byte SAFE = 1;
+    private static final byte MINE = 2;
+
+    /**
+     * Finds every cell the reduced systems decide.
+     *
+     * @param game {@link model.Game} to solve.
+     * @return {@link model.solver.Deduction} containing the decided cells.
+     */
+    @Override
+    public Deduction solve(Game game) {
+        if (game.isEnded())
+            return Deduction.EMPTY;
+
+        ConstraintGraph graph = new ConstraintGraph(game.getBoard());
+        int[][] components = graph.split();
+        byte[] decided = new byte[graph.size];
+        int[] constraintMarks = new int[graph.constraintCount];
+        int[] positions = new int[graph.constraintCount];
+        for (int n = 0; n < components.length; n++)
+            this.solveComponent(graph, components[n], n + 1, constraintMarks, positions, decided);
+
+        int[] safeCells = new int[graph.size];
+        int[] mines = new int[graph.size];
+        int safeCount = 0;
+        int mineCount = 0;
+        for (int f = 0; f < graph.size; f++) {
+            if (SAFE == decided[f])
+                safeCells[safeCount++] = graph.cells[f];
+            else if (MINE == decided[f])
+                mines[mineCount++] = graph.cells[f];
+        }
+        return new Deduction(Arrays.copyOf(safeCells, safeCount), Arrays.copyOf(mines, mineCount));
+    }
+
+    /**
+     * Reduces the system of one component until no more cells are decided.
+     *
+     * @param graph           {@link model.solver.ConstraintGraph} of the {@link model.Board}.
+     * @param members         {@link int[]} sorted frontier cells of the component.
+     * @param mark            {@link int} mark of the component's constraints, unique per component.
+     * @param constraintMarks {@link int[]} mark of each constraint which was already listed.
+     * @param positions       {@link int[]} position of each constraint in the list of its component, shared by all
+     *                        components. Only the entries of this component's constraints are written and read.
+     * @param decided         {@link byte[]} value of each decided frontier cell, filled in.
+     */
+    private void solveComponent(ConstraintGraph graph, int[] members, int mark, int[] constraintMarks,
+                                int[] positions, byte[] decided) {
+        // Constraints of the component
+        List<Integer> constraints = new ArrayList<Integer>();
+        for (int f : members) {
+            for (int e = graph.cellConstraintStart[f]; e < graph.cellConstraintStart[f + 1]; e++) {
+                int c = graph.cellConstraints[e];
+                if (mark != constraintMarks[c]) {
+                    constraintMarks[c] = mark;
+                    constraints.add(c);
+                }
+            }
+        }
+
+        // Pairs of constraints sharing a cell, by their position in the list. Every constraint of a member is listed, so
+        // no entry of another component is read
+        for (int i = 0; i < constraints.size(); i++)
+            positions[constraints.get(i)] = i;
+        List<int[]> pairs = new ArrayList<int[]>();
+        for (int i = 0; i < constraints.size(); i++) {
+            int c = constraints.get(i);
+            for (int j = 0; j < graph.constraintSizes[c]; j++) {
+                int f = graph.constraintCells[(c << 3) + j];
+                for (int e = graph.cellConstraintStart[f]; e < graph.cellConstraintStart[f + 1]; e++) {
+                    int other = positions[graph.cellConstraints[e]];
+                    // Only at the first shared cell, so each pair is listed once
+                    if (other > i && f == firstShared(graph, c, constraints.get(other)))
+                        pairs.add(new int[]{i, other});
+                }
+            }
+        }
+
+        boolean changed = true;
+        while (changed) {
+            IntegerRow[] constraintRows = new IntegerRow[constraints.size()];
+            List<IntegerRow> rows = new ArrayList<IntegerRow>();
+            for (int i = 0; i < constraints.size(); i++) {
+                IntegerRow row = IntegerRow.of(graph, constraints.get(i), members, decided);
+                if (null == row)
+                    continue;
+                // Wrong marks make the system unsolvable, nothing can be deduced then
+                if (!row.isSatisfiable())
+                    return;
+                constraintRows[i] = row;
+                rows.add(row);
+            }
+            if (rows.isEmpty())
+                return;
+
+            changed = false;
+            for (IntegerRow row : rows)
+                changed |= row.decide(members, decided);
+            if (changed)
+                continue;
+
+            // The difference of two constraints decides what the rule of subsets and supersets decides
+            for (int[] pair : pairs) {
+                IntegerRow first = constraintRows[pair[0]];
+                IntegerRow second = constraintRows[pair[1]];
+                if (null != first && null != second)
+                    changed |= first.minus(second).decide(members, decided);
+            }
+            if (changed)
+                continue;
+
+            List<BitRow> bitRows = new ArrayList<BitRow>();
+            for (IntegerRow row : rows)
+                bitRows.add(new BitRow(row));
+            if (!BitRow.reduce(bitRows))
+                return;
+            for (BitRow row : bitRows)
+                changed |= row.decide(members, decided);
+            if (changed)
+                continue;
+
+            if (!IntegerRow.reduce(rows))
+                return;
+            for (IntegerRow row : rows)
+                changed |= row.decide(members, decided);
+        }
+    }
+
+    /**
+     * @return {@link int} first frontier cell of the given constraints which both contain, -1 if there is none.
+     */
+    private static int firstShared(ConstraintGraph graph, int c, int other) {
+        for (int j = 0; j < graph.constraintSizes[c]; j++) {
+            int f = graph.constraintCells[(c << 3) + j];
+            for (int k = 0; k < graph.constraintSizes[other]; k++) {
+                if (f == graph.constraintCells[(other << 3) + k])
+                    return f;
+            }
+        }
+        return -1;
+    }
+
+    private static long gcd(long a, long b) {
+        a = Math.abs(a);
+        b = Math.abs(b);
+        while (0 != b) {
+            long t = a % b;
+            a = b;
+            b = t;
+        }
+        return a;
+    }
+
+    /**
+     * Class: IntegerRow
+     * Linear equation over the cells of a component. The coefficients of the columns from {@code first} on are kept,
+     * all others are zero.
+     */
+    private static final class IntegerRow {
+
+        private int first;
+        private long[] coefficients;
+        private long sum;
+
+        private IntegerRow(int first, long[] coefficients, long sum) {
+            this.first = first;
+            this.coefficients = coefficients;
+            this.sum = sum;
+        }
+
+        /**
+         * Creates the row of the given constraint with the decided cells inserted.
+         *
+         * @return {@link model.solver.GaussianSolver.IntegerRow} of the undecided cells, null if there are none.
+         */
+        private static IntegerRow of(ConstraintGraph graph, int c, int[] members, byte[] decided) {
+            int need = graph.needs[c];
+            int[] columns = new int[8];
+            int count = 0;
+            for (int j = 0; j < graph.constraintSizes[c]; j++) {
+                int f = graph.constraintCells[(c << 3) + j];
+                if (MINE == decided[f])
+                    need--;
+                else if (UNDECIDED == decided[f])
+                    columns[count++] = Arrays.binarySearch(members, f);
+            }
+            if (0 == count)
+                return 0 == need ? null : new IntegerRow(0, new long[0], need);
+
+            Arrays.sort(columns, 0, count);
+            long[] coefficients = new long[columns[count - 1] - columns[0] + 1];
+            for (int j = 0; j < count; j++)
+                coefficients[columns[j] - columns[0]] = 1;
+            return new IntegerRow(columns[0], coefficients, need);
+        }
+
+        /**
+         * @return {@link model.solver.GaussianSolver.IntegerRow} this row minus the given one.
+         */
+        private IntegerRow minus(IntegerRow other) {
+            int first = Math.min(this.first, other.first);
+            int last = Math.max(this.last(), other.last());
+            long[] coefficients = new long[last - first + 1];
+            for (int i = 0; i < coefficients.length; i++)
+                coefficients[i] = this.get(first + i) - other.get(first + i);
+            return new IntegerRow(first, coefficients, this.sum - other.sum);
+        }
+
+        private long get(int column) {
+            int i = column - this.first;
+            return i >= 0 && i < this.coefficients.length ? this.coefficients[i] : 0;
+        }
+
+        private int last() {
+            return this.first + this.coefficients.length - 1;
+        }
+
+        /**
+         * @return {@link boolean} can the sum be reached by values 0 and 1?
+         */
+        private boolean isSatisfiable() {
+            long low = 0;
+            long high = 0;
+            for (long coefficient : this.coefficients) {
+                if (coefficient < 0)
+                    low += coefficient;
+                else
+                    high += coefficient;
+            }
+            return this.sum >= low && this.sum <= high;
+        }
+
+        /**
+         * Decides every cell which can't take one of its values without making the sum unreachable.
+         *
+         * @return {@link boolean} was a cell decided?
+         */
+        private boolean decide(int[] members, byte[] decided) {
+            long low = 0;
+            long high = 0;
+            for (long coefficient : this.coefficients) {
+                if (coefficient < 0)
+                    low += coefficient;
+                else
+                    high += coefficient;
+            }
+
+            boolean changed = false;
+            for (int i = 0; i < this.coefficients.length; i++) {
+                long a = this.coefficients[i];
+                if (0 == a)
+                    continue;
+                // Bounds of the sum if the cell is a mine and if it is safe
+                long mineLow = a > 0 ? low + a : low;
+                long mineHigh = a > 0 ? high : high + a;
+                long safeLow = a > 0 ? low : low - a;
+                long safeHigh = a > 0 ? high - a : high;
+                boolean canBeMine = this.sum >= mineLow && this.sum <= mineHigh;
+                boolean canBeSafe = this.sum >= safeLow && this.sum <= safeHigh;
+                int f = members[this.first + i];
+                if (canBeMine == canBeSafe || UNDECIDED != decided[f])
+                    continue;
+                decided[f] = canBeMine ? MINE : SAFE;
+                changed = true;
+            }
+            return changed;
+        }
+
+        /**
+         * Subtracts a multiple of the given pivot row, so the given column becomes zero, and divides by the greatest
+         * common divisor.
+         *
+         * @return {@link boolean} do the coefficients stay small enough?
+         */
+        private boolean eliminate(IntegerRow pivot, int column) {
+            long a = pivot.get(column);
+            long b = this.get(column);
+            int first = Math.min(this.first, pivot.first);
+            int last = Math.max(this.last(), pivot.last());
+            long[] result = new long[last - first + 1];
+            long divisor = 0;
+            for (int i = 0; i < result.length; i++) {
+                result[i] = a * this.get(first + i) - b * pivot.get(first + i);
+                divisor = gcd(divisor, result[i]);
+            }
+            long sum = a * this.sum - b * pivot.sum;
+            divisor = gcd(divisor, sum);
+            if (a < 0)
+                divisor = -divisor;
+
+            // Strip the zeros at both ends
+            int from = 0;
+            int to = result.length;
+            while (from < to && 0 == result[from])
+                from++;
+            while (to > from && 0 == result[to - 1])
+                to--;
+            this.first = first + from;
+            this.coefficients = Arrays.copyOfRange(result, from, to);
+            this.sum = sum;
+            if (0 != divisor) {
+                for (int i = 0; i < this.coefficients.length; i++) {
+                    this.coefficients[i] /= divisor;
+                    if (Math.abs(this.coefficients[i]) > MAX_COEFFICIENT)
+                        return false;
+                }
+                this.sum /= divisor;
+            }
+            return Math.abs(this.sum) <= MAX_COEFFICIENT;
+        }
+
+        /**
+         * Brings the given rows into reduced row echelon form. Rows whose coefficients would get too large are dropped.
+         *
+         * @return {@link boolean} is the system satisfiable as far as the rows show?
+         */
+        private static boolean reduce(List<IntegerRow> rows) {
+            int pivots = 0;
+            int columns = 0;
+            for (IntegerRow row : rows)
+                columns = Math.max(columns, row.last() + 1);
+
+            for (int column = 0; column < columns && pivots < rows.size(); column++) {
+                // The narrowest row with this column becomes the pivot
+                int best = -1;
+                for (int r = pivots; r < rows.size(); r++) {
+                    IntegerRow row = rows.get(r);
+                    if (0 != row.get(column) && (-1 == best || row.last() < rows.get(best).last()))
+                        best = r;
+                }
+                if (-1 == best)
+                    continue;
+                IntegerRow pivot = rows.get(best);
+                rows.set(best, rows.get(pivots));
+                rows.set(pivots++, pivot);
+
+                for (int r = 0; r < rows.size(); r++) {
+                    IntegerRow row = rows.get(r);
+                    if (row == pivot || 0 == row.get(column))
+                        continue;
+                    if (!row.eliminate(pivot, column)) {
+                        rows.remove(r);
+                        if (r < pivots)
+                            pivots--;
+                        r--;
+                    }
+                }
+            }
+
+            for (IntegerRow row : rows) {
+                if (!row.isSatisfiable())
+                    return false;
+            }
+            return true;
+        }
+    }
+
+    /**
+     * Class: BitRow
+     * Linear equation modulo 2 over the cells of a component. The words from {@code firstWord} on are kept, all
+     * others are zero.
+     */
+    private static final class BitRow {
+
+        private int firstWord;
+        private long[] words;
+        private boolean parity;
+
+        private BitRow(IntegerRow row) {
+            this.firstWord = row.first >>> 6;
+            this.words = new long[(row.last() >>> 6) - this.firstWord + 1];
+            for (int i = 0; i < row.coefficients.length; i++) {
+                if (0 != (row.coefficients[i] & 1)) {
+                    int column = row.first + i;
+                    this.words[(column >>> 6) - this.firstWord] |= 1L << column;
+                }
+            }
+            this.parity = 0 != (row.sum & 1);
+        }
+
+        private boolean get(int column) {
+            int i = (column >>> 6) - this.firstWord;
+            return i >= 0 && i < this.words.length && 0 != (this.words[i] & (1L << column));
+        }
+
+        private int lastWord() {
+            return this.firstWord + this.words.length - 1;
+        }
+
+        /**
+         * Adds the given row modulo 2.
+         */
+        private void add(BitRow other) {
+            int first = Math.min(this.firstWord, other.firstWord);
+            int last = Math.max(this.lastWord(), other.lastWord());
+            if (first != this.firstWord || last != this.lastWord()) {
+                long[] words = new long[last - first + 1];
+                System.arraycopy(this.words, 0, words, this.firstWord - first, this.words.length);
+                this.words = words;
+                this.firstWord = first;
+            }
+            for (int i = 0; i < other.words.length; i++)
+                this.words[other.firstWord - this.firstWord + i] ^= other.words[i];
+            this.parity ^= other.parity;
+        }
+
+        /**
+         * @return {@link int} first column of this row, -1 if it is empty.
+         */
+        private int firstColumn() {
+            for (int i = 0; i < this.words.length; i++) {
+                if (0L != this.words[i])
+                    return ((this.firstWord + i) << 6) + Long.numberOfTrailingZeros(this.words[i]);
+            }
+            return -1;
+        }
+
+        /**
+         * Decides the cell of a row with a single cell by the parity.
+         *
+         * @return {@link boolean} was a cell decided?
+         */
+        private boolean decide(int[] members, byte[] decided) {
+            int column = -1;
+            for (int i = 0; i < this.words.length; i++) {
+                long word = this.words[i];
+                if (0L == word)
+                    continue;
+                if (-1 != column || 0L != (word & (word - 1)))
+                    return false;
+                column = ((this.firstWord + i) << 6) + Long.numberOfTrailingZeros(word);
+            }
+            if (-1 == column || UNDECIDED != decided[members[column]])
+                return false;
+            decided[members[column]] = this.parity ? MINE : SAFE;
+            return true;
+        }
+
+        /**
+         * Brings the given rows into reduced row echelon form modulo 2.
+         *
+         * @return {@link boolean} is no row {@code 0 = 1}?
+         */
+        private static boolean reduce(List<BitRow> rows) {
+            int pivots = 0;
+            int columns = 0;
+            for (BitRow row : rows)
+                columns = Math.max(columns, (row.lastWord() + 1) << 6);
+
+            for (int column = 0; column < columns && pivots < rows.size(); column++) {
+                int best = -1;
+                for (int r = pivots; r < rows.size(); r++) {
+                    BitRow row = rows.get(r);
+                    if (row.get(column) && (-1 == best || row.lastWord() < rows.get(best).lastWord()))
+                        best = r;
+                }
+                if (-1 == best)
+                    continue;
+                BitRow pivot = rows.get(best);
+                rows.set(best, rows.get(pivots));
+                rows.set(pivots++, pivot);
+
+                for (BitRow row : rows) {
+                    if (row != pivot && row.get(column))
+                        row.add(pivot);
+                }
+            }
+
+            for (BitRow row : rows) {
+                if (-1 == row.firstColumn() && row.parity)
+                    return false;
+            }
+            return true;
+        }
+    }
+}
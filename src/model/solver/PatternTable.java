@@ -0,0 +1,201 @@
+/*
+ * (C) Copyright 2014 Mark Alexander Dietrich <mark.dietrich93@gmail.com>.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Contributors:
+ *     Mark Alexander Dietrich
+ */
+
+package model.solver;
+
+import java.util.Arrays;
+
+/**
+ * Created by Mark Alexander Dietrich on 06/11/14.
+ * <p/>
+ * File: PatternTable.java
+ * <p/>
+ * Class: PatternTable
+ * Lookup table of the cells decided by two neighbouring constraints, generated when the class is loaded. The window of
+ * a pair consists of the 3x4 cells around two opened cells side by side, the first one at row 1 and column 1:
+ * <pre>
+ *     0  1  2  3
+ *     4  A  5  6
+ *     7  8  9 10
+ * </pre>
+ * The numbers are the bits of the window, a bit is set for an unknown cell. Cell 5 is the center of the second
+ * constraint, so it can only be unknown if there is no second one. Two constraints one above the other are transposed
+ * into the same window. Together with the mines both constraints need, or {@link model.solver.PatternTable#ABSENT} if
+ * there is no second one, the window selects an entry: the cells which are safe and the cells which are mines in every
+ * distribution of the mines satisfying both. That covers the single cell and the subset rule of the
+ * {@link model.solver.RuleSolver} as well as local patterns like 1-2-1 or 1-2-2-1 along a straight edge.
+ *
+ * @author Mark Alexander Dietrich
+ * @see model.solver.RuleSolver
+ */
+final class PatternTable {
+
+    /**
+     * Orientations of the second constraint: right of or below the first one.
+     */
+    static final int HORIZONTAL = 0;
+    static final int VERTICAL = 1;
+
+    /**
+     * Amount of needed mines standing for a missing second constraint.
+     */
+    static final int ABSENT = 9;
+
+    /**
+     * Cells of a window, see {@link model.solver.PatternTable}.
+     */
+    static final int CELL_COUNT = 11;
+    static final int CELLS = (1 << CELL_COUNT) - 1;
+
+    /**
+     * Center of the second constraint in the window.
+     */
+    private static final int SECOND_CENTER = 1 << 5;
+
+    /**
+     * Window bits of a bitmask of neighbours, see {@link model.solver.RuleSolver#DX}. Indexed by the orientation and
+     * the bitmask, for the first and for the second constraint.
+     */
+    private static final int[][] FIRST_WINDOW = new int[2][256];
+    private static final int[][] SECOND_WINDOW = new int[2][256];
+
+    /**
+     * Bit in the frame of the first constraint, see {@link model.solver.RuleSolver#FRAME}, of each window bit.
+     */
+    private static final long[][] FRAMES = new long[2][CELL_COUNT];
+
+    /**
+     * Safe cells in the lower bits and mines in the upper bits, indexed by
+     * {@code (window * 10 + first need) * 10 + second need}.
+     */
+    private static final int[] TABLE = new int[(CELLS + 1) * 100];
+
+    static {
+        for (int orientation = HORIZONTAL; orientation <= VERTICAL; orientation++) {
+            for (int bit = 0; bit < 8; bit++) {
+                int dx = RuleSolver.DX[bit];
+                int dy = RuleSolver.DY[bit];
+                int first = cell(orientation, dx, dy);
+                int second = HORIZONTAL == orientation ? cell(orientation, dx, dy + 1) : cell(orientation, dx + 1, dy);
+                for (int mask = 0; mask < 256; mask++) {
+                    if (0 != (mask & (1 << bit))) {
+                        FIRST_WINDOW[orientation][mask] |= first;
+                        SECOND_WINDOW[orientation][mask] |= second;
+                    }
+                }
+            }
+            for (int dx = -1; dx <= 1; dx++) {
+                for (int dy = -1; dy <= 2; dy++) {
+                    if (0 == dx && 0 == dy)
+                        continue;
+                    int window = Integer.numberOfTrailingZeros(cell(HORIZONTAL, dx, dy));
+                    // Row and column are swapped for the vertical orientation
+                    FRAMES[orientation][window] = HORIZONTAL == orientation
+                            ? 1L << ((dx + 3) * RuleSolver.FRAME + dy + 3)
+                            : 1L << ((dy + 3) * RuleSolver.FRAME + dx + 3);
+                }
+            }
+        }
+
+        // Every distribution of the mines in a window is counted towards the needs it satisfies
+        int firstBlock = FIRST_WINDOW[HORIZONTAL][0xFF];
+        int secondBlock = SECOND_WINDOW[HORIZONTAL][0xFF];
+        int[] union = new int[100];
+        int[] intersection = new int[100];
+        boolean[] satisfied = new boolean[100];
+        for (int window = 0; window <= CELLS; window++) {
+            Arrays.fill(union, 0);
+            Arrays.fill(intersection, CELLS);
+            Arrays.fill(satisfied, false);
+            boolean second = 0 == (window & SECOND_CENTER);
+            int mines = window;
+            while (true) {
+                int firstNeed = Integer.bitCount(mines & firstBlock);
+                int secondNeed = Integer.bitCount(mines & secondBlock);
+                for (int n = 0; n < 2; n++) {
+                    if (1 == n && !second)
+                        break;
+                    int key = firstNeed * 10 + (0 == n ? ABSENT : secondNeed);
+                    union[key] |= mines;
+                    intersection[key] &= mines;
+                    satisfied[key] = true;
+                }
+                if (0 == mines)
+                    break;
+                mines = (mines - 1) & window;
+            }
+            for (int key = 0; key < 100; key++) {
+                if (satisfied[key])
+                    TABLE[window * 100 + key] = (window & ~union[key]) | intersection[key] << CELL_COUNT;
+            }
+        }
+    }
+
+    private PatternTable() {}
+
+    /**
+     * @return {@link int} window bit of the cell at the given offset from the first constraint, as it lies in the
+     * given orientation.
+     */
+    private static int cell(int orientation, int dx, int dy) {
+        int row = HORIZONTAL == orientation ? dx + 1 : dy + 1;
+        int column = HORIZONTAL == orientation ? dy + 1 : dx + 1;
+        int position = row * 4 + column;
+        // The center of the first constraint has no bit
+        return 1 << (position > 5 ? position - 1 : position);
+    }
+
+    /**
+     * @param orientation {@link int} orientation of the second constraint.
+     * @param first       {@link int} bitmask of the unknown neighbours of the first constraint.
+     * @param second      {@link int} bitmask of the unknown neighbours of the second constraint, 0 if there is none.
+     * @return {@link int} window of the pair.
+     */
+    static int window(int orientation, int first, int second) {
+        return FIRST_WINDOW[orientation][first] | SECOND_WINDOW[orientation][second];
+    }
+
+    /**
+     * Looks up the decided cells of a window.
+     *
+     * @param window     {@link int} window of the pair.
+     * @param firstNeed  {@link int} mines needed by the first constraint, between 0 and 8.
+     * @param secondNeed {@link int} mines needed by the second constraint, between 0 and 8, or
+     *                   {@link model.solver.PatternTable#ABSENT}.
+     * @return {@link int} window bits of the safe cells, shifted by {@link model.solver.PatternTable#CELL_COUNT} those
+     * of the mines. 0 if the needs can't be satisfied.
+     */
+    static int lookup(int window, int firstNeed, int secondNeed) {
+        return TABLE[(window * 10 + firstNeed) * 10 + secondNeed];
+    }
+
+    /**
+     * @param orientation {@link int} orientation of the second constraint.
+     * @param cells       {@link int} window bits.
+     * @return {@link long} the cells in the frame of the first constraint.
+     */
+    static long frame(int orientation, int cells) {
+        long frame = 0L;
+        while (0 != cells) {
+            frame |= FRAMES[orientation][Integer.numberOfTrailingZeros(cells)];
+            cells &= cells - 1;
+        }
+        return frame;
+    }
+}
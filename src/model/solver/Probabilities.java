@@ -0,0 +1,104 @@
+/*
+ * (C) Copyright 2014 Mark Alexander Dietrich <mark.dietrich93@gmail.com>.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Contributors:
+ *     Mark Alexander Dietrich
+ */
+
+package model.solver;
+
+import java.util.Arrays;
+
+/**
+ * Created by Mark Alexander Dietrich on 06/11/14.
+ * <p/>
+ * File: Probabilities.java
+ * <p/>
+ * Class: Probabilities
+ * Result of a {@link model.solver.ProbabilitySolver}: the probability that a closed, unmarked cell is a mine. The
+ * cells of the frontier, i.e. those bordering on an opened cell, are stored sorted by their index. All other unknown
+ * cells share one probability, since nothing distinguishes them from each other.
+ * <p/>
+ * Instances are immutable, so they can be handed to other threads.
+ *
+ * @author Mark Alexander Dietrich
+ * @see model.solver.ProbabilitySolver
+ */
+public final class Probabilities {
+
+    /**
+     * {@link model.solver.Probabilities} without any information, e.g. of an ended {@link model.Game}.
+     */
+    public static final Probabilities EMPTY = new Probabilities(new int[0], new float[0], Float.NaN);
+
+    /**
+     * Sorted indices of the frontier cells and their probabilities.
+     */
+    private final int[] cells;
+    private final float[] values;
+
+    /**
+     * Probability of the unknown cells off the frontier.
+     */
+    private final float interior;
+
+    /**
+     * Class constructor. The given arrays must not be changed afterwards.
+     *
+     * @param cells    {@link int[]} sorted indices of the frontier cells.
+     * @param values   {@link float[]} probability of each frontier cell, {@link java.lang.Float#NaN} if unknown.
+     * @param interior {@link float} probability of the other unknown cells, {@link java.lang.Float#NaN} if unknown.
+     */
+    public Probabilities(int[] cells, float[] values, float interior) {
+        if (cells.length != values.length)
+            throw new IllegalArgumentException("Expected " + cells.length + " values, got " + values.length);
+        this.cells = cells;
+        this.values = values;
+        this.interior = interior;
+    }
+
+    /**
+     * Tells you the probability that the given cell is a mine. It is only meaningful for closed, unmarked cells.
+     *
+     * @param index {@link int} index of the cell.
+     * @return {@link float} probability between 0 and 1, {@link java.lang.Float#NaN} if it is unknown.
+     */
+    public float getProbability(int index) {
+        int position = Arrays.binarySearch(this.cells, index);
+        return position >= 0 ? this.values[position] : this.interior;
+    }
+
+    /**
+     * @return {@link int} amount of frontier cells.
+     */
+    public int getFrontierSize() {
+        return this.cells.length;
+    }
+
+    /**
+     * @param n {@link int} position of the frontier cell.
+     * @return {@link int} index of the n-th frontier cell.
+     */
+    public int getFrontierCell(int n) {
+        return this.cells[n];
+    }
+
+    /**
+     * @return {@link float} probability of the unknown cells off the frontier.
+     */
+    public float getInterior() {
+        return this.interior;
+    }
+}
@@ -0,0 +1,1015 @@
+/*
+ * (C) Copyright 2014 Mark Alexander Dietrich <mark.dietrich93@gmail.com>.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Contributors:
+ *     Mark Alexander Dietrich
+ */
+
+package model.solver;
+
+import model.Game;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Created by Mark Alexander Dietrich on 06/11/14.
+ * <p/>
+ * File: ProbabilitySolver.java
+ * <p/>
+ * Class: ProbabilitySolver
+ * Calculates the probability that a closed, unmarked cell is a mine, over all placements of the mines which agree with
+ * the opened cells, the marks and the amount of mines of the {@link model.Game}.
+ * <p/>
+ * The unknown cells bordering on opened cells form the frontier. It is split into components which share no
+ * constraint, their placements are independent apart from the total amount of mines. The placements of each component
+ * are counted by a dynamic program over its cells in breadth first order: its state is the amount of mines each
+ * constraint still needs which has cells on both sides of the current cell, placements reaching the same state are
+ * merged and only counted once, together with the amount of mines they contain. The components are counted in
+ * parallel on the common {@link java.util.concurrent.ForkJoinPool}.
+ * <p/>
+ * The components and the remaining cells are then combined by the amount of mines: a component with {@code t} mines
+ * is weighted by the placements of all other components times the binomial coefficient of the remaining mines among
+ * the cells off the frontier. A second pass over each component yields the probability of each of its cells. If the
+ * amount of mines can't be matched, e.g. because of wrong marks, the probability of the {@link model.Game} is used as a
+ * prior instead.
+ * <p/>
+ * All weights are tilted by a factor per mine, which is chosen so that the expected amount of mines matches, and
+ * normalized per step, so they neither overflow nor lose the placements which matter. A component whose table would
+ * exceed {@link model.solver.ProbabilitySolver#MAX_VALUES} is counted without the amount of mines, its cells are
+ * weighted by the estimated probability of the remaining cells instead. A component which exceeds even that is treated
+ * like the cells off the frontier.
+ *
+ * @author Mark Alexander Dietrich
+ * @see model.solver.Probabilities
+ * @see model.solver.Solver
+ */
+public class ProbabilitySolver implements Solver {
+
+    /**
+     * Maximum amount of states of one step of a component.
+     */
+    static final int MAX_STATES = 1 << 16;
+
+    /**
+     * Maximum amount of weights stored for one component.
+     */
+    static final int MAX_VALUES = 1 << 22;
+
+    /**
+     * Frontiers with less cells are counted on the calling thread.
+     */
+    private static final int PARALLEL_CELLS = 256;
+
+    /**
+     * Weights of a combined distribution below this fraction of its maximum are dropped.
+     */
+    private static final double TRIM = 1e-250;
+
+    // How a cell of the frontier was decided, regardless of the amount of mines
+    private static final byte SAFE = 1;
+    private static final byte MINE = 2;
+
+    /**
+     * Natural logarithms of the first factorials.
+     */
+    private static final double[] LOG_FACTORIALS = new double[256];
+
+    static {
+        for (int n = 2; n < LOG_FACTORIALS.length; n++)
+            LOG_FACTORIALS[n] = LOG_FACTORIALS[n - 1] + Math.log(n);
+    }
+
+    /**
+     * Returns the cells whose probability is exactly 0 or 1 because of the constraints around them.
+     *
+     * @param game {@link model.Game} to solve.
+     * @return {@link model.solver.Deduction} containing the decided cells.
+     */
+    @Override
+    public Deduction solve(Game game) {
+        if (game.isEnded())
+            return Deduction.EMPTY;
+
+        Frontier frontier = new Frontier(game);
+        int[] safeCells = new int[frontier.size];
+        int[] mines = new int[frontier.size];
+        int safeCount = 0;
+        int mineCount = 0;
+        for (int f = 0; f < frontier.size; f++) {
+            if (SAFE == frontier.forced[f])
+                safeCells[safeCount++] = frontier.cells[f];
+            else if (MINE == frontier.forced[f])
+                mines[mineCount++] = frontier.cells[f];
+        }
+        return new Deduction(Arrays.copyOf(safeCells, safeCount), Arrays.copyOf(mines, mineCount));
+    }
+
+    /**
+     * Calculates the probability of every closed, unmarked cell. It reads the {@link model.Board}, so it has to be
+     * called on the thread which performs the actions of the {@link model.Game}.
+     *
+     * @param game {@link model.Game} to evaluate.
+     * @return {@link model.solver.Probabilities} of the unknown cells.
+     */
+    public Probabilities compute(Game game) {
+        if (game.isEnded())
+            return Probabilities.EMPTY;
+
+        Frontier frontier = new Frontier(game);
+        float[] values = new float[frontier.size];
+        for (int f = 0; f < frontier.size; f++)
+            values[f] = (float) frontier.values[f];
+        return new Probabilities(Arrays.copyOf(frontier.cells, frontier.size), values, (float) frontier.interior);
+    }
+
+    /**
+     * @return {@link double} natural logarithm of {@code n!}, by Stirling's series for large values.
+     */
+    static double logFactorial(long n) {
+        if (n < LOG_FACTORIALS.length)
+            return LOG_FACTORIALS[(int) n];
+        double x = n;
+        return x * Math.log(x) - x + 0.5 * Math.log(2 * Math.PI * x) + 1 / (12 * x) - 1 / (360 * x * x * x);
+    }
+
+    /**
+     * @return {@link double} natural logarithm of the binomial coefficient, negative infinity if it is zero.
+     */
+    static double logBinomial(long n, long k) {
+        if (k < 0 || k > n)
+            return Double.NEGATIVE_INFINITY;
+        return logFactorial(n) - logFactorial(k) - logFactorial(n - k);
+    }
+
+    /**
+     * @return {@link double} logarithm of the odds of the given probability, kept away from 0 and 1.
+     */
+    private static double logOdds(double p) {
+        p = Math.max(1e-9, Math.min(1 - 1e-9, p));
+        return Math.log(p / (1 - p));
+    }
+
+    /**
+     * Replaces the given logarithms by their exponentials, scaled so the maximum is 1.
+     */
+    private static void exponentiate(double[] logs) {
+        double max = Double.NEGATIVE_INFINITY;
+        for (double value : logs)
+            max = Math.max(max, value);
+        for (int i = 0; i < logs.length; i++)
+            logs[i] = Double.NEGATIVE_INFINITY == max ? 0 : Math.exp(logs[i] - max);
+    }
+
+    /**
+     * Divides the given weights by their maximum.
+     */
+    private static void normalize(double[] values) {
+        double max = 0;
+        for (double value : values)
+            max = Math.max(max, value);
+        if (max > 0) {
+            for (int i = 0; i < values.length; i++)
+                values[i] /= max;
+        }
+    }
+
+    /**
+     * Class: Frontier
+     * The unknown cells of one {@link model.Board} and the result of the calculation.
+     */
+    private static final class Frontier extends ConstraintGraph {
+
+        // Probability of each frontier cell and whether the constraints decide it
+        private double[] values;
+        private byte[] forced;
+
+        // Position of each frontier cell in the order of its component, local index of each constraint
+        private int[] positions;
+        private int[] localIds;
+
+        /**
+         * Probability of the unknown cells off the frontier.
+         */
+        private double interior;
+
+        /**
+         * Factor each mine is weighted with while the components are counted, as a logarithm.
+         */
+        private double logTilt;
+
+        private Frontier(Game game) {
+            super(game.getBoard());
+            this.values = new double[this.size];
+            this.forced = new byte[this.size];
+
+            long remaining = game.getAmountMines() - this.markCount;
+            double prior = logOdds(game.getpMine());
+            if (0 == this.unknownCount) {
+                this.interior = Double.NaN;
+                return;
+            }
+            this.logTilt = logOdds((double) remaining / this.unknownCount);
+
+            Component[] components = this.createComponents();
+            this.run(components, false);
+            this.combine(components, remaining, prior);
+        }
+
+        /**
+         * Prepares a {@link model.solver.ProbabilitySolver.Frontier.Component} for each component of the frontier.
+         */
+        private Component[] createComponents() {
+            int[][] members = this.split();
+            this.positions = new int[this.size];
+            this.localIds = new int[this.constraintCount];
+            Arrays.fill(this.positions, -1);
+            Arrays.fill(this.localIds, -1);
+            Component[] components = new Component[members.length];
+            for (int n = 0; n < members.length; n++)
+                components[n] = new Component(members[n]);
+            return components;
+        }
+
+        /**
+         * Runs one pass over all components, in parallel if the frontier is large.
+         *
+         * @param second {@link boolean} is it the second pass, which calculates the probabilities?
+         */
+        private void run(Component[] components, boolean second) {
+            if (0 == components.length)
+                return;
+            Pass pass = new Pass(components, 0, components.length, second);
+            if (this.size < PARALLEL_CELLS)
+                pass.compute();
+            else
+                ForkJoinPool.commonPool().invoke(pass);
+        }
+
+        /**
+         * Combines the components by the amount of mines and runs the second pass.
+         *
+         * @param components {@link model.solver.ProbabilitySolver.Frontier.Component[]} after the first pass.
+         * @param remaining  {@link long} mines which are not marked.
+         * @param prior      {@link double} logarithm of the odds of the probability of the {@link model.Game}.
+         */
+        private void combine(Component[] components, long remaining, double prior) {
+            // Components which could only be estimated
+            long interiorCount = this.unknownCount - this.size;
+            double estimatedMines = 0;
+            List<Component> exact = new ArrayList<Component>();
+            long minMines = 0;
+            long maxMines = 0;
+            for (Component component : components) {
+                if (Component.EXACT == component.mode) {
+                    exact.add(component);
+                    minMines += component.low;
+                    maxMines += component.low + component.distribution.length - 1;
+                } else if (Component.ESTIMATED == component.mode) {
+                    estimatedMines += component.expected;
+                } else {
+                    interiorCount += component.order.length;
+                    for (int f : component.order)
+                        this.values[f] = Double.NaN;
+                }
+            }
+            remaining -= Math.round(estimatedMines);
+
+            // Without a matching amount of mines every mine is weighted by the prior
+            boolean feasible = remaining >= minMines && remaining <= maxMines + interiorCount;
+            double logRho = prior;
+            if (feasible)
+                logRho = this.findTilt(exact, remaining, interiorCount);
+
+            if (!feasible) {
+                this.interior = interiorCount > 0 ? Math.exp(prior) / (1 + Math.exp(prior)) : Double.NaN;
+                for (Component component : exact) {
+                    component.ending = new double[component.distribution.length];
+                    for (int t = 0; t < component.ending.length; t++)
+                        component.ending[t] = (component.low + t) * (logRho - this.logTilt);
+                    exponentiate(component.ending);
+                }
+            } else if (exact.isEmpty()) {
+                this.interior = interiorCount > 0
+                        ? Math.max(0, Math.min(1, (double) remaining / interiorCount)) : Double.NaN;
+            } else {
+                this.weigh(exact, remaining, interiorCount, logRho);
+            }
+
+            this.run(exact.toArray(new Component[exact.size()]), true);
+            for (Component component : components) {
+                if (Component.FAILED == component.mode) {
+                    for (int f : component.order)
+                        this.values[f] = this.interior;
+                }
+            }
+        }
+
+        /**
+         * Finds the factor per mine at which the expected amount of mines matches the remaining mines, by bisection of
+         * its logarithm.
+         */
+        private double findTilt(List<Component> exact, long remaining, long interiorCount) {
+            double low = -60;
+            double high = 60;
+            for (int iteration = 0; iteration < 100; iteration++) {
+                double middle = (low + high) / 2;
+                double expected = interiorCount / (1 + Math.exp(-middle));
+                for (Component component : exact)
+                    expected += component.mean(middle - this.logTilt);
+                if (expected < remaining)
+                    low = middle;
+                else
+                    high = middle;
+            }
+            return (low + high) / 2;
+        }
+
+        /**
+         * Weighs the amounts of mines of each component by the placements of the others and of the remaining cells.
+         */
+        private void weigh(List<Component> exact, long remaining, long interiorCount, double logRho) {
+            double shift = logRho - this.logTilt;
+            Node root = new Node(exact, 0, exact.size(), shift);
+
+            // Placements of the remaining mines off the frontier, tilted by the factor per mine
+            double[] weights = new double[root.values.length];
+            for (int i = 0; i < weights.length; i++) {
+                long mines = root.low + i;
+                weights[i] = logBinomial(interiorCount, remaining - mines) - mines * logRho;
+            }
+            exponentiate(weights);
+
+            double total = 0;
+            double interiorMines = 0;
+            for (int i = 0; i < weights.length; i++) {
+                double weight = root.values[i] * weights[i];
+                total += weight;
+                interiorMines += weight * (remaining - root.low - i);
+            }
+            this.interior = interiorCount > 0 && total > 0 ? interiorMines / total / interiorCount : Double.NaN;
+
+            root.descend(root.low, weights);
+            for (Component component : exact) {
+                // Untilt the weights to the factor the component was counted with
+                double[] ending = component.ending;
+                for (int t = 0; t < ending.length; t++)
+                    ending[t] = Math.log(ending[t]) + (component.low + t) * shift;
+                exponentiate(ending);
+            }
+        }
+
+        /**
+         * Class: Node
+         * Distribution of the amount of mines of a range of components, combined in a binary tree.
+         */
+        private static final class Node {
+
+            private final Node left;
+            private final Node right;
+            private final Component component;
+
+            // Tilted weight of each amount of mines, starting at low
+            private long low;
+            private double[] values;
+
+            private Node(List<Component> exact, int from, int to, double shift) {
+                if (1 == to - from) {
+                    this.left = null;
+                    this.right = null;
+                    this.component = exact.get(from);
+                    this.low = this.component.low;
+                    this.values = new double[this.component.distribution.length];
+                    for (int t = 0; t < this.values.length; t++)
+                        this.values[t] = Math.log(this.component.distribution[t]) + (this.low + t) * shift;
+                    exponentiate(this.values);
+                    return;
+                }
+
+                int middle = (from + to) >>> 1;
+                this.left = new Node(exact, from, middle, shift);
+                this.right = new Node(exact, middle, to, shift);
+                this.component = null;
+                this.low = this.left.low + this.right.low;
+                this.values = convolve(this.left.values, this.right.values);
+                this.trim();
+            }
+
+            /**
+             * Drops the negligible weights at both ends.
+             */
+            private void trim() {
+                normalize(this.values);
+                int first = 0;
+                int last = this.values.length - 1;
+                while (first < last && this.values[first] < TRIM)
+                    first++;
+                while (last > first && this.values[last] < TRIM)
+                    last--;
+                this.low += first;
+                this.values = Arrays.copyOfRange(this.values, first, last + 1);
+            }
+
+            /**
+             * Passes the weights of the amounts of mines down to the components.
+             *
+             * @param weightLow {@link long} amount of mines of the first weight.
+             * @param weights   {@link double[]} weight of each amount of mines of this range.
+             */
+            private void descend(long weightLow, double[] weights) {
+                if (null != this.component) {
+                    double[] ending = new double[this.values.length];
+                    for (int t = 0; t < ending.length; t++) {
+                        int i = (int) (this.low + t - weightLow);
+                        ending[t] = i >= 0 && i < weights.length ? weights[i] : 0;
+                    }
+                    this.component.ending = ending;
+                    return;
+                }
+                this.left.descend(this.left.low, this.weighChild(this.left, this.right, weightLow, weights));
+                this.right.descend(this.right.low, this.weighChild(this.right, this.left, weightLow, weights));
+            }
+
+            /**
+             * @return {@link double[]} weight of each amount of mines of the given child, summed over its sibling.
+             */
+            private double[] weighChild(Node child, Node sibling, long weightLow, double[] weights) {
+                double[] result = new double[child.values.length];
+                for (int y = 0; y < result.length; y++) {
+                    double sum = 0;
+                    long offset = child.low + y + sibling.low - weightLow;
+                    for (int z = 0; z < sibling.values.length; z++) {
+                        long i = offset + z;
+                        if (i >= 0 && i < weights.length)
+                            sum += sibling.values[z] * weights[(int) i];
+                    }
+                    result[y] = sum;
+                }
+                normalize(result);
+                return result;
+            }
+
+            private static double[] convolve(double[] a, double[] b) {
+                double[] result = new double[a.length + b.length - 1];
+                for (int i = 0; i < a.length; i++) {
+                    if (0 == a[i])
+                        continue;
+                    for (int j = 0; j < b.length; j++)
+                        result[i + j] += a[i] * b[j];
+                }
+                return result;
+            }
+        }
+
+        /**
+         * Class: Pass
+         * Runs a pass over a range of components. It splits itself until one component is left.
+         *
+         * @see java.util.concurrent.RecursiveAction
+         */
+        private static final class Pass extends RecursiveAction {
+
+            /**
+             * {@code serialVersionUID}, which is used during deserialization to verify that the sender and receiver
+             * of a serialized object have loaded classes for that object that are compatible with respect to
+             * serialization. It has to be {@link final} and {@link long}.
+             *
+             * @see java.io.ObjectOutputStream
+             * @see java.io.ObjectInputStream
+             * @see final
+             * @see long
+             */
+            private static final long serialVersionUID = 1L;
+
+            private final Component[] components;
+            private final int from;
+            private final int to;
+            private final boolean second;
+
+            private Pass(Component[] components, int from, int to, boolean second) {
+                this.components = components;
+                this.from = from;
+                this.to = to;
+                this.second = second;
+            }
+
+            @Override
+            protected void compute() {
+                if (1 == this.to - this.from) {
+                    if (this.second)
+                        this.components[this.from].evaluate();
+                    else
+                        this.components[this.from].count();
+                    return;
+                }
+                int middle = (this.from + this.to) >>> 1;
+                invokeAll(new Pass(this.components, this.from, middle, this.second),
+                        new Pass(this.components, middle, this.to, this.second));
+            }
+        }
+
+        /**
+         * Class: Key
+         * Amounts of mines the active constraints still need, as the key of a merged state.
+         */
+        private static final class Key {
+
+            private final byte[] needs;
+            private final int hash;
+
+            private Key(byte[] needs) {
+                this.needs = needs;
+                this.hash = Arrays.hashCode(needs);
+            }
+
+            @Override
+            public int hashCode() {
+                return this.hash;
+            }
+
+            @Override
+            public boolean equals(Object other) {
+                return other instanceof Key && Arrays.equals(this.needs, ((Key) other).needs);
+            }
+        }
+
+        /**
+         * Class: Component
+         * Frontier cells connected by constraints and the dynamic program counting their placements.
+         */
+        private final class Component {
+
+            // Modes of a component
+            private static final int EXACT = 0;
+            private static final int ESTIMATED = 1;
+            private static final int FAILED = 2;
+
+            // Results of counting
+            private static final int COUNTED = 0;
+            private static final int TOO_LARGE = 1;
+            private static final int IMPOSSIBLE = 2;
+
+            private final int[] members;
+
+            /**
+             * Frontier cells in breadth first order.
+             */
+            private int[] order;
+
+            /**
+             * For each step, the active constraints afterwards: where their need comes from, either the position in
+             * the state before or {@code -1 - need} for a new one, whether they contain the cell and how many of their
+             * cells follow. And those which end with the cell.
+             */
+            private int[][] sources;
+            private int[][] contains;
+            private int[][] following;
+            private int[][] closing;
+
+            private int mode;
+
+            /**
+             * Tilted weights of the amounts of mines, starting at low, after the first pass.
+             */
+            private long low;
+            private double[] distribution;
+
+            /**
+             * Weights of the amounts of mines by the rest of the pitch, for the second pass.
+             */
+            private double[] ending;
+
+            /**
+             * Expected amount of mines of an estimated component.
+             */
+            private double expected;
+
+            // Steps kept for the second pass
+            private double[][][] layerValues;
+            private int[][] layerLows;
+            private int[][] layerSafe;
+            private int[][] layerMine;
+
+            private Component(int[] members) {
+                this.members = members;
+            }
+
+            /**
+             * First pass: counts the placements by the amount of mines. Components which are too large are estimated
+             * right away.
+             */
+            private void count() {
+                if (!this.prepare()) {
+                    this.fail();
+                    return;
+                }
+
+                int result = this.forward(true, false);
+                if (COUNTED == result) {
+                    this.mode = EXACT;
+                    return;
+                }
+                if (TOO_LARGE == result && COUNTED == this.forward(false, true)) {
+                    this.mode = ESTIMATED;
+                    this.backward(false, new double[]{1});
+                    for (int f : this.order)
+                        this.expected += values[f];
+                    return;
+                }
+                this.fail();
+            }
+
+            /**
+             * Second pass: calculates the probability of each cell of an exact component.
+             */
+            private void evaluate() {
+                this.forward(true, true);
+                this.backward(true, this.ending);
+            }
+
+            private void fail() {
+                this.mode = FAILED;
+                this.layerValues = null;
+                if (null == this.order)
+                    this.order = this.members;
+            }
+
+            /**
+             * Orders the cells and builds the steps of the dynamic program.
+             *
+             * @return {@link boolean} are all constraints satisfiable on their own?
+             */
+            private boolean prepare() {
+                int n = this.members.length;
+                this.order = new int[n];
+                int[] constraints = new int[8];
+                int constraintCount = 0;
+
+                // Breadth first order
+                int size = 0;
+                positions[this.members[0]] = size;
+                this.order[size++] = this.members[0];
+                for (int q = 0; q < size; q++) {
+                    int cell = this.order[q];
+                    for (int e = cellConstraintStart[cell]; e < cellConstraintStart[cell + 1]; e++) {
+                        int c = cellConstraints[e];
+                        if (-1 != localIds[c])
+                            continue;
+                        if (constraintCount == constraints.length)
+                            constraints = Arrays.copyOf(constraints, constraintCount << 1);
+                        localIds[c] = constraintCount;
+                        constraints[constraintCount++] = c;
+                        for (int j = 0; j < constraintSizes[c]; j++) {
+                            int other = constraintCells[(c << 3) + j];
+                            if (-1 == positions[other]) {
+                                positions[other] = size;
+                                this.order[size++] = other;
+                            }
+                        }
+                    }
+                }
+
+                // First and last position and remaining cells of each constraint
+                int[] first = new int[constraintCount];
+                int[] last = new int[constraintCount];
+                int[] left = new int[constraintCount];
+                for (int k = 0; k < constraintCount; k++) {
+                    int c = constraints[k];
+                    if (needs[c] < 0 || needs[c] > constraintSizes[c])
+                        return false;
+                    first[k] = n;
+                    last[k] = -1;
+                    left[k] = constraintSizes[c];
+                    for (int j = 0; j < constraintSizes[c]; j++) {
+                        int position = positions[constraintCells[(c << 3) + j]];
+                        first[k] = Math.min(first[k], position);
+                        last[k] = Math.max(last[k], position);
+                    }
+                }
+
+                this.sources = new int[n][];
+                this.contains = new int[n][];
+                this.following = new int[n][];
+                this.closing = new int[n][];
+                int[] active = new int[0];
+                boolean[] touched = new boolean[constraintCount];
+                for (int i = 0; i < n; i++) {
+                    int cell = this.order[i];
+                    int opened = 0;
+                    for (int e = cellConstraintStart[cell]; e < cellConstraintStart[cell + 1]; e++) {
+                        int k = localIds[cellConstraints[e]];
+                        touched[k] = true;
+                        left[k]--;
+                        if (first[k] == i)
+                            opened++;
+                    }
+
+                    int[] after = new int[active.length + opened];
+                    int[] source = new int[after.length];
+                    int[] close = new int[active.length + opened];
+                    int afterCount = 0;
+                    int closeCount = 0;
+                    for (int j = 0; j < active.length; j++) {
+                        int k = active[j];
+                        if (last[k] == i) {
+                            close[closeCount++] = j;
+                        } else {
+                            source[afterCount] = j;
+                            after[afterCount++] = k;
+                        }
+                    }
+                    for (int e = cellConstraintStart[cell]; e < cellConstraintStart[cell + 1]; e++) {
+                        int c = cellConstraints[e];
+                        int k = localIds[c];
+                        if (first[k] != i)
+                            continue;
+                        if (last[k] == i) {
+                            close[closeCount++] = -1 - needs[c];
+                        } else {
+                            source[afterCount] = -1 - needs[c];
+                            after[afterCount++] = k;
+                        }
+                    }
+
+                    active = Arrays.copyOf(after, afterCount);
+                    this.sources[i] = Arrays.copyOf(source, afterCount);
+                    this.contains[i] = new int[afterCount];
+                    this.following[i] = new int[afterCount];
+                    for (int j = 0; j < afterCount; j++) {
+                        this.contains[i][j] = touched[active[j]] ? 1 : 0;
+                        this.following[i][j] = left[active[j]];
+                    }
+                    this.closing[i] = Arrays.copyOf(close, closeCount);
+
+                    for (int e = cellConstraintStart[cell]; e < cellConstraintStart[cell + 1]; e++)
+                        touched[localIds[cellConstraints[e]]] = false;
+                }
+                return true;
+            }
+
+            /**
+             * Counts the placements step by step. Placements with the same needs are merged into one state, which
+             * keeps their weights by the amount of mines.
+             *
+             * @param byMines {@link boolean} keep the amount of mines? Otherwise every mine is only weighted.
+             * @param keep    {@link boolean} keep the steps for the second pass?
+             * @return {@link int} COUNTED, TOO_LARGE or IMPOSSIBLE.
+             */
+            private int forward(boolean byMines, boolean keep) {
+                int n = this.order.length;
+                int shift = byMines ? 1 : 0;
+                double tilt = Math.exp(logTilt);
+                byte[][] states = {new byte[0]};
+                int[] lows = {0};
+                double[][] weights = {{1}};
+                long stored = 1;
+                if (keep) {
+                    this.layerValues = new double[n + 1][][];
+                    this.layerLows = new int[n + 1][];
+                    this.layerSafe = new int[n][];
+                    this.layerMine = new int[n][];
+                }
+
+                for (int i = 0; i < n; i++) {
+                    int count = states.length;
+                    int[] safe = new int[count];
+                    int[] mine = new int[count];
+                    Map<Key, Integer> known = new HashMap<Key, Integer>();
+                    List<byte[]> nextStates = new ArrayList<byte[]>();
+                    int[] nextLows = new int[Math.min(2 * count, MAX_STATES + 2)];
+                    int[] nextHighs = new int[nextLows.length];
+
+                    for (int s = 0; s < count; s++) {
+                        for (int v = 0; v < 2; v++) {
+                            byte[] next = this.step(i, states[s], v);
+                            int target = -1;
+                            if (null != next) {
+                                Key key = new Key(next);
+                                Integer index = known.get(key);
+                                int low = lows[s] + v * shift;
+                                int high = low + weights[s].length - 1;
+                                if (null == index) {
+                                    target = nextStates.size();
+                                    if (target > MAX_STATES)
+                                        return TOO_LARGE;
+                                    known.put(key, target);
+                                    nextStates.add(next);
+                                    nextLows[target] = low;
+                                    nextHighs[target] = high;
+                                } else {
+                                    target = index;
+                                    nextLows[target] = Math.min(nextLows[target], low);
+                                    nextHighs[target] = Math.max(nextHighs[target], high);
+                                }
+                            }
+                            if (0 == v)
+                                safe[s] = target;
+                            else
+                                mine[s] = target;
+                        }
+                    }
+                    if (nextStates.isEmpty())
+                        return IMPOSSIBLE;
+
+                    // Add up the weights of the merged placements
+                    int nextCount = nextStates.size();
+                    double[][] nextWeights = new double[nextCount][];
+                    for (int t = 0; t < nextCount; t++) {
+                        nextWeights[t] = new double[nextHighs[t] - nextLows[t] + 1];
+                        stored += nextWeights[t].length;
+                    }
+                    if (stored > MAX_VALUES)
+                        return TOO_LARGE;
+                    double max = 0;
+                    for (int s = 0; s < count; s++) {
+                        double[] from = weights[s];
+                        if (-1 != safe[s]) {
+                            double[] to = nextWeights[safe[s]];
+                            int offset = lows[s] - nextLows[safe[s]];
+                            for (int m = 0; m < from.length; m++)
+                                to[offset + m] += from[m];
+                        }
+                        if (-1 != mine[s]) {
+                            double[] to = nextWeights[mine[s]];
+                            int offset = lows[s] + shift - nextLows[mine[s]];
+                            for (int m = 0; m < from.length; m++)
+                                to[offset + m] += from[m] * tilt;
+                        }
+                    }
+                    for (double[] row : nextWeights) {
+                        for (double value : row)
+                            max = Math.max(max, value);
+                    }
+                    for (double[] row : nextWeights) {
+                        for (int m = 0; m < row.length; m++)
+                            row[m] /= max;
+                    }
+
+                    if (keep) {
+                        this.layerValues[i] = weights;
+                        this.layerLows[i] = lows;
+                        this.layerSafe[i] = safe;
+                        this.layerMine[i] = mine;
+                    }
+                    states = nextStates.toArray(new byte[nextCount][]);
+                    lows = Arrays.copyOf(nextLows, nextCount);
+                    weights = nextWeights;
+                }
+
+                if (keep) {
+                    this.layerValues[n] = weights;
+                    this.layerLows[n] = lows;
+                }
+                // All constraints are closed after the last cell, so there is one state left
+                this.low = lows[0];
+                this.distribution = weights[0];
+                return COUNTED;
+            }
+
+            /**
+             * Applies a value of the cell of the given step to a state.
+             *
+             * @return {@link byte[]} state afterwards, null if a constraint can't be satisfied anymore.
+             */
+            private byte[] step(int i, byte[] state, int value) {
+                for (int source : this.closing[i]) {
+                    int need = source >= 0 ? state[source] : -1 - source;
+                    if (need != value)
+                        return null;
+                }
+                int[] source = this.sources[i];
+                byte[] next = new byte[source.length];
+                for (int j = 0; j < source.length; j++) {
+                    int need = (source[j] >= 0 ? state[source[j]] : -1 - source[j]) - this.contains[i][j] * value;
+                    if (need < 0 || need > this.following[i][j])
+                        return null;
+                    next[j] = (byte) need;
+                }
+                return next;
+            }
+
+            /**
+             * Walks back over the kept steps, summing up the weights of the completions of each state, and calculates
+             * the probability of each cell.
+             *
+             * @param byMines {@link boolean} were the amounts of mines kept?
+             * @param ending  {@link double[]} weight of each amount of mines of the whole component.
+             */
+            private void backward(boolean byMines, double[] ending) {
+                int shift = byMines ? 1 : 0;
+                double tilt = Math.exp(logTilt);
+                double[][] completions = {ending};
+                boolean[] reachable = {true};
+
+                for (int i = this.order.length - 1; i >= 0; i--) {
+                    double[][] weights = this.layerValues[i];
+                    int[] lows = this.layerLows[i];
+                    int[] nextLows = this.layerLows[i + 1];
+                    int[] safe = this.layerSafe[i];
+                    int[] mine = this.layerMine[i];
+                    double[][] current = new double[weights.length][];
+                    boolean[] currentReachable = new boolean[weights.length];
+                    double safeWeight = 0;
+                    double mineWeight = 0;
+                    boolean canBeSafe = false;
+                    boolean canBeMine = false;
+                    double max = 0;
+
+                    for (int s = 0; s < weights.length; s++) {
+                        double[] from = weights[s];
+                        double[] sum = new double[from.length];
+                        if (-1 != safe[s] && reachable[safe[s]]) {
+                            canBeSafe = true;
+                            currentReachable[s] = true;
+                            double[] next = completions[safe[s]];
+                            int offset = lows[s] - nextLows[safe[s]];
+                            for (int m = 0; m < from.length; m++) {
+                                sum[m] = next[offset + m];
+                                safeWeight += from[m] * next[offset + m];
+                            }
+                        }
+                        if (-1 != mine[s] && reachable[mine[s]]) {
+                            canBeMine = true;
+                            currentReachable[s] = true;
+                            double[] next = completions[mine[s]];
+                            int offset = lows[s] + shift - nextLows[mine[s]];
+                            for (int m = 0; m < from.length; m++) {
+                                double weight = next[offset + m] * tilt;
+                                sum[m] += weight;
+                                mineWeight += from[m] * weight;
+                            }
+                        }
+                        for (double value : sum)
+                            max = Math.max(max, value);
+                        current[s] = sum;
+                    }
+                    if (max > 0) {
+                        for (double[] row : current) {
+                            for (int m = 0; m < row.length; m++)
+                                row[m] /= max;
+                        }
+                    }
+
+                    int f = this.order[i];
+                    if (!canBeMine) {
+                        forced[f] = SAFE;
+                        values[f] = 0;
+                    } else if (!canBeSafe) {
+                        forced[f] = MINE;
+                        values[f] = 1;
+                    } else {
+                        double total = safeWeight + mineWeight;
+                        values[f] = total > 0 ? mineWeight / total : Double.NaN;
+                    }
+
+                    completions = current;
+                    reachable = currentReachable;
+                    this.layerValues[i + 1] = null;
+                }
+                this.layerValues = null;
+                this.layerLows = null;
+                this.layerSafe = null;
+                this.layerMine = null;
+            }
+
+            /**
+             * @param shift {@link double} logarithm of the additional factor per mine.
+             * @return {@link double} expected amount of mines of this component with each mine weighted additionally.
+             */
+            private double mean(double shift) {
+                double max = Double.NEGATIVE_INFINITY;
+                for (int t = 0; t < this.distribution.length; t++) {
+                    if (this.distribution[t] > 0)
+                        max = Math.max(max, Math.log(this.distribution[t]) + t * shift);
+                }
+                double total = 0;
+                double mines = 0;
+                for (int t = 0; t < this.distribution.length; t++) {
+                    if (0 == this.distribution[t])
+                        continue;
+                    double weight = Math.exp(Math.log(this.distribution[t]) + t * shift - max);
+                    total += weight;
+                    mines += weight * (this.low + t);
+                }
+                return mines / total;
+            }
+        }
+    }
+}
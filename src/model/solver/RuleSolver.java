@@ -0,0 +1,633 @@
+/*
+ * (C) Copyright 2014 Mark Alexander Dietrich <mark.dietrich93@gmail.com>.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Contributors:
+ *     Mark Alexander Dietrich
+ */
+
+package model.solver;
+
+import model.Board;
+import model.BoardDelta;
+import model.BoardListener;
+import model.Game;
+
+import java.util.Arrays;
+
+/**
+ * Created by Mark Alexander Dietrich on 06/11/14.
+ * <p/>
+ * File: RuleSolver.java
+ * <p/>
+ * Class: RuleSolver
+ * Deduces cells by constraint propagation. Every opened cell with closed neighbours is a constraint: its unknown
+ * neighbours, encoded as a bitmask of its 3x3 block, contain exactly the amount of neighbour mines minus the marked
+ * neighbours. Two rules are applied until nothing changes:
+ * <ul>
+ * <li>patterns: a constraint and the constraints next to it are looked up in the {@link model.solver.PatternTable},
+ * which holds the decided cells of every pair of neighbouring constraints. This covers the single cell rule, i.e. if no
+ * mine is left all unknown neighbours are safe and if as many mines as unknown neighbours are left they are all mines,
+ * and the local patterns along straight edges.</li>
+ * <li>subset and superset: two constraints whose centers are at most two cells apart are shifted into a common 7x7
+ * frame. If one needs exactly as many mines more than the other as it has cells outside of the other, those cells are
+ * mines and the cells of the other one outside of it are safe. This covers the case that one is a subset of the
+ * other.</li>
+ * </ul>
+ * The cheap table lookups are applied to every changed constraint first, the subset rule only to those they could not
+ * decide. Each decided cell updates the constraints around it, which are checked again. So after the frontier is
+ * collected, which reads each cell once, the work depends on the amount of constraints and changes, not on the size of
+ * the pitch.
+ * <p/>
+ * The constraints and the decided cells are kept between the calls. The {@link model.solver.RuleSolver} listens to
+ * the {@link model.Game} it solved last and applies the cells of each {@link model.BoardDelta} like decided cells: an
+ * opened cell is removed from the constraints around it and adds its own, a marked cell is removed as a mine. Only
+ * these constraints are checked again, and the subset rule reaches the constraints up to two cells away from them. So
+ * a call costs as much as the moves since the last one changed, regardless of the explored area. The frontier is only
+ * collected again after a full {@link model.BoardDelta}, e.g. an undo, or if a mark is removed, since deductions may
+ * rest on it.
+ *
+ * @author Mark Alexander Dietrich
+ * @see model.solver.Solver
+ */
+public class RuleSolver implements Solver, BoardListener {
+
+    /**
+     * Offsets of the neighbours in the order of the bits of a constraint.
+     */
+    static final int[] DX = {-1, -1, -1, 0, 0, 1, 1, 1};
+    static final int[] DY = {-1, 0, 1, -1, 1, -1, 0, 1};
+
+    /**
+     * Bit of a neighbour by its offset, {@code (dx + 1) * 3 + dy + 1}. The center has no bit.
+     */
+    private static final int[] BIT = {0, 1, 2, 3, -1, 4, 5, 6, 7};
+
+    /**
+     * Bitmask of the unknown cells among four states packed into two bits each, see
+     * {@link model.solver.RuleSolver#collect}.
+     */
+    private static final int[] UNKNOWN = new int[256];
+
+    /**
+     * Edge length of the frame two constraints are compared in.
+     */
+    static final int FRAME = 7;
+
+    /**
+     * Bitmasks of a constraint shifted into the frame of a constraint in its 5x5 block. Indexed by the offset of its
+     * center, {@code (ox + 2) * 5 + oy + 2}, and its bitmask.
+     */
+    private static final long[][] SHIFTED = new long[25][256];
+
+    static {
+        for (int states = 0; states < 256; states++) {
+            for (int n = 0; n < 4; n++) {
+                if (1 == ((states >>> (n << 1)) & 3))
+                    UNKNOWN[states] |= 1 << n;
+            }
+        }
+        for (int ox = -2; ox <= 2; ox++) {
+            for (int oy = -2; oy <= 2; oy++) {
+                long[] table = SHIFTED[(ox + 2) * 5 + oy + 2];
+                for (int mask = 0; mask < 256; mask++) {
+                    long frame = 0L;
+                    for (int bit = 0; bit < 8; bit++) {
+                        if (0 != (mask & (1 << bit)))
+                            frame |= 1L << ((ox + DX[bit] + 3) * FRAME + oy + DY[bit] + 3);
+                    }
+                    table[mask] = frame;
+                }
+            }
+        }
+    }
+
+    /**
+     * Collect the frontier again once this many cells changed since the last call.
+     */
+    private static final int MAX_CHANGED_SHIFT = 3;
+
+    /**
+     * {@link model.Game} the constraints belong to, this {@link model.solver.RuleSolver} listens to it.
+     */
+    private Game game;
+
+    private Board board;
+    private int width;
+    private int height;
+
+    /**
+     * Do the constraints have to be collected again?
+     */
+    private boolean stale = true;
+
+    /**
+     * Cells listed by the {@link model.BoardDelta}s since the last call.
+     */
+    private int[] changed = new int[64];
+    private int changedCount;
+
+    /**
+     * Open and marked flag of each cell, see {@link model.Board#getState}, as the constraints know it.
+     */
+    private byte[] seen;
+
+    /**
+     * Constraint at each cell, -1 if there is none. Only the entries of the current constraints are set, so it can be
+     * reused.
+     */
+    private int[] constraintAt;
+
+    /**
+     * Decided cells: 0 unknown, 1 safe, 2 mine. The constraints don't contain them anymore.
+     */
+    private byte[] decided;
+
+    // Constraints: center, bitmask of the unknown neighbours and amount of mines among them
+    private int[] centers = new int[64];
+    private int[] masks = new int[64];
+    private int[] needs = new int[64];
+    private int count;
+
+    /**
+     * Constraints which have to be checked again, and those of them the patterns could not decide.
+     */
+    private int[] queue = new int[64];
+    private boolean[] queued = new boolean[64];
+    private int queueSize;
+    private int[] pairQueue = new int[64];
+    private boolean[] pairQueued = new boolean[64];
+    private int pairQueueSize;
+
+    /**
+     * States of three rows of cells while the frontier is collected: 0 opened, 1 unknown, 2 marked.
+     */
+    private byte[][] rows = new byte[3][];
+
+    // Decided cells which are still closed and unmarked
+    private int[] safeCells = new int[64];
+    private int safeCount;
+    private int[] mines = new int[64];
+    private int mineCount;
+
+    /**
+     * Finds every cell which the patterns and the subset rule can decide. Only the changes since the last call are
+     * applied, if the same {@link model.Game} is solved again.
+     *
+     * @param game {@link model.Game} to solve.
+     * @return {@link model.solver.Deduction} containing the decided cells.
+     */
+    @Override
+    public Deduction solve(Game game) {
+        if (game.isEnded())
+            return Deduction.EMPTY;
+
+        if (game != this.game) {
+            if (null != this.game)
+                this.game.removeBoardListener(this);
+            this.game = game;
+            this.game.addBoardListener(this);
+            this.stale = true;
+        }
+
+        Board board = game.getBoard();
+        if (!this.stale && board == this.board)
+            this.update();
+        if (this.stale || board != this.board) {
+            this.init(board);
+            this.collect();
+        }
+        this.changedCount = 0;
+        return this.propagate();
+    }
+
+    /**
+     * Remembers the changed cells until the next call. Called on the thread which performs the actions of the
+     * {@link model.Game}.
+     *
+     * @param delta {@link model.BoardDelta} describing the changed cells.
+     */
+    @Override
+    public void boardChanged(BoardDelta delta) {
+        if (this.stale)
+            return;
+        if (delta.isFull() || null == this.board
+                || this.changedCount + delta.size() > this.board.getCellCount() >>> MAX_CHANGED_SHIFT) {
+            this.stale = true;
+            this.changedCount = 0;
+            return;
+        }
+
+        if (this.changedCount + delta.size() > this.changed.length)
+            this.changed = Arrays.copyOf(this.changed, Math.max(this.changed.length << 1,
+                    this.changedCount + delta.size()));
+        for (int n = 0; n < delta.size(); n++)
+            this.changed[this.changedCount++] = delta.getCell(n);
+    }
+
+    /**
+     * Applies the changed cells to the constraints. Sets {@link model.solver.RuleSolver#stale} if they contradict the
+     * decided cells or a mark was removed.
+     */
+    private void update() {
+        for (int n = 0; n < this.changedCount; n++) {
+            int cell = this.changed[n];
+            byte before = this.seen[cell];
+            byte now = (byte) (this.board.getState(cell) & (Board.OPEN | Board.MARKED));
+            if (now == before)
+                continue;
+            this.seen[cell] = now;
+
+            int x = cell / this.width;
+            int y = cell - x * this.width;
+            byte decision = this.decided[cell];
+            if (0 != (now & Board.OPEN) && 0 == (before & Board.MARKED)) {
+                if (2 == decision) {
+                    this.stale = true;
+                    return;
+                }
+                // A decided cell was removed from the constraints already
+                if (0 == decision)
+                    this.removeFromNeighbors(x, y, false);
+                this.decided[cell] = 0;
+                this.addConstraint(x, y);
+            } else if (Board.MARKED == now) {
+                if (1 == decision) {
+                    this.stale = true;
+                    return;
+                }
+                if (0 == decision)
+                    this.removeFromNeighbors(x, y, true);
+                this.decided[cell] = 0;
+            } else {
+                this.stale = true;
+                return;
+            }
+        }
+    }
+
+    /**
+     * Adds the constraints of all opened cells. Each cell is read once, its state is kept while the rows around it are
+     * scanned.
+     */
+    private void collect() {
+        if (null == this.rows[0] || this.rows[0].length != this.width + 2) {
+            for (int r = 0; r < 3; r++)
+                this.rows[r] = new byte[this.width + 2];
+        }
+        // Row x is kept in rows[x % 3], cells outside of the pitch count as opened
+        Arrays.fill(this.rows[2], (byte) 0);
+        this.readRow(0, this.rows[0]);
+
+        for (int x = 0; x < this.height; x++) {
+            byte[] above = this.rows[(x + 2) % 3];
+            byte[] row = this.rows[x % 3];
+            byte[] below = this.rows[(x + 1) % 3];
+            if (x + 1 < this.height)
+                this.readRow(x + 1, below);
+            else
+                Arrays.fill(below, (byte) 0);
+
+            for (int y = 1; y <= this.width; y++) {
+                if (0 != row[y])
+                    continue;
+                // Bit 0 of a state is set for unknown cells, bit 1 for marked ones
+                int states = above[y - 1] | above[y] << 2 | above[y + 1] << 4 | row[y - 1] << 6 | row[y + 1] << 8
+                        | below[y - 1] << 10 | below[y] << 12 | below[y + 1] << 14;
+                if (0 == states)
+                    continue;
+                int mask = UNKNOWN[states & 0xFF] | UNKNOWN[states >>> 8] << 4;
+                if (0 != mask) {
+                    int center = x * this.width + y - 1;
+                    int marks = Integer.bitCount(states & 0xAAAA);
+                    this.addConstraint(center, mask, this.board.getNeighborMines(center) - marks);
+                }
+            }
+        }
+    }
+
+    /**
+     * Reads the states of the given row into the given array, leaving a border cell on both sides.
+     */
+    private void readRow(int x, byte[] row) {
+        int first = x * this.width;
+        for (int y = 0; y < this.width; y++) {
+            int cell = first + y;
+            row[y + 1] = this.board.isOpen(cell) ? (byte) 0 : this.board.isMarked(cell) ? (byte) 2 : (byte) 1;
+            this.seen[cell] = 0 == row[y + 1] ? Board.OPEN : 2 == row[y + 1] ? Board.MARKED : 0;
+        }
+    }
+
+    /**
+     * Drops all constraints and decided cells and prepares the reusable arrays for the given {@link model.Board}.
+     */
+    void init(Board board) {
+        if (null == this.constraintAt || this.constraintAt.length != board.getCellCount()) {
+            this.constraintAt = new int[board.getCellCount()];
+            Arrays.fill(this.constraintAt, -1);
+            this.decided = new byte[board.getCellCount()];
+            this.seen = new byte[board.getCellCount()];
+        } else {
+            for (int id = 0; id < this.count; id++)
+                this.constraintAt[this.centers[id]] = -1;
+            for (int n = 0; n < this.safeCount; n++)
+                this.decided[this.safeCells[n]] = 0;
+            for (int n = 0; n < this.mineCount; n++)
+                this.decided[this.mines[n]] = 0;
+            Arrays.fill(this.queued, false);
+            Arrays.fill(this.pairQueued, false);
+        }
+        this.board = board;
+        this.height = board.getHeight();
+        this.width = board.getWidth();
+        this.stale = false;
+        this.count = 0;
+        this.queueSize = 0;
+        this.pairQueueSize = 0;
+        this.safeCount = 0;
+        this.mineCount = 0;
+    }
+
+    /**
+     * Adds the constraint of the cell at the given coordinates, if it is opened and has unknown neighbours.
+     *
+     * @param x {@link int} x coordinate
+     * @param y {@link int} y coordinate
+     */
+    void addConstraint(int x, int y) {
+        int center = x * this.width + y;
+        if (!this.board.isOpen(center) || -1 != this.constraintAt[center])
+            return;
+
+        int mask = 0;
+        int need = this.board.getNeighborMines(center);
+        for (int bit = 0; bit < 8; bit++) {
+            int nx = x + DX[bit];
+            int ny = y + DY[bit];
+            if (nx < 0 || ny < 0 || nx >= this.height || ny >= this.width)
+                continue;
+            int neighbor = nx * this.width + ny;
+            if (this.board.isOpen(neighbor))
+                continue;
+            if (this.board.isMarked(neighbor) || 2 == this.decided[neighbor])
+                need--;
+            else if (0 == this.decided[neighbor])
+                mask |= 1 << bit;
+        }
+        if (0 != mask)
+            this.addConstraint(center, mask, need);
+    }
+
+    private void addConstraint(int center, int mask, int need) {
+        if (this.count == this.centers.length) {
+            int length = this.count << 1;
+            this.centers = Arrays.copyOf(this.centers, length);
+            this.masks = Arrays.copyOf(this.masks, length);
+            this.needs = Arrays.copyOf(this.needs, length);
+            this.queue = Arrays.copyOf(this.queue, length);
+            this.queued = Arrays.copyOf(this.queued, length);
+            this.pairQueue = Arrays.copyOf(this.pairQueue, length);
+            this.pairQueued = Arrays.copyOf(this.pairQueued, length);
+        }
+        int id = this.count++;
+        this.centers[id] = center;
+        this.masks[id] = mask;
+        this.needs[id] = need;
+        this.constraintAt[center] = id;
+        this.enqueue(id);
+    }
+
+    /**
+     * Applies the rules until no constraint changes anymore.
+     *
+     * @return {@link model.solver.Deduction} containing the decided cells which are still closed and unmarked.
+     */
+    Deduction propagate() {
+        while (this.queueSize > 0 || this.pairQueueSize > 0) {
+            if (this.queueSize > 0) {
+                int id = this.queue[--this.queueSize];
+                this.queued[id] = false;
+                if (!this.checkPatterns(id) && !this.pairQueued[id]) {
+                    this.pairQueued[id] = true;
+                    this.pairQueue[this.pairQueueSize++] = id;
+                }
+            } else {
+                int id = this.pairQueue[--this.pairQueueSize];
+                this.pairQueued[id] = false;
+                this.checkPairs(id);
+            }
+        }
+
+        // Drop the cells which were played meanwhile
+        this.safeCount = this.compact(this.safeCells, this.safeCount);
+        this.mineCount = this.compact(this.mines, this.mineCount);
+        return new Deduction(Arrays.copyOf(this.safeCells, this.safeCount), Arrays.copyOf(this.mines, this.mineCount));
+    }
+
+    /**
+     * Removes the cells which are not decided anymore from the given list.
+     *
+     * @return {@link int} new length of the list.
+     */
+    private int compact(int[] cells, int length) {
+        int kept = 0;
+        for (int n = 0; n < length; n++) {
+            if (0 != this.decided[cells[n]])
+                cells[kept++] = cells[n];
+        }
+        return kept;
+    }
+
+    /**
+     * Looks up the given constraint in the {@link model.solver.PatternTable}, paired with each of the constraints right
+     * of, below, left of and above it. If there is none right of or below it, it is looked up alone.
+     *
+     * @return {@link boolean} is nothing left to decide by the subset rule?
+     */
+    private boolean checkPatterns(int id) {
+        int center = this.centers[id];
+        int x = center / this.width;
+        int y = center - x * this.width;
+        this.checkPattern(id, x, y, this.constraintAt(x, y + 1), PatternTable.HORIZONTAL);
+        this.checkPattern(id, x, y, this.constraintAt(x + 1, y), PatternTable.VERTICAL);
+        int left = this.constraintAt(x, y - 1);
+        if (-1 != left)
+            this.checkPattern(left, x, y - 1, id, PatternTable.HORIZONTAL);
+        int above = this.constraintAt(x - 1, y);
+        if (-1 != above)
+            this.checkPattern(above, x - 1, y, id, PatternTable.VERTICAL);
+
+        int mask = this.masks[id];
+        int need = this.needs[id];
+        // Wrong marks can make a constraint impossible, it is ignored then
+        return 0 == mask || need < 0 || need > Integer.bitCount(mask);
+    }
+
+    /**
+     * Decides the cells the {@link model.solver.PatternTable} holds for the given pair of constraints.
+     *
+     * @param first       {@link int} first constraint.
+     * @param x           {@link int} x coordinate of the first constraint.
+     * @param y           {@link int} y coordinate of the first constraint.
+     * @param second      {@link int} second constraint, -1 if there is none.
+     * @param orientation {@link int} orientation of the second constraint.
+     */
+    private void checkPattern(int first, int x, int y, int second, int orientation) {
+        int firstNeed = this.needs[first];
+        if (0 == this.masks[first] || firstNeed < 0 || firstNeed > 8)
+            return;
+        int secondMask = 0;
+        int secondNeed = PatternTable.ABSENT;
+        // An impossible second constraint is left out
+        if (-1 != second && this.needs[second] >= 0 && this.needs[second] <= 8) {
+            secondMask = this.masks[second];
+            secondNeed = this.needs[second];
+        }
+
+        int cells = PatternTable.lookup(PatternTable.window(orientation, this.masks[first], secondMask), firstNeed,
+                secondNeed);
+        if (0 == cells)
+            return;
+        long safe = PatternTable.frame(orientation, cells & PatternTable.CELLS);
+        long mines = PatternTable.frame(orientation, cells >>> PatternTable.CELL_COUNT);
+        this.decide(x, y, safe, false);
+        this.decide(x, y, mines, true);
+    }
+
+    /**
+     * @return {@link int} constraint at the given coordinates, -1 if there is none or they are outside of the pitch.
+     */
+    private int constraintAt(int x, int y) {
+        if (x < 0 || y < 0 || x >= this.height || y >= this.width)
+            return -1;
+        return this.constraintAt[x * this.width + y];
+    }
+
+    /**
+     * Applies the subset rule to the given constraint and every constraint in its 5x5 block.
+     */
+    private void checkPairs(int id) {
+        int mask = this.masks[id];
+        int need = this.needs[id];
+        if (0 == mask)
+            return;
+
+        int center = this.centers[id];
+        int x = center / this.width;
+        int y = center - x * this.width;
+
+        long frame = SHIFTED[12][mask];
+        for (int ox = -2; ox <= 2; ox++) {
+            int cx = x + ox;
+            if (cx < 0 || cx >= this.height)
+                continue;
+            for (int oy = -2; oy <= 2; oy++) {
+                int cy = y + oy;
+                if (cy < 0 || cy >= this.width || (0 == ox && 0 == oy))
+                    continue;
+                int other = this.constraintAt[cx * this.width + cy];
+                if (-1 == other || 0 == this.masks[other])
+                    continue;
+
+                long otherFrame = SHIFTED[(ox + 2) * 5 + oy + 2][this.masks[other]];
+                if (0L == (frame & otherFrame))
+                    continue;
+
+                long onlyThis = frame & ~otherFrame;
+                long onlyOther = otherFrame & ~frame;
+                int difference = need - this.needs[other];
+                if (difference == Long.bitCount(onlyThis)) {
+                    this.decide(x, y, onlyThis, true);
+                    this.decide(x, y, onlyOther, false);
+                } else if (-difference == Long.bitCount(onlyOther)) {
+                    this.decide(x, y, onlyOther, true);
+                    this.decide(x, y, onlyThis, false);
+                }
+
+                // A changed constraint is checked again anyway
+                if (this.masks[id] != mask)
+                    return;
+            }
+        }
+    }
+
+    /**
+     * Decides the cells of the given frame around the given center.
+     *
+     * @param x     {@link int} x coordinate of the center.
+     * @param y     {@link int} y coordinate of the center.
+     * @param frame {@link long} bitmask of the cells in the 7x7 frame of the center.
+     * @param mine  {@link boolean} are they mines?
+     */
+    private void decide(int x, int y, long frame, boolean mine) {
+        while (0L != frame) {
+            int position = Long.numberOfTrailingZeros(frame);
+            frame &= frame - 1;
+            this.decide(x + position / FRAME - 3, y + position % FRAME - 3, mine);
+        }
+    }
+
+    /**
+     * Records the given cell and removes it from the constraints around it, which are checked again.
+     */
+    private void decide(int x, int y, boolean mine) {
+        int cell = x * this.width + y;
+        if (0 != this.decided[cell])
+            return;
+
+        if (mine) {
+            this.decided[cell] = 2;
+            if (this.mineCount == this.mines.length)
+                this.mines = Arrays.copyOf(this.mines, this.mineCount << 1);
+            this.mines[this.mineCount++] = cell;
+        } else {
+            this.decided[cell] = 1;
+            if (this.safeCount == this.safeCells.length)
+                this.safeCells = Arrays.copyOf(this.safeCells, this.safeCount << 1);
+            this.safeCells[this.safeCount++] = cell;
+        }
+        this.removeFromNeighbors(x, y, mine);
+    }
+
+    /**
+     * Removes the given cell from the constraints around it, which are checked again.
+     */
+    private void removeFromNeighbors(int x, int y, boolean mine) {
+        for (int dx = -1; dx <= 1; dx++) {
+            int cx = x - dx;
+            if (cx < 0 || cx >= this.height)
+                continue;
+            for (int dy = -1; dy <= 1; dy++) {
+                int cy = y - dy;
+                if (cy < 0 || cy >= this.width || (0 == dx && 0 == dy))
+                    continue;
+                int id = this.constraintAt[cx * this.width + cy];
+                if (-1 == id)
+                    continue;
+                // The cell is at offset (dx, dy) of that center
+                this.masks[id] &= ~(1 << BIT[(dx + 1) * 3 + dy + 1]);
+                if (mine)
+                    this.needs[id]--;
+                this.enqueue(id);
+            }
+        }
+    }
+
+    private void enqueue(int id) {
+        if (!this.queued[id]) {
+            this.queued[id] = true;
+            this.queue[this.queueSize++] = id;
+        }
+    }
+}
@@ -0,0 +1,49 @@
+/*
+ * (C) Copyright 2014 Mark Alexander Dietrich <mark.dietrich93@gmail.com>.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Contributors:
+ *     Mark Alexander Dietrich
+ */
+
+package model.solver;
+
+import model.Game;
+
+/**
+ * Created by Mark Alexander Dietrich on 06/11/14.
+ * <p/>
+ * File: Solver.java
+ * <p/>
+ * Interface: Solver
+ * Deduces cells of a {@link model.Game} from what the player can see: the amount of neighbour mines of the opened
+ * cells and the marks, which are taken as mines. It never looks at the hidden mines.
+ * <p/>
+ * A {@link model.solver.Solver} reads the {@link model.Board}, so it has to be used on the thread which performs the
+ * actions of the {@link model.Game}.
+ *
+ * @author Mark Alexander Dietrich
+ * @see model.solver.Deduction
+ * @see model.Game
+ */
+public interface Solver {
+
+    /**
+     * Finds cells of the given {@link model.Game} which are provably safe or provably mines.
+     *
+     * @param game {@link model.Game} to solve.
+     * @return {@link model.solver.Deduction} containing the closed, unmarked cells which could be decided.
+     */
+    Deduction solve(Game game);
+}
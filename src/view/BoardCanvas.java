@@ -0,0 +1,613 @@
+/*
+ * (C) Copyright 2014 Mark Alexander Dietrich <mark.dietrich93@gmail.com>.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Contributors:
+ *     Mark Alexander Dietrich
+ */
+
+package view;
+
+import model.Board;
+import model.BoardDelta;
+import model.BoardListener;
+import model.Game;
+import model.solver.Probabilities;
+
+import javax.swing.*;
+import java.awt.*;
+import java.awt.event.MouseAdapter;
+import java.awt.event.MouseEvent;
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Executor;
+
+/**
+ * Created by Mark Alexander Dietrich on 06/11/14.
+ *
+ * File: BoardCanvas.java
+ *
+ * Class: BoardCanvas
+ * A single {@link javax.swing.JComponent} which paints the whole pitch of a {@link model.Game} from the state of its
+ * {@link model.Board}. Every cell looks like a {@link javax.swing.JButton}, closed cells show a question mark, marked
+ * cells a flag and opened mines a mine. Mouse coordinates are mapped to cells arithmetically. Only the cells inside the
+ * clip are painted, and if the cells get too small for pictures and numbers they are painted as plain colored pixels.
+ * Changed cells are collected in a {@link view.DirtyRegion} and repainted at most once per frame. Large cascades are
+ * revealed as a wavefront: the opened cells arrive sorted by their distance to the clicked one and at most
+ * {@link view.BoardCanvas#REVEAL_BUDGET} of them are shown per frame, the others are painted closed until their turn.
+ * <p/>
+ * Moves of the user are handed to an {@link java.util.concurrent.Executor}, so a long cascade does not block the Event
+ * Dispatch Thread. The {@link model.BoardDelta}s may therefore arrive on another thread, they are applied on the Event
+ * Dispatch Thread via {@link javax.swing.SwingUtilities#invokeLater}.
+ * <p/>
+ * If {@link model.solver.Probabilities} are set, the closed, unmarked cells are tinted from green to red by the
+ * probability that they are mines.
+ *
+ * @author Mark Alexander Dietrich
+ *
+ * @see javax.swing.JComponent
+ * @see model.BoardListener
+ */
+public class BoardCanvas extends JComponent implements BoardListener {
+
+    /**
+     * {@code serialVersionUID}, which is used during deserialization to verify that the sender and receiver of a
+     * serialized object have loaded classes for that object that are compatible with respect to serialization. It has
+     * to be {@link final} and {@link long}.
+     *
+     * @see java.io.ObjectOutputStream
+     * @see java.io.ObjectInputStream
+     * @see final
+     * @see long
+     */
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Cells smaller than this are painted as plain colored pixels.
+     */
+    private static final int MIN_DETAILED_CELL_SIZE = 6;
+
+    /**
+     * Range of the cell size in pixels.
+     */
+    public static final int MIN_CELL_SIZE = 1;
+    public static final int MAX_CELL_SIZE = 128;
+
+    /**
+     * Delay between two frames in milliseconds.
+     */
+    private static final int FRAME_DELAY = 16;
+
+    /**
+     * Up to this many dirty rectangles are painted one by one, otherwise their bounds are painted in one pass.
+     */
+    private static final int MAX_DIRTY_RECTANGLES = 4;
+
+    /**
+     * Maximal amount of opened cells which are revealed per frame.
+     */
+    private static final int REVEAL_BUDGET = 4096;
+
+    /**
+     * Colors of the amount of neighbour mines, index 0 is unused.
+     */
+    static final Color[] NUMBER_COLORS = {null, Color.BLUE, Color.GREEN, Color.RED, Color.MAGENTA,
+            Color.DARK_GRAY, Color.GRAY, Color.PINK, Color.BLACK};
+
+    // Colors of the plain pixel mode
+    private static final int CLOSED_RGB = 0xFFB8CFE5;
+    private static final int OPEN_RGB = 0xFFEEEEEE;
+    private static final int MARKED_RGB = 0xFFD04040;
+    private static final int EXPLODED_RGB = 0xFF000000;
+
+    /**
+     * Opacity of the tint of the heatmap.
+     */
+    private static final int HEATMAP_ALPHA = 0x90;
+
+    /**
+     * {@link model.Game} to paint.
+     */
+    private Game game;
+
+    /**
+     * Edge length of a cell in pixels.
+     */
+    private int cellSize;
+
+    /**
+     * Probabilities of the mines shown as heatmap, null if it is switched off.
+     */
+    private Probabilities probabilities;
+
+    /**
+     * Cells which changed since the last frame.
+     */
+    private DirtyRegion dirtyRegion;
+
+    /**
+     * Paints the next frame.
+     */
+    private Timer frameTimer;
+
+    /**
+     * Opened cells which are not revealed yet, one bit per cell. Created with the first large cascade.
+     */
+    private long[] pendingReveal;
+
+    /**
+     * Deltas of large cascades which are revealed frame by frame, and the position in the first one.
+     */
+    private final ArrayDeque<BoardDelta> revealQueue = new ArrayDeque<BoardDelta>();
+    private int revealPosition;
+
+    /**
+     * Executes the moves of the user, in the given order.
+     */
+    private transient Executor moveExecutor;
+
+    /**
+     * Class constructor.
+     */
+    public BoardCanvas() {
+        this.cellSize = 1;
+        this.setOpaque(true);
+        this.setMoveExecutor(null);
+
+        this.frameTimer = new Timer(FRAME_DELAY, new ActionListener() {
+            @Override
+            public void actionPerformed(ActionEvent actionEvent) {
+                paintDirtyRegion();
+            }
+        });
+        this.frameTimer.setRepeats(false);
+
+        this.addMouseListener(new MouseAdapter() {
+            @Override
+            public void mouseClicked(MouseEvent mouseEvent) {
+                final Game target = game;
+                if (null == target)
+                    return;
+
+                // Find the clicked cell
+                final int x = mouseEvent.getY() / cellSize;
+                final int y = mouseEvent.getX() / cellSize;
+                if (x < 0 || y < 0 || x >= target.getHeight() || y >= target.getWidth())
+                    return;
+
+                // When the user used the right mousebutton the clicked {@link model.Field} will be marked
+                if (SwingUtilities.isRightMouseButton(mouseEvent)) {
+                    moveExecutor.execute(new Runnable() {
+                        @Override
+                        public void run() {
+                            target.markField(x, y);
+                        }
+                    });
+                // When the user used the left mousebutton the clicked {@link model.Field} will be opened
+                } else if (SwingUtilities.isLeftMouseButton(mouseEvent)) {
+                    moveExecutor.execute(new Runnable() {
+                        @Override
+                        public void run() {
+                            target.openField(x, y);
+                        }
+                    });
+                }
+            }
+        });
+    }
+
+    /**
+     * Sets the {@link java.util.concurrent.Executor} which executes the moves of the user. It has to execute them one
+     * after another in the order they were submitted.
+     *
+     * @param moveExecutor  {@link java.util.concurrent.Executor} to use, null to execute the moves on the Event
+     *                      Dispatch Thread.
+     */
+    public void setMoveExecutor(Executor moveExecutor) {
+        if (null == moveExecutor) {
+            moveExecutor = new Executor() {
+                @Override
+                public void execute(Runnable runnable) {
+                    runnable.run();
+                }
+            };
+        }
+        this.moveExecutor = moveExecutor;
+    }
+
+    /**
+     * Shows the given {@link model.Game} and listens to its changes. The previous {@link model.Game} is released.
+     *
+     * @param game          {@link model.Game} to show, may be null.
+     * @param cellSize      {@link int} edge length of a cell in pixels.
+     */
+    public void setGame(Game game, int cellSize) {
+        if (null != this.game)
+            this.game.removeBoardListener(this);
+
+        this.game = game;
+        this.probabilities = null;
+        this.pendingReveal = null;
+        this.revealQueue.clear();
+        this.revealPosition = 0;
+
+        if (null != this.game) {
+            this.dirtyRegion = new DirtyRegion(this.game.getHeight(), this.game.getWidth());
+            this.game.addBoardListener(this);
+        }
+
+        this.setCellSize(cellSize);
+    }
+
+    /**
+     * Changes the edge length of the cells, i.e. zooms in or out.
+     *
+     * @param cellSize      {@link int} edge length of a cell in pixels.
+     */
+    public void setCellSize(int cellSize) {
+        this.cellSize = Math.max(MIN_CELL_SIZE, Math.min(MAX_CELL_SIZE, cellSize));
+
+        if (null != this.game) {
+            long width = (long) this.game.getWidth() * this.cellSize;
+            long height = (long) this.game.getHeight() * this.cellSize;
+            this.setPreferredSize(new Dimension((int) Math.min(Integer.MAX_VALUE, width),
+                    (int) Math.min(Integer.MAX_VALUE, height)));
+
+            // Calculate fontSize, half of the cell size in points at 96 dpi
+            int fontSize = (int) Math.round(this.cellSize / 2.0 * 96 / 72.0);
+            this.setFont(new Font("serif", Font.BOLD, fontSize));
+        }
+
+        this.revalidate();
+        this.repaint();
+    }
+
+    public Game getGame() {
+        return game;
+    }
+
+    /**
+     * Shows the given probabilities as heatmap over the closed cells.
+     *
+     * @param probabilities {@link model.solver.Probabilities} of the shown {@link model.Game}, null to hide the
+     *                      heatmap.
+     */
+    public void setProbabilities(Probabilities probabilities) {
+        this.probabilities = probabilities;
+        this.repaint();
+    }
+
+    public int getCellSize() {
+        return cellSize;
+    }
+
+    /**
+     * Adds the cells listed in the given {@link model.BoardDelta} to the {@link view.DirtyRegion} and schedules the
+     * next frame. If it is called on another thread the {@link model.BoardDelta} is passed to the Event Dispatch
+     * Thread.
+     *
+     * @param delta         {@link model.BoardDelta} describing the changed cells.
+     */
+    @Override
+    public void boardChanged(final BoardDelta delta) {
+        if (!SwingUtilities.isEventDispatchThread()) {
+            final Game source = this.game;
+            SwingUtilities.invokeLater(new Runnable() {
+                @Override
+                public void run() {
+                    // Ignore changes of a {@link model.Game} which is not shown anymore
+                    if (source == game)
+                        boardChanged(delta);
+                }
+            });
+            return;
+        }
+
+        DirtyRegion dirtyRegion = this.dirtyRegion;
+        if (null == dirtyRegion)
+            return;
+
+        if (delta.isFull()) {
+            // Everything is painted from the {@link model.Board} again
+            this.revealQueue.clear();
+            this.revealPosition = 0;
+            if (null != this.pendingReveal)
+                Arrays.fill(this.pendingReveal, 0L);
+            dirtyRegion.addAll();
+        } else if (BoardDelta.Action.OPEN == delta.getAction() && delta.size() > REVEAL_BUDGET) {
+            // Hide the opened cells until the wavefront reaches them
+            if (null == this.pendingReveal)
+                this.pendingReveal = new long[(this.game.getBoard().getCellCount() + 63) >>> 6];
+            for (int n = 0; n < delta.size(); n++) {
+                int index = delta.getCell(n);
+                this.pendingReveal[index >>> 6] |= 1L << index;
+            }
+            this.revealQueue.add(delta);
+            this.revealNext();
+        } else {
+            // Each cell is opened only once, so small changes don't have to wait for the wavefront
+            Board board = this.game.getBoard();
+            for (int n = 0; n < delta.size(); n++) {
+                int index = delta.getCell(n);
+                dirtyRegion.add(board.getX(index), board.getY(index));
+            }
+        }
+
+        if (!this.frameTimer.isRunning())
+            this.frameTimer.start();
+    }
+
+    /**
+     * Reveals the next {@link view.BoardCanvas#REVEAL_BUDGET} cells of the queued cascades.
+     */
+    private void revealNext() {
+        Board board = this.game.getBoard();
+        int budget = REVEAL_BUDGET;
+        while (budget > 0 && !this.revealQueue.isEmpty()) {
+            BoardDelta delta = this.revealQueue.peek();
+            int end = Math.min(delta.size(), this.revealPosition + budget);
+            for (int n = this.revealPosition; n < end; n++) {
+                int index = delta.getCell(n);
+                this.pendingReveal[index >>> 6] &= ~(1L << index);
+                this.dirtyRegion.add(board.getX(index), board.getY(index));
+            }
+            budget -= end - this.revealPosition;
+            this.revealPosition = end;
+
+            if (this.revealPosition == delta.size()) {
+                this.revealQueue.poll();
+                this.revealPosition = 0;
+            }
+        }
+    }
+
+    /**
+     * @param index         {@link int} index of a cell.
+     * @return              {@link byte} state of the cell as it is shown, opened cells are closed until revealed.
+     */
+    private byte getShownState(int index) {
+        byte state = this.game.getBoard().getState(index);
+        if (null != this.pendingReveal && 0 != (this.pendingReveal[index >>> 6] & (1L << index)))
+            state &= ~Board.OPEN;
+        return state;
+    }
+
+    /**
+     * Repaints the {@link view.DirtyRegion} and reveals the next part of the queued cascades for the next frame. A few
+     * small rectangles are painted one by one, otherwise everything inside their bounds is painted in one pass.
+     */
+    private void paintDirtyRegion() {
+        if (null == this.dirtyRegion)
+            return;
+
+        List<Rectangle> rectangles = this.dirtyRegion.drain(this.cellSize);
+
+        // Continue the wavefront in the next frame
+        if (!this.revealQueue.isEmpty()) {
+            this.revealNext();
+            this.frameTimer.restart();
+        }
+
+        if (null == rectangles) {
+            this.repaint();
+            return;
+        }
+        if (rectangles.isEmpty())
+            return;
+
+        Rectangle bounds = new Rectangle(rectangles.get(0));
+        long area = 0;
+        for (Rectangle rectangle : rectangles) {
+            bounds.add(rectangle);
+            area += (long) rectangle.width * rectangle.height;
+        }
+
+        if (rectangles.size() <= MAX_DIRTY_RECTANGLES && 2 * area < (long) bounds.width * bounds.height) {
+            for (Rectangle rectangle : rectangles)
+                this.paintImmediately(rectangle);
+        } else {
+            this.repaint(bounds);
+        }
+    }
+
+    /**
+     * Paints all cells inside the clip.
+     *
+     * @param g             {@link java.awt.Graphics} to paint with.
+     */
+    @Override
+    protected void paintComponent(Graphics g) {
+        Rectangle clip = g.getClipBounds();
+        if (null == clip)
+            clip = new Rectangle(0, 0, this.getWidth(), this.getHeight());
+
+        g.setColor(this.getBackground());
+        g.fillRect(clip.x, clip.y, clip.width, clip.height);
+
+        if (null == this.game)
+            return;
+
+        // Visible cells
+        int xMin = Math.max(0, clip.y / this.cellSize);
+        int xMax = Math.min(this.game.getHeight() - 1, (clip.y + clip.height - 1) / this.cellSize);
+        int yMin = Math.max(0, clip.x / this.cellSize);
+        int yMax = Math.min(this.game.getWidth() - 1, (clip.x + clip.width - 1) / this.cellSize);
+        if (xMin > xMax || yMin > yMax)
+            return;
+
+        if (this.cellSize < MIN_DETAILED_CELL_SIZE)
+            this.paintPixels(g, xMin, xMax, yMin, yMax);
+        else
+            this.paintCells(g, xMin, xMax, yMin, yMax);
+    }
+
+    /**
+     * Paints the given range of cells with pictures and numbers.
+     */
+    private void paintCells(Graphics g, int xMin, int xMax, int yMin, int yMax) {
+        Board board = this.game.getBoard();
+        Color background = UIManager.getColor("Button.background");
+        Color shadow = UIManager.getColor("Button.shadow");
+        Color highlight = UIManager.getColor("Button.highlight");
+        FontMetrics metrics = g.getFontMetrics(this.getFont());
+        g.setFont(this.getFont());
+
+        // Pictures in the size of a cell
+        double scale = SpriteCache.getScale(g);
+        Image mineImage = SpriteCache.get("mine.png", this.cellSize, scale);
+        Image flagImage = SpriteCache.get("flag.png", this.cellSize, scale);
+        Image questionmarkImage = SpriteCache.get("questionmark.png", this.cellSize, scale);
+
+        for (int x = xMin; x <= xMax; x++) {
+            for (int y = yMin; y <= yMax; y++) {
+                int index = board.index(x, y);
+                byte state = this.getShownState(index);
+                int left = y * this.cellSize;
+                int top = x * this.cellSize;
+
+                // Paint the cell like a {@link javax.swing.JButton}
+                g.setColor(background);
+                g.fillRect(left, top, this.cellSize, this.cellSize);
+                g.setColor(highlight);
+                g.drawLine(left, top, left + this.cellSize - 1, top);
+                g.drawLine(left, top, left, top + this.cellSize - 1);
+                g.setColor(shadow);
+                g.drawLine(left, top + this.cellSize - 1, left + this.cellSize - 1, top + this.cellSize - 1);
+                g.drawLine(left + this.cellSize - 1, top, left + this.cellSize - 1, top + this.cellSize - 1);
+
+                boolean open = 0 != (state & Board.OPEN);
+                Image image = null;
+                if (open && 0 != (state & Board.MINE))
+                    image = mineImage;
+                else if (0 != (state & Board.MARKED))
+                    image = flagImage;
+                else if (!open)
+                    image = questionmarkImage;
+
+                if (null != image) {
+                    g.drawImage(image, left, top, this.cellSize, this.cellSize, null);
+                    int tint = this.getTint(board, index, state);
+                    if (0 != tint) {
+                        g.setColor(new Color(tint, true));
+                        g.fillRect(left, top, this.cellSize, this.cellSize);
+                    }
+                } else {
+                    int amountNeighborMines = board.getNeighborMines(index);
+                    if (amountNeighborMines > 0) {
+                        String caption = Integer.toString(amountNeighborMines);
+                        g.setColor(NUMBER_COLORS[amountNeighborMines]);
+                        g.drawString(caption, left + (this.cellSize - metrics.stringWidth(caption)) / 2,
+                                top + this.cellSize - metrics.getDescent());
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Paints the given range of cells as plain colored pixels.
+     */
+    private void paintPixels(Graphics g, int xMin, int xMax, int yMin, int yMax) {
+        Board board = this.game.getBoard();
+        int rows = xMax - xMin + 1;
+        int columns = yMax - yMin + 1;
+        BufferedImage image = new BufferedImage(columns, rows, BufferedImage.TYPE_INT_ARGB);
+        int[] pixels = ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
+
+        for (int x = xMin; x <= xMax; x++) {
+            int offset = (x - xMin) * columns;
+            for (int y = yMin; y <= yMax; y++) {
+                int index = board.index(x, y);
+                byte state = this.getShownState(index);
+                int color = pixelColor(state, board.getNeighborMines(index));
+                int tint = this.getTint(board, index, state);
+                pixels[offset + y - yMin] = 0 == tint ? color : blend(color, tint);
+            }
+        }
+
+        g.drawImage(image, yMin * this.cellSize, xMin * this.cellSize,
+                columns * this.cellSize, rows * this.cellSize, null);
+    }
+
+    /**
+     * Selects the tint of a cell in the heatmap.
+     *
+     * @param board {@link model.Board} of the cell.
+     * @param index {@link int} index of the cell.
+     * @param state {@link byte} shown state of the cell.
+     * @return {@link int} ARGB color, 0 if the cell is not tinted.
+     */
+    private int getTint(Board board, int index, byte state) {
+        if (null == this.probabilities || 0 != (state & (Board.OPEN | Board.MARKED)) || board.isOpen(index))
+            return 0;
+        float probability = this.probabilities.getProbability(index);
+        if (Float.isNaN(probability))
+            return 0;
+        return heatColor(probability);
+    }
+
+    /**
+     * Maps a probability to a translucent color from green to red.
+     *
+     * @param probability {@link float} probability that a cell is a mine.
+     * @return {@link int} ARGB color.
+     */
+    static int heatColor(float probability) {
+        int red = Math.round(255 * Math.max(0f, Math.min(1f, probability)));
+        return HEATMAP_ALPHA << 24 | red << 16 | (255 - red) << 8;
+    }
+
+    /**
+     * Paints the given translucent color over the given opaque one.
+     *
+     * @param rgb  {@link int} opaque ARGB color.
+     * @param argb {@link int} translucent ARGB color.
+     * @return {@link int} opaque ARGB color.
+     */
+    static int blend(int rgb, int argb) {
+        int alpha = argb >>> 24;
+        int result = 0xFF000000;
+        for (int shift = 0; shift < 24; shift += 8) {
+            int below = (rgb >>> shift) & 0xFF;
+            int above = (argb >>> shift) & 0xFF;
+            result |= ((above * alpha + below * (255 - alpha)) / 255) << shift;
+        }
+        return result;
+    }
+
+    /**
+     * Selects the color of a cell in the plain pixel mode.
+     *
+     * @param state                 {@link byte} state of the cell, see {@link model.Board#getState}.
+     * @param amountNeighborMines   {@link int} how many mines border on the cell?
+     * @return                      {@link int} ARGB color.
+     */
+    static int pixelColor(byte state, int amountNeighborMines) {
+        boolean open = 0 != (state & Board.OPEN);
+        if (open && 0 != (state & Board.MINE))
+            return EXPLODED_RGB;
+        if (0 != (state & Board.MARKED))
+            return MARKED_RGB;
+        if (!open)
+            return CLOSED_RGB;
+        if (0 == amountNeighborMines)
+            return OPEN_RGB;
+        return NUMBER_COLORS[amountNeighborMines].getRGB();
+    }
+}
@@ -22,6 +22,8 @@ package view;
 import controller.Controller;
 
 import javax.swing.*;
+import javax.swing.event.ChangeEvent;
+import javax.swing.event.ChangeListener;
 import java.awt.*;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
@@ -34,7 +36,8 @@ import java.awt.event.ActionListener;
  * Class: ControlInterface
  * This {@link javax.swing.JPanel} represents the control panel of minesweeper. It contains a game clock based on a
  * {@link javax.swing.Timer} and several {@link javax.swing.JButton}s which allow you to reset, save or load the
- * {@link model.Game} or change its properties.
+ * {@link model.Game}, undo and redo moves, get hints, show the probabilities of the mines or change its properties. A
+ * playback strip lets you watch the moves of the current round again.
  *
  * @author Mark Alexander Dietrich
  *
@@ -62,6 +65,42 @@ public class ControlInterface extends JPanel {
     private JButton loadButton;
     private JButton saveButton;
     private JButton propertyButton;
+    private JButton undoButton;
+    private JButton redoButton;
+    private JButton hintButton;
+    private JToggleButton autoSolveButton;
+    private JToggleButton gaussianButton;
+    private JToggleButton heatmapButton;
+    private JButton replayButton;
+
+    // Playback strip
+    private JButton firstButton;
+    private JButton previousButton;
+    private JButton playButton;
+    private JButton nextButton;
+    private JButton lastButton;
+    private JSlider positionSlider;
+    private JLabel positionLabel;
+
+    /**
+     * Performs the next move of the playback.
+     */
+    private Timer playbackTimer;
+
+    /**
+     * Delay between two moves of the playback in milliseconds.
+     */
+    private static final int PLAYBACK_DELAY = 200;
+
+    /**
+     * Choice of the game size which starts an {@link model.EndlessBoard}.
+     */
+    private static final String ENDLESS = "Endless";
+
+    /**
+     * Is the {@link javax.swing.JSlider} moved by {@link view.ControlInterface#setPlaybackPosition}?
+     */
+    private boolean updatingSlider;
 
     /**
      * {@link javax.swing.Timer} parameters.
@@ -162,7 +201,7 @@ public class ControlInterface extends JPanel {
         propertyButton.addActionListener(new ActionListener() {
             @Override
             public void actionPerformed(ActionEvent actionEvent) {
-                final String[] size = { "49", "64", "81", "100", "121", "144", "169", "196" };
+                final String[] size = { "49", "64", "81", "100", "121", "144", "169", "196", ENDLESS };
                 final String[] pMine = {"10%", "15%", "25%", "40%", "60%", "85%"};
 
                 String gameSize = (String) JOptionPane.showInputDialog(null,
@@ -181,12 +220,6 @@ public class ControlInterface extends JPanel {
                         pMine,
                         pMine[0]);
 
-                // Calculate size of the new pitch
-                int fieldSize = (int) Math.pow(controller.getGame().getHeight(), 2);
-
-                if(null != gameSize)
-                   fieldSize = Integer.parseInt(gameSize);
-
                 // Calculate probability to hit a mine for the new {@link model.GAme}
                 double probability = controller.getGame().getpMine();
 
@@ -195,15 +228,245 @@ public class ControlInterface extends JPanel {
                     probability = (double) Integer.parseInt(probabilityMine) / 100;
                 }
 
+                if (ENDLESS.equals(gameSize)) {
+                    controller.newEndlessGame(probability);
+                    return;
+                }
+
+                // Calculate size of the new pitch
+                int fieldSize = (int) Math.pow(controller.getGame().getHeight(), 2);
+
+                if(null != gameSize)
+                   fieldSize = Integer.parseInt(gameSize);
+
                 // Replace properties of the {@link model.Game} with the entered ones
                 controller.changeGamePorperties(fieldSize, probability);
             }
         });
 
+        undoButton = new JButton("Undo");
+        undoButton.addActionListener(new ActionListener() {
+            @Override
+            public void actionPerformed(ActionEvent actionEvent) {
+                // Take back the last move
+                controller.undoMove();
+            }
+        });
+        redoButton = new JButton("Redo");
+        redoButton.addActionListener(new ActionListener() {
+            @Override
+            public void actionPerformed(ActionEvent actionEvent) {
+                // Perform the last undone move again
+                controller.redoMove();
+            }
+        });
+
+        hintButton = new JButton("Hint");
+        hintButton.addActionListener(new ActionListener() {
+            @Override
+            public void actionPerformed(ActionEvent actionEvent) {
+                // Play one cell which can be deduced
+                controller.hint();
+            }
+        });
+        autoSolveButton = new JToggleButton("Auto-solve");
+        autoSolveButton.addActionListener(new ActionListener() {
+            @Override
+            public void actionPerformed(ActionEvent actionEvent) {
+                // Play every cell which can be deduced after each move
+                controller.setAutoSolving(autoSolveButton.isSelected());
+            }
+        });
+        gaussianButton = new JToggleButton("Gaussian");
+        gaussianButton.addActionListener(new ActionListener() {
+            @Override
+            public void actionPerformed(ActionEvent actionEvent) {
+                // Deduce by elimination over whole components instead of the rules
+                controller.setGaussianSolving(gaussianButton.isSelected());
+            }
+        });
+        heatmapButton = new JToggleButton("Heatmap");
+        heatmapButton.addActionListener(new ActionListener() {
+            @Override
+            public void actionPerformed(ActionEvent actionEvent) {
+                // Tint the closed cells by the probability that they are mines
+                controller.setHeatmap(heatmapButton.isSelected());
+            }
+        });
+
+        replayButton = new JButton("Replay");
+        replayButton.addActionListener(new ActionListener() {
+            @Override
+            public void actionPerformed(ActionEvent actionEvent) {
+                // Switch between playback and {@link model.Game}
+                if (controller.isReplaying())
+                    controller.stopReplay();
+                else
+                    controller.startReplay();
+            }
+        });
+
+        this.initPlayback(controller);
+
         // Add initialized {@link java.awt.Component}s to this {@link javax.swing.JPanel}
         this.initPanel();
     }
 
+    /**
+     * Initializes the {@link java.awt.Component}s of the playback strip. They are disabled until a playback is shown.
+     *
+     * @param controller            {@link controller.Controller} to work with.
+     */
+    private void initPlayback(final Controller controller) {
+        playbackTimer = new Timer(PLAYBACK_DELAY, new ActionListener() {
+            @Override
+            public void actionPerformed(ActionEvent actionEvent) {
+                if (positionSlider.getValue() >= positionSlider.getMaximum())
+                    setPlaying(false);
+                else
+                    controller.seekReplay(positionSlider.getValue() + 1);
+            }
+        });
+
+        firstButton = new JButton("|<");
+        firstButton.addActionListener(new ActionListener() {
+            @Override
+            public void actionPerformed(ActionEvent actionEvent) {
+                controller.seekReplay(0);
+            }
+        });
+        previousButton = new JButton("<");
+        previousButton.addActionListener(new ActionListener() {
+            @Override
+            public void actionPerformed(ActionEvent actionEvent) {
+                controller.seekReplay(positionSlider.getValue() - 1);
+            }
+        });
+        playButton = new JButton("Play");
+        playButton.addActionListener(new ActionListener() {
+            @Override
+            public void actionPerformed(ActionEvent actionEvent) {
+                setPlaying(!playbackTimer.isRunning());
+            }
+        });
+        nextButton = new JButton(">");
+        nextButton.addActionListener(new ActionListener() {
+            @Override
+            public void actionPerformed(ActionEvent actionEvent) {
+                controller.seekReplay(positionSlider.getValue() + 1);
+            }
+        });
+        lastButton = new JButton(">|");
+        lastButton.addActionListener(new ActionListener() {
+            @Override
+            public void actionPerformed(ActionEvent actionEvent) {
+                controller.seekReplay(positionSlider.getMaximum());
+            }
+        });
+
+        positionSlider = new JSlider(0, 0, 0);
+        positionSlider.addChangeListener(new ChangeListener() {
+            @Override
+            public void stateChanged(ChangeEvent changeEvent) {
+                if (!updatingSlider)
+                    controller.seekReplay(positionSlider.getValue());
+            }
+        });
+        positionLabel = new JLabel("0 / 0");
+
+        this.setPlaybackEnabled(false);
+    }
+
+    /**
+     * Enables the playback strip for a recording of the given length.
+     *
+     * @param moveCount         {@link int} amount of recorded moves.
+     * @param position          {@link int} current position of the playback.
+     */
+    public void showPlayback(int moveCount, int position) {
+        this.updatingSlider = true;
+        this.positionSlider.setMaximum(moveCount);
+        this.updatingSlider = false;
+        this.setPlaybackPosition(position);
+        this.setPlaybackEnabled(true);
+        this.replayButton.setText("Back to game");
+    }
+
+    /**
+     * Stops and disables the playback strip.
+     */
+    public void hidePlayback() {
+        this.setPlaying(false);
+        this.setPlaybackEnabled(false);
+        this.replayButton.setText("Replay");
+    }
+
+    /**
+     * Shows the current position of the playback.
+     *
+     * @param position          {@link int} amount of moves performed on the playback.
+     */
+    public void setPlaybackPosition(int position) {
+        this.updatingSlider = true;
+        this.positionSlider.setValue(position);
+        this.updatingSlider = false;
+        this.positionLabel.setText(position + " / " + this.positionSlider.getMaximum());
+    }
+
+    /**
+     * Starts or pauses the playback.
+     *
+     * @param playing           {@link boolean} should the moves be played one after another?
+     */
+    private void setPlaying(boolean playing) {
+        if (playing) {
+            this.playbackTimer.start();
+            this.playButton.setText("Pause");
+        } else {
+            this.playbackTimer.stop();
+            this.playButton.setText("Play");
+        }
+    }
+
+    /**
+     * Disables the {@link javax.swing.JButton}s which need a {@link model.Game} while an {@link model.EndlessBoard} is
+     * shown, or enables them again.
+     *
+     * @param endless           {@link boolean} is an {@link model.EndlessBoard} shown?
+     */
+    public void setEndless(boolean endless) {
+        this.saveButton.setEnabled(!endless);
+        this.undoButton.setEnabled(!endless);
+        this.redoButton.setEnabled(!endless);
+        this.hintButton.setEnabled(!endless);
+        this.autoSolveButton.setEnabled(!endless);
+        this.gaussianButton.setEnabled(!endless);
+        this.heatmapButton.setEnabled(!endless);
+        this.replayButton.setEnabled(!endless);
+    }
+
+    /**
+     * Enables or disables the playback strip. The other {@link javax.swing.JButton}s can't be used meanwhile.
+     */
+    private void setPlaybackEnabled(boolean enabled) {
+        this.firstButton.setEnabled(enabled);
+        this.previousButton.setEnabled(enabled);
+        this.playButton.setEnabled(enabled);
+        this.nextButton.setEnabled(enabled);
+        this.lastButton.setEnabled(enabled);
+        this.positionSlider.setEnabled(enabled);
+        this.resetButton.setEnabled(!enabled);
+        this.loadButton.setEnabled(!enabled);
+        this.saveButton.setEnabled(!enabled);
+        this.propertyButton.setEnabled(!enabled);
+        this.undoButton.setEnabled(!enabled);
+        this.redoButton.setEnabled(!enabled);
+        this.hintButton.setEnabled(!enabled);
+        this.autoSolveButton.setEnabled(!enabled);
+        this.gaussianButton.setEnabled(!enabled);
+        this.heatmapButton.setEnabled(!enabled);
+    }
+
     /**
      * Crop the {@link java.lang.String} entered in the {@link javax.swing.JOptionPane} that you can calculate with it.
      *
@@ -227,6 +490,23 @@ public class ControlInterface extends JPanel {
         this.add(loadButton);
         this.add(saveButton);
         this.add(propertyButton);
+        this.add(undoButton);
+        this.add(redoButton);
+        this.add(hintButton);
+        this.add(autoSolveButton);
+        this.add(gaussianButton);
+        this.add(heatmapButton);
+        this.add(replayButton);
+
+        JPanel playbackPanel = new JPanel();
+        playbackPanel.add(firstButton);
+        playbackPanel.add(previousButton);
+        playbackPanel.add(playButton);
+        playbackPanel.add(nextButton);
+        playbackPanel.add(lastButton);
+        playbackPanel.add(positionSlider);
+        playbackPanel.add(positionLabel);
+        this.add(playbackPanel);
     }
 
     /**
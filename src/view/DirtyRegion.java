@@ -0,0 +1,179 @@
+/*
+ * (C) Copyright 2014 Mark Alexander Dietrich <mark.dietrich93@gmail.com>.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Contributors:
+ *     Mark Alexander Dietrich
+ */
+
+package view;
+
+import java.awt.*;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Created by Mark Alexander Dietrich on 06/11/14.
+ *
+ * File: DirtyRegion.java
+ *
+ * Class: DirtyRegion
+ * Collects changed cells of a pitch until the next frame is painted. The pitch is divided into tiles of
+ * {@link view.DirtyRegion#TILE_SIZE} x {@link view.DirtyRegion#TILE_SIZE} cells, a changed cell only marks its tile.
+ * When the frame is painted the marked tiles are merged into a few rectangles: neighbouring tiles of a row form a run,
+ * and equal runs of consecutive rows form one rectangle.
+ *
+ * @author Mark Alexander Dietrich
+ *
+ * @see view.BoardCanvas
+ */
+public class DirtyRegion {
+
+    /**
+     * Edge length of a tile in cells.
+     */
+    public static final int TILE_SIZE = 16;
+
+    // Amount of tiles
+    private final int tileRows;
+    private final int tileColumns;
+
+    /**
+     * One bit per tile, row by row.
+     */
+    private final long[] tiles;
+
+    // Range of tile rows containing marked tiles
+    private int firstRow;
+    private int lastRow;
+
+    /**
+     * Has every cell changed?
+     */
+    private boolean full;
+
+    /**
+     * Class constructor.
+     *
+     * @param height    {@link int} Height of the pitch in cells.
+     * @param width     {@link int} Width of the pitch in cells.
+     */
+    public DirtyRegion(int height, int width) {
+        this.tileRows = (height + TILE_SIZE - 1) / TILE_SIZE;
+        this.tileColumns = (width + TILE_SIZE - 1) / TILE_SIZE;
+        this.tiles = new long[(int) (((long) this.tileRows * this.tileColumns + 63) >>> 6)];
+        this.clear();
+    }
+
+    /**
+     * Marks the tile of the given cell.
+     *
+     * @param x         {@link int} x coordinate of the cell.
+     * @param y         {@link int} y coordinate of the cell.
+     */
+    public synchronized void add(int x, int y) {
+        int row = x / TILE_SIZE;
+        int tile = row * this.tileColumns + y / TILE_SIZE;
+        this.tiles[tile >>> 6] |= 1L << tile;
+        this.firstRow = Math.min(this.firstRow, row);
+        this.lastRow = Math.max(this.lastRow, row);
+    }
+
+    /**
+     * Marks every cell.
+     */
+    public synchronized void addAll() {
+        this.full = true;
+    }
+
+    /**
+     * Merges the marked tiles into rectangles and clears this {@link view.DirtyRegion}.
+     *
+     * @param cellSize  {@link int} edge length of a cell in pixels.
+     * @return          {@link java.util.List} of {@link java.awt.Rectangle}s in pixels, null if every cell has changed.
+     */
+    public synchronized List<Rectangle> drain(int cellSize) {
+        if (this.full) {
+            this.clear();
+            return null;
+        }
+
+        int tilePixels = TILE_SIZE * cellSize;
+        List<Rectangle> result = new ArrayList<Rectangle>();
+
+        // Rectangles which might still grow downwards, one per run of the previous row
+        List<Rectangle> growing = new ArrayList<Rectangle>();
+
+        for (int row = this.firstRow; row <= this.lastRow + 1; row++) {
+            List<Rectangle> next = new ArrayList<Rectangle>();
+            int column = 0;
+            while (row <= this.lastRow && column < this.tileColumns) {
+                if (!this.isMarked(row, column)) {
+                    column++;
+                    continue;
+                }
+                int start = column;
+                while (column < this.tileColumns && this.isMarked(row, column))
+                    column++;
+
+                // Continue a rectangle of the previous row with the same run or start a new one
+                Rectangle rectangle = null;
+                for (Rectangle candidate : growing) {
+                    if (candidate.x == start * tilePixels && candidate.width == (column - start) * tilePixels) {
+                        rectangle = candidate;
+                        break;
+                    }
+                }
+                if (null != rectangle) {
+                    growing.remove(rectangle);
+                    rectangle.height += tilePixels;
+                } else {
+                    rectangle = new Rectangle(start * tilePixels, row * tilePixels, (column - start) * tilePixels,
+                            tilePixels);
+                }
+                next.add(rectangle);
+            }
+            // Rectangles which were not continued are finished
+            result.addAll(growing);
+            growing = next;
+        }
+
+        this.clear();
+        return result;
+    }
+
+    /**
+     * @return {@link boolean} is no tile marked?
+     */
+    public synchronized boolean isEmpty() {
+        return !this.full && this.firstRow > this.lastRow;
+    }
+
+    private boolean isMarked(int row, int column) {
+        int tile = row * this.tileColumns + column;
+        return 0 != (this.tiles[tile >>> 6] & (1L << tile));
+    }
+
+    private void clear() {
+        if (this.firstRow <= this.lastRow) {
+            int from = (this.firstRow * this.tileColumns) >>> 6;
+            int to = ((this.lastRow + 1) * this.tileColumns + 63) >>> 6;
+            for (int w = from; w < to && w < this.tiles.length; w++)
+                this.tiles[w] = 0L;
+        }
+        this.firstRow = Integer.MAX_VALUE;
+        this.lastRow = -1;
+        this.full = false;
+    }
+}
@@ -0,0 +1,334 @@
+/*
+ * (C) Copyright 2014 Mark Alexander Dietrich <mark.dietrich93@gmail.com>.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Contributors:
+ *     Mark Alexander Dietrich
+ */
+
+package view;
+
+import model.Board;
+import model.EndlessBoard;
+
+import javax.swing.*;
+import java.awt.*;
+import java.awt.event.MouseAdapter;
+import java.awt.event.MouseEvent;
+import java.awt.event.MouseWheelEvent;
+import java.io.UncheckedIOException;
+import java.util.concurrent.Executor;
+
+/**
+ * Created by Mark Alexander Dietrich on 06/11/14.
+ *
+ * File: EndlessCanvas.java
+ *
+ * Class: EndlessCanvas
+ * A {@link javax.swing.JComponent} which shows a window onto an {@link model.EndlessBoard}. The cells look like those
+ * of the {@link view.BoardCanvas}. Cell (0, 0) is in the middle at first, dragging with the middle mousebutton or the
+ * mouse wheel moves the window, together with the shift key the wheel moves it sideways. Only the visible cells are
+ * read, so the chunks of the {@link model.EndlessBoard} are generated as soon as the window reaches them.
+ * <p/>
+ * Like those of the {@link view.BoardCanvas} the moves are handed to an {@link java.util.concurrent.Executor}. A cascade
+ * is opened in steps of {@link view.EndlessCanvas#CASCADE_STEP} cells and the window is repainted after each step via
+ * {@link javax.swing.SwingUtilities#invokeLater}, the Event Dispatch Thread reads the cells in between.
+ *
+ * @author Mark Alexander Dietrich
+ *
+ * @see model.EndlessBoard
+ * @see view.BoardCanvas
+ */
+public class EndlessCanvas extends JComponent {
+
+    /**
+     * {@code serialVersionUID}, which is used during deserialization to verify that the sender and receiver of a
+     * serialized object have loaded classes for that object that are compatible with respect to serialization. It has
+     * to be {@link final} and {@link long}.
+     *
+     * @see java.io.ObjectOutputStream
+     * @see java.io.ObjectInputStream
+     * @see final
+     * @see long
+     */
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Edge length of a cell in pixels.
+     */
+    private static final int CELL_SIZE = 24;
+
+    /**
+     * How many queued cells of a cascade are expanded before the window is repainted.
+     */
+    private static final int CASCADE_STEP = 4096;
+
+    /**
+     * {@link model.EndlessBoard} shown by this {@link view.EndlessCanvas}, null if there is none.
+     */
+    private transient EndlessBoard board;
+
+    /**
+     * Executes the moves of the user, in the given order.
+     */
+    private transient Executor moveExecutor;
+
+    /**
+     * Position of the upper left corner of the window in pixels, cell (0, 0) starts at (0, 0).
+     */
+    private long left;
+    private long top;
+
+    /**
+     * Has the window been centered on cell (0, 0) yet? It needs the size of this {@link javax.swing.JComponent}.
+     */
+    private boolean centered;
+
+    /**
+     * Class constructor.
+     */
+    public EndlessCanvas() {
+        this.setOpaque(true);
+        this.setMoveExecutor(null);
+
+        MouseAdapter mouseAdapter = new MouseAdapter() {
+
+            /**
+             * Where the middle mousebutton was pressed.
+             */
+            private Point dragStart;
+
+            @Override
+            public void mouseClicked(MouseEvent mouseEvent) {
+                final EndlessBoard target = board;
+                if (null == target || target.isEnded())
+                    return;
+
+                // Find the clicked cell
+                final long x = Math.floorDiv(top + mouseEvent.getY(), (long) CELL_SIZE);
+                final long y = Math.floorDiv(left + mouseEvent.getX(), (long) CELL_SIZE);
+
+                // When the user used the right mousebutton the clicked cell will be marked
+                if (SwingUtilities.isRightMouseButton(mouseEvent)) {
+                    moveExecutor.execute(new Runnable() {
+                        @Override
+                        public void run() {
+                            target.markField(x, y);
+                            repaintLater();
+                        }
+                    });
+                // When the user used the left mousebutton the clicked cell will be opened
+                } else if (SwingUtilities.isLeftMouseButton(mouseEvent)) {
+                    moveExecutor.execute(new Runnable() {
+                        @Override
+                        public void run() {
+                            open(target, x, y);
+                        }
+                    });
+                }
+            }
+
+            @Override
+            public void mousePressed(MouseEvent mouseEvent) {
+                if (SwingUtilities.isMiddleMouseButton(mouseEvent))
+                    this.dragStart = mouseEvent.getPoint();
+            }
+
+            @Override
+            public void mouseDragged(MouseEvent mouseEvent) {
+                if (null == this.dragStart || !SwingUtilities.isMiddleMouseButton(mouseEvent))
+                    return;
+
+                Point current = mouseEvent.getPoint();
+                moveWindow(this.dragStart.x - current.x, this.dragStart.y - current.y);
+                this.dragStart = current;
+            }
+
+            @Override
+            public void mouseReleased(MouseEvent mouseEvent) {
+                this.dragStart = null;
+            }
+
+            @Override
+            public void mouseWheelMoved(MouseWheelEvent mouseWheelEvent) {
+                int distance = mouseWheelEvent.getWheelRotation() * 3 * CELL_SIZE;
+                if (mouseWheelEvent.isShiftDown())
+                    moveWindow(distance, 0);
+                else
+                    moveWindow(0, distance);
+            }
+        };
+        this.addMouseListener(mouseAdapter);
+        this.addMouseMotionListener(mouseAdapter);
+        this.addMouseWheelListener(mouseAdapter);
+    }
+
+    /**
+     * Shows the given {@link model.EndlessBoard} with cell (0, 0) in the middle.
+     *
+     * @param board         {@link model.EndlessBoard} to show, may be null.
+     */
+    public void setBoard(EndlessBoard board) {
+        this.board = board;
+        this.centered = false;
+        this.repaint();
+    }
+
+    public EndlessBoard getBoard() {
+        return board;
+    }
+
+    /**
+     * Sets the {@link java.util.concurrent.Executor} which executes the moves of the user. It has to execute them one
+     * after another in the order they were submitted.
+     *
+     * @param moveExecutor  {@link java.util.concurrent.Executor} to use, null to execute the moves on the Event
+     *                      Dispatch Thread.
+     */
+    public void setMoveExecutor(Executor moveExecutor) {
+        if (null == moveExecutor) {
+            moveExecutor = new Executor() {
+                @Override
+                public void execute(Runnable runnable) {
+                    runnable.run();
+                }
+            };
+        }
+        this.moveExecutor = moveExecutor;
+    }
+
+    /**
+     * Opens the given cell and expands the cascade step by step, at most until it opened
+     * {@link model.EndlessBoard#MAX_CASCADE} cells. The rest of the cascade stays queued in the
+     * {@link model.EndlessBoard} and is continued by the next move. Executed by the
+     * {@link view.EndlessCanvas#moveExecutor}.
+     *
+     * @param target        {@link model.EndlessBoard} to play on.
+     * @param x             {@link long} x coordinate
+     * @param y             {@link long} y coordinate
+     */
+    private void open(EndlessBoard target, long x, long y) {
+        try {
+            int opened = target.openField(x, y);
+            while (opened < EndlessBoard.MAX_CASCADE && target.hasCascade()) {
+                opened += target.continueCascade(CASCADE_STEP);
+                this.repaintLater();
+            }
+        } catch (UncheckedIOException e) {
+            // The unexpanded cells stay queued for the next move
+            e.printStackTrace();
+        }
+        this.repaintLater();
+    }
+
+    /**
+     * Repaints the window on the Event Dispatch Thread.
+     */
+    private void repaintLater() {
+        SwingUtilities.invokeLater(new Runnable() {
+            @Override
+            public void run() {
+                repaint();
+            }
+        });
+    }
+
+    /**
+     * Moves the window by the given distance.
+     *
+     * @param dx            {@link int} horizontal distance in pixels.
+     * @param dy            {@link int} vertical distance in pixels.
+     */
+    private void moveWindow(int dx, int dy) {
+        this.left += dx;
+        this.top += dy;
+        this.repaint();
+    }
+
+    /**
+     * Paints the visible cells.
+     *
+     * @param g             {@link java.awt.Graphics} to paint with.
+     */
+    @Override
+    protected void paintComponent(Graphics g) {
+        g.setColor(this.getBackground());
+        g.fillRect(0, 0, this.getWidth(), this.getHeight());
+        if (null == this.board)
+            return;
+
+        if (!this.centered) {
+            this.left = (CELL_SIZE - this.getWidth()) / 2;
+            this.top = (CELL_SIZE - this.getHeight()) / 2;
+            this.centered = true;
+        }
+
+        Color background = UIManager.getColor("Button.background");
+        Color shadow = UIManager.getColor("Button.shadow");
+        Color highlight = UIManager.getColor("Button.highlight");
+        FontMetrics metrics = g.getFontMetrics(this.getFont());
+        g.setFont(this.getFont());
+
+        // Pictures in the size of a cell
+        double scale = SpriteCache.getScale(g);
+        Image mineImage = SpriteCache.get("mine.png", CELL_SIZE, scale);
+        Image flagImage = SpriteCache.get("flag.png", CELL_SIZE, scale);
+        Image questionmarkImage = SpriteCache.get("questionmark.png", CELL_SIZE, scale);
+
+        // Visible cells
+        long xMin = Math.floorDiv(this.top, (long) CELL_SIZE);
+        long xMax = Math.floorDiv(this.top + this.getHeight() - 1, (long) CELL_SIZE);
+        long yMin = Math.floorDiv(this.left, (long) CELL_SIZE);
+        long yMax = Math.floorDiv(this.left + this.getWidth() - 1, (long) CELL_SIZE);
+
+        for (long x = xMin; x <= xMax; x++) {
+            for (long y = yMin; y <= yMax; y++) {
+                byte state = this.board.getState(x, y);
+                int cellLeft = (int) (y * CELL_SIZE - this.left);
+                int cellTop = (int) (x * CELL_SIZE - this.top);
+
+                // Paint the cell like a {@link javax.swing.JButton}
+                g.setColor(background);
+                g.fillRect(cellLeft, cellTop, CELL_SIZE, CELL_SIZE);
+                g.setColor(highlight);
+                g.drawLine(cellLeft, cellTop, cellLeft + CELL_SIZE - 1, cellTop);
+                g.drawLine(cellLeft, cellTop, cellLeft, cellTop + CELL_SIZE - 1);
+                g.setColor(shadow);
+                g.drawLine(cellLeft, cellTop + CELL_SIZE - 1, cellLeft + CELL_SIZE - 1, cellTop + CELL_SIZE - 1);
+                g.drawLine(cellLeft + CELL_SIZE - 1, cellTop, cellLeft + CELL_SIZE - 1, cellTop + CELL_SIZE - 1);
+
+                boolean open = 0 != (state & Board.OPEN);
+                Image image = null;
+                if (open && 0 != (state & Board.MINE))
+                    image = mineImage;
+                else if (0 != (state & Board.MARKED))
+                    image = flagImage;
+                else if (!open)
+                    image = questionmarkImage;
+
+                if (null != image) {
+                    g.drawImage(image, cellLeft, cellTop, CELL_SIZE, CELL_SIZE, null);
+                } else {
+                    int amountNeighborMines = this.board.getAmountNeighborMines(x, y);
+                    if (amountNeighborMines > 0) {
+                        String caption = Integer.toString(amountNeighborMines);
+                        g.setColor(BoardCanvas.NUMBER_COLORS[amountNeighborMines]);
+                        g.drawString(caption, cellLeft + (CELL_SIZE - metrics.stringWidth(caption)) / 2,
+                                cellTop + CELL_SIZE - metrics.getDescent());
+                    }
+                }
+            }
+        }
+    }
+}
@@ -98,7 +98,7 @@ public class MainFrame extends JFrame {
 
         // Places and resizes the {@link javax.swing.JFrame}
         this.pack();
-        this.setResizable(false);
+        this.setResizable(true);
         this.setLocationRelativeTo(null);
         this.setVisible(true);
         this.repaint();
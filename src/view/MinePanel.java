@@ -19,17 +19,18 @@
 
 package view;
 
-import model.Field;
+import model.EndlessBoard;
 import model.Game;
+import model.solver.Probabilities;
 
 import javax.swing.*;
 import java.awt.*;
+import java.awt.event.InputEvent;
+import java.awt.event.MouseAdapter;
 import java.awt.event.MouseEvent;
-import java.awt.event.MouseListener;
+import java.awt.event.MouseWheelEvent;
 import java.io.Serializable;
-import java.net.URL;
-import java.util.Observable;
-import java.util.Observer;
+import java.util.concurrent.Executor;
 
 /**
  * Created by Mark Alexander Dietrich on 06/11/14.
@@ -37,15 +38,19 @@ import java.util.Observer;
  * File: MinePanel.java
  *
  * Class: MainPanel
- * This {@link javax.swing.JPanel} represents a minefield with lots of {@link javax.swing.JButton}s. Every
- * {@link javax.swing.JButton} references a {@link model.Field}. Every {@link model.Field} belongs to a
- * {@link model.Game}. This {@link view.MinePanel} implements {@link java.io.Serializable} which means you can use a
- * {@link java.io.ObjectOutputStream} to save it in a file.
+ * This {@link javax.swing.JPanel} represents a minefield. The cells of the {@link model.Game} are painted by a single
+ * {@link view.BoardCanvas}, so the size of the pitch does not depend on the amount of Swing components. The
+ * {@link view.BoardCanvas} lies in a {@link javax.swing.JScrollPane} and only the visible cells are painted. The mouse
+ * wheel scrolls, together with the control key it zooms, and dragging with the middle mousebutton moves the pitch. If
+ * the pitch does not fit on the screen a {@link view.Minimap} shows where you are. An {@link model.EndlessBoard} is
+ * shown by an {@link view.EndlessCanvas} instead. The panel only shows the {@link model.Game}, it is not saved: the
+ * {@link controller.Controller} writes the {@link model.Game} to a {@link model.SaveFile}.
  *
  * @author Mark Alexander Dietrich
  *
  * @see javax.swing.JPanel
- * @see java.io.Serializable
+ * @see view.BoardCanvas
+ * @see model.SaveFile
  *
  */
 public class MinePanel extends JPanel implements Serializable {
@@ -63,25 +68,39 @@ public class MinePanel extends JPanel implements Serializable {
     private static final long serialVersionUID = 1L;
 
     /**
-     * Matrix which contains {@link javax.swing.JButton}s. Each of them represents a {@link model.Field} of the
-     * {@link model.Game} below.
+     * Paints the cells of the {@link model.Game}.
      */
-    JButton[][] buttons;
+    private BoardCanvas canvas;
 
     /**
-     * {@link model.Game} containing the fields the buttons belong to.
+     * Shows the visible part of the {@link view.BoardCanvas}.
      */
-    private Game game;
+    private JScrollPane scrollPane;
 
     /**
-     * Resolution of your screen.
+     * Overview of the whole pitch.
      */
-    private Dimension screenSize;
+    private Minimap minimap;
+
+    /**
+     * Shows an {@link model.EndlessBoard} instead of the {@link model.Game}.
+     */
+    private EndlessCanvas endlessCanvas;
+
+    /**
+     * Smallest cell size a new {@link model.Game} starts with.
+     */
+    private static final int MIN_INITIAL_CELL_SIZE = 16;
+
+    /**
+     * {@link model.Game} shown by this {@link view.MinePanel}.
+     */
+    private Game game;
 
     /**
-     * Size of the {@link javax.swing.JButton}s.
+     * Resolution of your screen.
      */
-    private Dimension buttonSize;
+    private Dimension screenSize;
 
     /**
      * Class constructor.
@@ -93,412 +112,216 @@ public class MinePanel extends JPanel implements Serializable {
     public MinePanel(Dimension screenSize) {
 
         // Set layout
-        this.setLayout(new BoxLayout(this, BoxLayout.PAGE_AXIS));
+        this.setLayout(new BorderLayout());
         this.screenSize = screenSize;
+        this.canvas = new BoardCanvas();
+        this.scrollPane = new JScrollPane(this.canvas);
+        this.scrollPane.getViewport().setScrollMode(JViewport.BLIT_SCROLL_MODE);
+        this.minimap = new Minimap(this.scrollPane.getViewport());
+        this.endlessCanvas = new EndlessCanvas();
 
-    }
+        this.initNavigation();
 
-    /**
-     * Checks if the given {@link java.lang.String} is numeric.
-     *
-     * @param str       {@link java.lang.String} to check.
-     * @return          {@link boolean} is the given {@link java.lang.String} numeric?
-     *
-     * @see java.lang.String
-     * @see java.lang.Number
-     */
-    public static boolean isNumeric(String str) {
-        try {
-            double d = Double.parseDouble(str);
-        } catch (NumberFormatException nfe) {
-            return false;
-        }
-        return true;
     }
 
     /**
-     * Calculates the size of the {@link javax.swing.JButton}s and the {@link java.awt.Font} based on the
-     * {@code screensize}. Then it iterates trough the {@link model.Field}s of the given {@link model.Game} and adds
-     * {@link view.MinePanel.ObserverButton}s to them.
-     *
-     * @param game      {@link model.Game} to get the {@link model.Field}s from.
-     *
-     * @see view.MinePanel.ObserverButton
-     * @see model.Game
-     * @see model.Field
+     * Adds the {@link java.awt.event.MouseListener}s which zoom and move the pitch.
      */
-    public void init(final Game game) {
-        this.game = game;
-
-        // Initialize buttons matrix
-        this.buttons = new JButton[this.game.getHeight()][this.game.getWidth()];
-
-        Dimension tmpDim = this.screenSize;
-
-        // Calculate buttonSize
-        this.buttonSize = new Dimension((int) tmpDim.getWidth() / this.game.getHeight(),
-                (int) tmpDim.getWidth() / this.game.getWidth());
-
-        // Calculate fontSize
-        int fontSize =
-                (int)Math.round((this.buttonSize.getHeight() / 2) * java.awt.Toolkit.getDefaultToolkit().getScreenResolution() / 72.0);
-        Font font = new Font("serif", Font.BOLD, fontSize);
-
-
-        // Iterate trough the {@link model.Field}s of the given {@link model.Game} and connect the
-        // {@link view.MinePanel.ObserverButton}s
-        for (Field[] row : game.getFields()) {
-
-            JPanel panel = new JPanel(new GridLayout());
-
-            for (Field current : row) {
-
-                // Get coordinates of the current {@link model.Field}
-                int x = current.getX();
-                int y = current.getY();
-
-                // Initialize new {@link view.MinePanel.ObserverButton}
-                final ObserverButton tmp = new ObserverButton(this.getInitialButtonCaption(x, y));
-                tmp.setPreferredSize(this.buttonSize);
-                tmp.setFont(font);
-
-                // Fit caption of the {@link view.MinePanel.ObserverButton} the state of the current {@link model.Field}
-                this.fitButtonCaption(tmp);
+    private void initNavigation() {
+        MouseAdapter navigation = new MouseAdapter() {
 
-                // Add a {@link java.awt.event.MouseListener} to the {@link view.MinePanel.ObserverButton}
-                this.initMouseListener(tmp, x, y);
+            /**
+             * Where the middle mousebutton was pressed, in screen coordinates.
+             */
+            private Point dragStart;
 
-                // Add {@link view.MinePanel.ObserverButton} to the current {@link model.Field}
-                current.addObserver(tmp);
-
-                // Add {@link view.MinePanel.ObserverButton} to the matrix
-                this.buttons[x][y] = tmp;
-
-                // Add the {@link view.MinePanel.ObserverButton} to the current {@link java.awt.GridBagLayout}
-                panel.add(tmp);
-            }
-            // Add the {@link java.awt.GridBagLayout} to the {@link java.awt.BoxLayout} of this {@link view.MinePanel}
-            this.add(panel);
-        }
-    }
-
-    /**
-     * Initializes the {@link java.awt.event.MouseListener} which should handle the {@link java.awt.event.MouseEvent}
-     * of the given {@link view.MinePanel.ObserverButton}.
-     *
-     * @param button        {@link view.MinePanel.ObserverButton} to add the {@link java.awt.event.MouseListener} to.
-     * @param x             {@link int} x coordinate of the {@link model.Field} the given
-     *                      {@link view.MinePanel.ObserverButton} observes.
-     * @param y             {@link int} y coordinate of the {@link model.Field} the given
-     *                      {@link view.MinePanel.ObserverButton} observes.
-     *
-     * @see java.awt.event.MouseListener
-     */
-    public void initMouseListener(ObserverButton button, final int x, final int y) {
-        button.addMouseListener(new MouseListener() {
             @Override
-            public void mouseClicked(MouseEvent mouseEvent) {
-                // When the user used the right mousebutton the clicked {@link model.Field} will be marked
-                if (SwingUtilities.isRightMouseButton(mouseEvent)) {
-                    game.markField(x, y);
-                // When the user used the left mousebutton the clicked {@link model.Field} will be opened
-                } else if (SwingUtilities.isLeftMouseButton(mouseEvent)) {
-                    game.openField(x, y);
+            public void mouseWheelMoved(MouseWheelEvent mouseWheelEvent) {
+                if (0 != (mouseWheelEvent.getModifiersEx() & InputEvent.CTRL_DOWN_MASK)) {
+                    zoom(mouseWheelEvent.getPoint(), mouseWheelEvent.getWheelRotation());
+                } else {
+                    // Let the {@link javax.swing.JScrollPane} scroll
+                    scrollPane.dispatchEvent(SwingUtilities.convertMouseEvent(canvas, mouseWheelEvent, scrollPane));
                 }
             }
-            // Unused dummy event
+
             @Override
             public void mousePressed(MouseEvent mouseEvent) {
-
+                if (SwingUtilities.isMiddleMouseButton(mouseEvent))
+                    this.dragStart = mouseEvent.getLocationOnScreen();
             }
-            // Unused dummy event
-            @Override
-            public void mouseReleased(MouseEvent mouseEvent) {
 
-            }
-            // Unused dummy event
             @Override
-            public void mouseEntered(MouseEvent mouseEvent) {
-
+            public void mouseDragged(MouseEvent mouseEvent) {
+                if (null == this.dragStart || !SwingUtilities.isMiddleMouseButton(mouseEvent))
+                    return;
+
+                Point current = mouseEvent.getLocationOnScreen();
+                Point position = scrollPane.getViewport().getViewPosition();
+                position.translate(this.dragStart.x - current.x, this.dragStart.y - current.y);
+                moveView(position);
+                this.dragStart = current;
             }
-            // Unused dummy event
-            @Override
-            public void mouseExited(MouseEvent mouseEvent) {
 
+            @Override
+            public void mouseReleased(MouseEvent mouseEvent) {
+                this.dragStart = null;
             }
-        });
+        };
+        this.canvas.addMouseWheelListener(navigation);
+        this.canvas.addMouseListener(navigation);
+        this.canvas.addMouseMotionListener(navigation);
     }
 
     /**
-     * This method is important when you use an {@link java.io.ObjectInputStream} to load a saved {@link model.Game}.
-     * It uses the given coordinates to find the right {@link model.Field} and return the right caption {@link String}
-     * depending on the state of the found {@link model.Field}.
+     * Sets the {@link java.util.concurrent.Executor} which executes the moves of the user.
      *
-     * @param x         {@link int} x coordinate of the {@link model.Field} to find.
-     * @param y         {@link int} y coordinate of the {@link model.Field} to find.
-     * @return          {@link java.lang.String} which represents a button caption.
+     * @param moveExecutor  {@link java.util.concurrent.Executor} which executes one move after another, null to
+     *                      execute them on the Event Dispatch Thread.
      *
-     * @see model.Field
-     * @see java.lang.String
+     * @see view.BoardCanvas#setMoveExecutor
      */
-    public String getInitialButtonCaption(int x, int y) {
-
-        // Get {@link model.Field} that fits the given coordinates
-        Field field = this.game.getField(x, y);
-
-        // Detect right caption {@link java.lang.String}
-        if (field.isMarked())
-            return "!";
-        else if (!field.isOpen())
-            return "?";
-        else {
-            if (0 == field.getAmountNeighborMines())
-                return " ";
-            else
-                return Integer.toString(field.getAmountNeighborMines());
-        }
+    public void setMoveExecutor(Executor moveExecutor) {
+        this.canvas.setMoveExecutor(moveExecutor);
     }
 
     /**
-     * Converts the {@link java.awt.Image} behind the given {@link java.net.URL} to an {@link javax.swing.ImageIcon}
-     * which is a swing element which you can use as caption for a {@link javax.swing.JButton}.
+     * Sets the {@link java.util.concurrent.Executor} which executes the moves of the user on an
+     * {@link model.EndlessBoard}.
      *
-     * @param url           {@link java.net.URL} path to the {@link java.awt.Image} to convert.
-     * @return              {@link javax.swing.Icon} to use for your {@link view.MinePanel.ObserverButton}.
+     * @param moveExecutor  {@link java.util.concurrent.Executor} which executes one move after another, null to
+     *                      execute them on the Event Dispatch Thread.
      *
-     * @see java.net.URL
-     * @see java.awt.Image
-     * @see javax.swing.ImageIcon
-     * @see javax.swing.Icon
+     * @see view.EndlessCanvas#setMoveExecutor
      */
-    private Icon renderCaptionPic(URL url) {
-
-        Image img = new ImageIcon(url).getImage();
-        Image newImg = img.getScaledInstance((int) this.buttonSize.getHeight(),
-                (int) this.buttonSize.getWidth(), java.awt.Image.SCALE_SMOOTH);
-        return new ImageIcon(newImg);
+    public void setEndlessMoveExecutor(Executor moveExecutor) {
+        this.endlessCanvas.setMoveExecutor(moveExecutor);
     }
 
     /**
-     * Select right {@link javax.swing.Icon} for the given {@link javax.swing.JButton} depending on its name.
+     * Zooms in or out. The cell under the mouse pointer stays where it is.
      *
-     * @param btn       {@link javax.swing.JButton} to select the right {@link javax.swing.Icon} for.
+     * @param point         {@link java.awt.Point} mouse position on the {@link view.BoardCanvas}.
+     * @param rotation      {@link int} negative to zoom in, positive to zoom out.
      */
-    private void fitButtonCaption(JButton btn) {
-
-        if ("boom".equals(btn.getName())) {
-            URL url = this.getClass().getResource("/" + "mine.png");
-            btn.setIcon(this.renderCaptionPic(url));
-            btn.setVerticalAlignment(SwingConstants.CENTER);
-        } else if ("?".equals(btn.getName())) {
-            URL url = this.getClass().getResource("/" + "questionmark.png");
-            btn.setIcon(this.renderCaptionPic(url));
-            btn.setVerticalAlignment(SwingConstants.CENTER);
-        } else if ("!".equals(btn.getName())) {
-            URL url = this.getClass().getResource("/" + "flag.png");
-            btn.setIcon(this.renderCaptionPic(url));
-            btn.setVerticalAlignment(SwingConstants.CENTER);
-        // If the name is numeric no {@link javax.swing.Icon} is required
-        } else if (isNumeric(btn.getName())) {
-            btn.setText(btn.getName());
-            this.setColor(btn);
-            btn.setIcon(null);
-            btn.setVerticalAlignment(SwingConstants.BOTTOM);
-        } else {
-            btn.setIcon(null);
-        }
+    private void zoom(Point point, int rotation) {
+        int oldSize = this.canvas.getCellSize();
+        int step = Math.max(1, oldSize / 4);
+        this.canvas.setCellSize(rotation < 0 ? oldSize + step : oldSize - step);
+        int newSize = this.canvas.getCellSize();
+        if (newSize == oldSize)
+            return;
+
+        JViewport viewport = this.scrollPane.getViewport();
+        Point position = viewport.getViewPosition();
+        int offsetX = point.x - position.x;
+        int offsetY = point.y - position.y;
+
+        // Resize the view right away, so the new position is valid
+        viewport.setViewSize(this.canvas.getPreferredSize());
+        this.updateScrollIncrements();
+        this.moveView(new Point((int) ((long) point.x * newSize / oldSize) - offsetX,
+                (int) ((long) point.y * newSize / oldSize) - offsetY));
     }
 
     /**
-     * Selects the right foreground {@link java.awt.Color} for the given {@link javax.swing.JButton} depending on the
-     * caption {@link String}.
+     * Moves the visible part of the pitch to the given position, but not beyond the borders.
      *
-     * @param btn           {@link javax.swing.JButton} to set the foreground
+     * @param position      {@link java.awt.Point} new upper left corner of the visible part.
      */
-    public void setColor(JButton btn){
-
-        if (isNumeric(btn.getName())) {
-            if ("1".equals(btn.getName()))
-                btn.setForeground(Color.BLUE);
-            else if("2".equals(btn.getName()))
-                btn.setForeground(Color.GREEN);
-            else if("3".equals(btn.getName()))
-                btn.setForeground(Color.RED);
-            else if("4".equals(btn.getName()))
-                btn.setForeground(Color.MAGENTA);
-            else if("5".equals(btn.getName()))
-                btn.setForeground(Color.DARK_GRAY);
-            else if("6".equals(btn.getName()))
-                btn.setForeground(Color.GRAY);
-            else if("7".equals(btn.getName()))
-                btn.setForeground(Color.PINK);
-            else if("8".equals(btn.getName()))
-                btn.setForeground(Color.BLACK);
-        }
-    }
-
-    public Game getGame() {
-        return game;
+    private void moveView(Point position) {
+        JViewport viewport = this.scrollPane.getViewport();
+        Dimension view = viewport.getViewSize();
+        Dimension extent = viewport.getExtentSize();
+        position.x = Math.max(0, Math.min(position.x, view.width - extent.width));
+        position.y = Math.max(0, Math.min(position.y, view.height - extent.height));
+        viewport.setViewPosition(position);
     }
 
     /**
-     * Removes all {@link java.awt.Component}s from this {@link javax.swing.JPanel}.
+     * Lets the scrollbars move by one cell.
      */
-    public void clear() {
-        this.removeAll();
-        this.repaint();
+    private void updateScrollIncrements() {
+        this.scrollPane.getHorizontalScrollBar().setUnitIncrement(this.canvas.getCellSize());
+        this.scrollPane.getVerticalScrollBar().setUnitIncrement(this.canvas.getCellSize());
     }
 
     /**
-     * Class: ObserverButton
-     * Implements an {@link java.util.Observer} in terms of a {@link javax.swing.JButton} which should observe a
-     * {@link model.Field}.
+     * Calculates the size of the cells based on the {@code screensize} and lets the {@link view.BoardCanvas} show the
+     * given {@link model.Game}. If the pitch does not fit on the screen even with small cells, it becomes scrollable
+     * and the {@link view.Minimap} is shown.
      *
-     * @see java.util.Observer
-     * @see javax.swing.JButton
+     * @param game      {@link model.Game} to show.
+     *
+     * @see view.BoardCanvas
+     * @see model.Game
      */
-    class ObserverButton extends JButton implements Observer {
-
-        /**
-         * Class constructor.
-         *
-         * @param string        {@link String} which represents the name of the new {@link javax.swing.JButton}.
-         */
-        public ObserverButton(String string) {
-            super(string);
-            this.setName(this.getText());
-            this.setText("");
-        }
-
-        /**
-         * Update method of this observer. If the referencing {@link model.Field} changes it's state the
-         * {@link view.MinePanel.ObserverButton} does it too.
-         *
-         * @param arg0          {@link java.util.Observable} observed observable object.
-         * @param arg1          {@link java.lang.Object} optional parameter.
-         *
-         * @see java.util.Observer
-         * @see java.util.Observable
-         * @see java.lang.Object
-         * @see model.Field
-         */
-        public void update(Observable arg0, Object arg1) {
-            Field field = (Field) arg0;
-
-            // Is referenced {@link model.Field} exploded?
-            if(null == arg1) {
-                // If {@link model.Field#isExploded} is true you lost the game
-                if (field.isExploded()) {
-
-                    // All {@link model.Field}s will be flipped
-                    this.flipAllFields(false);
-
-                    // Set {@link model.Game} state
-                    game.setWon(false);
-                    game.setEnded(true);
-
-                // If {@link view.MinePanel.ObserverButton#checkVictory} is true you won the game
-                } else if (this.checkVictory()) {
-
-                    // All {@link model.Field}s will be flipped
-                    this.flipAllFields(true);
-
-                    // Set {@link model.Game} state
-                    game.setWon(true);
-                    game.setEnded(true);
-                // If you did not won or lost the game either the referencing {@link model.Field} will just be flipped
-                } else
-                    // Flip {@link model.Field}
-                    this.flipField(field);
-            }
-        }
-
-        /**
-         * Iterates trough each {@link model.Field} and checks if it's state. If all {@link model.Field}s pass this test
-         * it will return true.
-         *
-         * @return          {@link} have you won the {@link model.Game}?
-         *
-         * @see model.Field#isMarked
-         * @see model.Field#isOpen
-         * @see model.Field#isExploded
-         */
-        private boolean checkVictory() {
-            for (Field[] row : game.getFields()) {
-                for (Field current : row) {
-                    // If {@link model.Field#isMarked} and {@link model.Field#isOpen} return false or
-                    // {@link model.Field#isExploded} returns true you haven't won the game and this method will return false
-                    if (!current.isMarked() && !current.isOpen() || current.isExploded())
-                        return false;
-                }
-            }
-            return true;
-        }
-
-        /**
-         * Iterates trough each {@link model.Field} of the current {@link model.Game} and flips it by using
-         * {@link view.MinePanel.ObserverButton#flipField}. It will be used when you won or lost the {@link model.Game}.
-         *
-         * @param won           {@link boolean} have you won the {@link model.Game}?
-         *
-         * @see view.MinePanel.ObserverButton#flipField
-         */
-        private void flipAllFields(boolean won) {
-
-            for (Field[] row : game.getFields()) {
-                for (Field current : row) {
-                    // If you won the unmarked {@link model.Field}s will not be flipped
-                    if (!won)
-                        current.unmark();
-                    if (!current.isMarked())
-                        current.setOpen(true);
-                    // Delete {@link java.util.Observer}
-                    current.deleteObservers();
-                    // Flip the current {@link model.Field}
-                    this.flipField(current);
-                }
-            }
-        }
-
-        /**
-         * Flips the given {@link model.Field}.
-         *
-         * @param field         {@link model.Field} to flip.
-         *
-         * @see model.Field
-         */
-        private void flipField(Field field) {
-
-            // Find referencing {@link view.MinePanel.ObserverButton}
-            JButton btn = buttons[field.getX()][field.getY()];
-
-            // Select right caption {@link java.lang.String}
-            if (field.isExploded()) {
-                btn.setName("boom");
-            } else if (field.isMarked()) {
-                btn.setName("!");
-            } else if (field.isOpen()) {
-                if (field.getAmountNeighborMines() > 0) {
-                    btn.setName(Integer.toString(field.getAmountNeighborMines()));
-                } else {
-                    btn.setName("  ");
-                }
-            } else {
-                btn.setName("?");
-            }
+    public void init(final Game game) {
+        this.game = game;
 
+        // Calculate cell size, the pitch should fit on the screen
+        int cellSize = Math.min((int) this.screenSize.getWidth() / this.game.getWidth(),
+                (int) this.screenSize.getHeight() / this.game.getHeight());
+        cellSize = Math.max(MIN_INITIAL_CELL_SIZE, cellSize);
+
+        this.canvas.setGame(this.game, cellSize);
+        this.minimap.setGame(this.game);
+        this.updateScrollIncrements();
+
+        // The viewport is not bigger than the screen
+        Dimension canvasSize = this.canvas.getPreferredSize();
+        boolean fits = canvasSize.width <= this.screenSize.getWidth() && canvasSize.height <= this.screenSize.getHeight();
+        Dimension viewportSize = new Dimension((int) Math.min(canvasSize.width, this.screenSize.getWidth()),
+                (int) Math.min(canvasSize.height, this.screenSize.getHeight()));
+        this.scrollPane.getViewport().setPreferredSize(viewportSize);
+
+        this.add(this.scrollPane, BorderLayout.CENTER);
+        if (!fits)
+            this.add(this.minimap, BorderLayout.EAST);
+    }
 
-            fitButtonCaption(btn);
+    /**
+     * Shows the given {@link model.EndlessBoard} in a window as large as the screen allows, instead of a
+     * {@link model.Game}.
+     *
+     * @param board     {@link model.EndlessBoard} to show.
+     *
+     * @see view.EndlessCanvas
+     */
+    public void initEndless(EndlessBoard board) {
+        this.game = null;
+        this.endlessCanvas.setBoard(board);
+        this.endlessCanvas.setPreferredSize(new Dimension((int) this.screenSize.getWidth(),
+                (int) this.screenSize.getHeight()));
+        this.add(this.endlessCanvas, BorderLayout.CENTER);
+    }
 
-            // If there is no {@link javax.swing.Icon} show caption {@link java.lang.String}
-            if (null == btn.getIcon()) {
-                btn.setText(btn.getName());
-                setColor(btn);
-            }
-        }
+    public Game getGame() {
+        return game;
+    }
 
+    /**
+     * Shows the given probabilities of the mines as heatmap over the pitch.
+     *
+     * @param probabilities {@link model.solver.Probabilities} of the shown {@link model.Game}, null to hide the
+     *                      heatmap.
+     *
+     * @see view.BoardCanvas#setProbabilities
+     */
+    public void setProbabilities(Probabilities probabilities) {
+        this.canvas.setProbabilities(probabilities);
+    }
 
+    /**
+     * Removes all {@link java.awt.Component}s from this {@link javax.swing.JPanel} and stops showing the
+     * {@link model.Game}.
+     */
+    public void clear() {
+        this.canvas.setGame(null, 1);
+        this.minimap.setGame(null);
+        this.endlessCanvas.setBoard(null);
+        this.removeAll();
+        this.repaint();
     }
 
 }
-
@@ -0,0 +1,261 @@
+/*
+ * (C) Copyright 2014 Mark Alexander Dietrich <mark.dietrich93@gmail.com>.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Contributors:
+ *     Mark Alexander Dietrich
+ */
+
+package view;
+
+import model.Board;
+import model.BoardDelta;
+import model.BoardListener;
+import model.Game;
+
+import javax.swing.*;
+import javax.swing.event.ChangeEvent;
+import javax.swing.event.ChangeListener;
+import java.awt.*;
+import java.awt.event.MouseAdapter;
+import java.awt.event.MouseEvent;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+
+/**
+ * Created by Mark Alexander Dietrich on 06/11/14.
+ *
+ * File: Minimap.java
+ *
+ * Class: Minimap
+ * Shows an overview of the whole pitch together with the part which is visible in the {@link javax.swing.JViewport}
+ * of the {@link view.BoardCanvas}. Every pixel of the overview stands for a block of cells and shows the state of one
+ * of them, so its costs depend on the size of the overview instead of the size of the pitch. Clicking or dragging
+ * moves the visible part.
+ *
+ * @author Mark Alexander Dietrich
+ *
+ * @see view.BoardCanvas
+ * @see model.BoardListener
+ */
+public class Minimap extends JComponent implements BoardListener {
+
+    /**
+     * {@code serialVersionUID}, which is used during deserialization to verify that the sender and receiver of a
+     * serialized object have loaded classes for that object that are compatible with respect to serialization. It has
+     * to be {@link final} and {@link long}.
+     *
+     * @see java.io.ObjectOutputStream
+     * @see java.io.ObjectInputStream
+     * @see final
+     * @see long
+     */
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Maximal edge length of the overview in pixels.
+     */
+    public static final int SIZE = 160;
+
+    /**
+     * {@link javax.swing.JViewport} which shows the {@link view.BoardCanvas}.
+     */
+    private final JViewport viewport;
+
+    /**
+     * {@link model.Game} to show.
+     */
+    private Game game;
+
+    /**
+     * Overview, one pixel per block of cells.
+     */
+    private BufferedImage image;
+    private int[] pixels;
+
+    /**
+     * Class constructor.
+     *
+     * @param viewport      {@link javax.swing.JViewport} which shows the {@link view.BoardCanvas}.
+     */
+    public Minimap(JViewport viewport) {
+        this.viewport = viewport;
+
+        // Repaint the visible part whenever it moves
+        this.viewport.addChangeListener(new ChangeListener() {
+            @Override
+            public void stateChanged(ChangeEvent changeEvent) {
+                repaint();
+            }
+        });
+
+        MouseAdapter mouseAdapter = new MouseAdapter() {
+            @Override
+            public void mousePressed(MouseEvent mouseEvent) {
+                center(mouseEvent.getPoint());
+            }
+
+            @Override
+            public void mouseDragged(MouseEvent mouseEvent) {
+                center(mouseEvent.getPoint());
+            }
+        };
+        this.addMouseListener(mouseAdapter);
+        this.addMouseMotionListener(mouseAdapter);
+    }
+
+    /**
+     * Shows the given {@link model.Game} and listens to its changes.
+     *
+     * @param game          {@link model.Game} to show, may be null.
+     */
+    public void setGame(Game game) {
+        if (null != this.game)
+            this.game.removeBoardListener(this);
+
+        this.game = game;
+        this.image = null;
+        this.pixels = null;
+
+        if (null != this.game) {
+            // Keep the aspect ratio of the pitch
+            double scale = (double) SIZE / Math.max(this.game.getHeight(), this.game.getWidth());
+            int imageWidth = Math.max(1, (int) Math.min(this.game.getWidth(), Math.round(this.game.getWidth() * scale)));
+            int imageHeight = Math.max(1,
+                    (int) Math.min(this.game.getHeight(), Math.round(this.game.getHeight() * scale)));
+            this.image = new BufferedImage(imageWidth, imageHeight, BufferedImage.TYPE_INT_ARGB);
+            this.pixels = ((DataBufferInt) this.image.getRaster().getDataBuffer()).getData();
+            this.setPreferredSize(new Dimension(SIZE, SIZE));
+            this.game.addBoardListener(this);
+            this.rebuild();
+        }
+        this.repaint();
+    }
+
+    /**
+     * Updates the pixels of the cells listed in the given {@link model.BoardDelta}, or every pixel if it is full. If it
+     * is called on another thread the {@link model.BoardDelta} is passed to the Event Dispatch Thread.
+     *
+     * @param delta         {@link model.BoardDelta} describing the changed cells.
+     */
+    @Override
+    public void boardChanged(final BoardDelta delta) {
+        if (!SwingUtilities.isEventDispatchThread()) {
+            final Game source = this.game;
+            SwingUtilities.invokeLater(new Runnable() {
+                @Override
+                public void run() {
+                    // Ignore changes of a {@link model.Game} which is not shown anymore
+                    if (source == game)
+                        boardChanged(delta);
+                }
+            });
+            return;
+        }
+
+        if (null == this.pixels)
+            return;
+
+        if (delta.isFull()) {
+            this.rebuild();
+        } else {
+            Board board = this.game.getBoard();
+            int imageWidth = this.image.getWidth();
+            int imageHeight = this.image.getHeight();
+            for (int n = 0; n < delta.size(); n++) {
+                int index = delta.getCell(n);
+                int row = (int) ((long) board.getX(index) * imageHeight / board.getHeight());
+                int column = (int) ((long) board.getY(index) * imageWidth / board.getWidth());
+                this.pixels[row * imageWidth + column] =
+                        BoardCanvas.pixelColor(delta.getState(n), board.getNeighborMines(index));
+            }
+        }
+        this.repaint();
+    }
+
+    /**
+     * Samples the center cell of each block.
+     */
+    private void rebuild() {
+        Board board = this.game.getBoard();
+        int imageWidth = this.image.getWidth();
+        int imageHeight = this.image.getHeight();
+
+        for (int row = 0; row < imageHeight; row++) {
+            int x = (int) (((long) row * 2 + 1) * board.getHeight() / (2L * imageHeight));
+            for (int column = 0; column < imageWidth; column++) {
+                int y = (int) (((long) column * 2 + 1) * board.getWidth() / (2L * imageWidth));
+                int index = board.index(x, y);
+                this.pixels[row * imageWidth + column] =
+                        BoardCanvas.pixelColor(board.getState(index), board.getNeighborMines(index));
+            }
+        }
+    }
+
+    /**
+     * Paints the overview and the visible part.
+     *
+     * @param g             {@link java.awt.Graphics} to paint with.
+     */
+    @Override
+    protected void paintComponent(Graphics g) {
+        if (null == this.image)
+            return;
+
+        Rectangle bounds = this.getImageBounds();
+        g.drawImage(this.image, bounds.x, bounds.y, bounds.width, bounds.height, null);
+
+        // Visible part
+        Component view = this.viewport.getView();
+        if (null != view && view.getWidth() > 0 && view.getHeight() > 0) {
+            Rectangle visible = this.viewport.getViewRect();
+            g.setColor(Color.RED);
+            g.drawRect(bounds.x + (int) ((long) visible.x * bounds.width / view.getWidth()),
+                    bounds.y + (int) ((long) visible.y * bounds.height / view.getHeight()),
+                    Math.max(1, (int) ((long) visible.width * bounds.width / view.getWidth()) - 1),
+                    Math.max(1, (int) ((long) visible.height * bounds.height / view.getHeight()) - 1));
+        }
+    }
+
+    /**
+     * Moves the visible part so that its center is at the given point of the overview.
+     *
+     * @param point         {@link java.awt.Point} on this {@link view.Minimap}.
+     */
+    private void center(Point point) {
+        Component view = this.viewport.getView();
+        if (null == this.image || null == view)
+            return;
+
+        Rectangle bounds = this.getImageBounds();
+        Dimension extent = this.viewport.getExtentSize();
+        int x = (int) ((long) (point.x - bounds.x) * view.getWidth() / bounds.width) - extent.width / 2;
+        int y = (int) ((long) (point.y - bounds.y) * view.getHeight() / bounds.height) - extent.height / 2;
+
+        x = Math.max(0, Math.min(x, view.getWidth() - extent.width));
+        y = Math.max(0, Math.min(y, view.getHeight() - extent.height));
+        this.viewport.setViewPosition(new Point(x, y));
+    }
+
+    /**
+     * @return {@link java.awt.Rectangle} where the overview is painted, centered and scaled to fit.
+     */
+    private Rectangle getImageBounds() {
+        double scale = Math.min((double) this.getWidth() / this.image.getWidth(),
+                (double) this.getHeight() / this.image.getHeight());
+        int width = Math.max(1, (int) (this.image.getWidth() * scale));
+        int height = Math.max(1, (int) (this.image.getHeight() * scale));
+        return new Rectangle((this.getWidth() - width) / 2, (this.getHeight() - height) / 2, width, height);
+    }
+}
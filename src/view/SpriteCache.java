@@ -0,0 +1,104 @@
+/*
+ * (C) Copyright 2014 Mark Alexander Dietrich <mark.dietrich93@gmail.com>.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Contributors:
+ *     Mark Alexander Dietrich
+ */
+
+package view;
+
+import javax.swing.*;
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.net.URL;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Created by Mark Alexander Dietrich on 06/11/14.
+ *
+ * File: SpriteCache.java
+ *
+ * Class: SpriteCache
+ * Decodes each picture of the application once and keeps a scaled copy for every size it was requested in. The size
+ * is given in logical pixels together with the scale of the screen, so HiDPI screens get sharp pictures. The cache is
+ * shared by all {@link model.Game}s, so resetting or revealing the pitch does not scale any picture again.
+ *
+ * @author Mark Alexander Dietrich
+ *
+ * @see java.awt.Image
+ */
+public final class SpriteCache {
+
+    /**
+     * Decoded pictures by name.
+     */
+    private static final Map<String, Image> SOURCES = new HashMap<String, Image>();
+
+    /**
+     * Scaled pictures by name and size in device pixels.
+     */
+    private static final Map<String, Image> SPRITES = new HashMap<String, Image>();
+
+    private SpriteCache() {
+    }
+
+    /**
+     * Returns the picture with the given name scaled to a square of the given size.
+     *
+     * @param name      {@link java.lang.String} file name of the picture, e.g. "mine.png".
+     * @param size      {@link int} edge length in logical pixels.
+     * @param scale     {@link double} scale of the screen, 1 unless it is a HiDPI screen.
+     * @return          {@link java.awt.Image} with an edge length of {@code size * scale} device pixels.
+     */
+    public static synchronized Image get(String name, int size, double scale) {
+        int pixels = Math.max(1, (int) Math.round(size * scale));
+        String key = name + "@" + pixels;
+
+        Image sprite = SPRITES.get(key);
+        if (null == sprite) {
+            Image source = SOURCES.get(name);
+            if (null == source) {
+                URL url = SpriteCache.class.getResource("/" + name);
+                source = new ImageIcon(url).getImage();
+                SOURCES.put(name, source);
+            }
+
+            // Render the scaled picture once, {@link java.awt.Image#getScaledInstance} alone scales on every draw.
+            // The {@link javax.swing.ImageIcon} waits until the scaling is done.
+            Image smooth = new ImageIcon(source.getScaledInstance(pixels, pixels, Image.SCALE_SMOOTH)).getImage();
+            BufferedImage scaled = new BufferedImage(pixels, pixels, BufferedImage.TYPE_INT_ARGB);
+            Graphics2D g = scaled.createGraphics();
+            g.drawImage(smooth, 0, 0, null);
+            g.dispose();
+
+            sprite = scaled;
+            SPRITES.put(key, sprite);
+        }
+        return sprite;
+    }
+
+    /**
+     * Tells you the scale of the screen the given {@link java.awt.Graphics} paints on.
+     *
+     * @param g         {@link java.awt.Graphics} to check.
+     * @return          {@link double} scale, 1 unless it is a HiDPI screen.
+     */
+    public static double getScale(Graphics g) {
+        if (g instanceof Graphics2D)
+            return Math.max(1.0, ((Graphics2D) g).getTransform().getScaleX());
+        return 1.0;
+    }
+}